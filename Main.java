@@ -11,6 +11,9 @@ public class Main {
         boolean gui = args.length > 0 && "gui".equalsIgnoreCase(args[0]);
         AbstractFactory factory = gui ? new GuiFactory() : new TextUiFactory();
 
+        // snapshot + journal precisam estar carregados antes de qualquer mutação
+        factory.getController().loadAll();
+
         MainView mainView = factory.createMainView();
         mainView.showMenu();
     }
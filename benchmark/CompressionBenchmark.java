@@ -0,0 +1,85 @@
+package benchmark;
+
+import controller.persistence.BlockCompression;
+import controller.persistence.BlockCompression.Codec;
+import controller.persistence.BlockCompression.Settings;
+import controller.persistence.LibrarySnapshot;
+import controller.persistence.SnapshotCodec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+
+/**
+ * Compara a gravação e a carga das imagens do acervo sem compressão e com
+ * {@link BlockCompression} (Deflate em blocos paralelos) em alguns tamanhos de
+ * bloco e níveis: tamanho em disco, razão de compressão e vazão (MB/s sobre os
+ * bytes sem compressão). Mede o snapshot binário ({@link SnapshotCodec}) e a
+ * serialização Java usada pelos arquivos .dat de cada tipo.
+ *
+ * Uso: java -Xss64m benchmark.CompressionBenchmark [livros] [reviewsPorLivro] [iterações]
+ */
+public final class CompressionBenchmark {
+
+    private static final Settings[] VARIANTS = {
+            Settings.NONE,
+            new Settings(Codec.DEFLATE, 64 * 1024, 1),
+            new Settings(Codec.DEFLATE, 256 * 1024, 1),
+            new Settings(Codec.DEFLATE, 1024 * 1024, 1),
+            new Settings(Codec.DEFLATE, 256 * 1024, 6),
+    };
+
+    public static void main(String[] args) throws Exception {
+        int bookCount = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int reviewsPerBook = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        SampleCatalog catalog = new SampleCatalog(bookCount, reviewsPerBook, 42);
+        File dir = Files.createTempDirectory("compression-bench").toFile();
+        File file = new File(dir, "library.dat");
+
+        byte[] codecImage = SnapshotCodec.encode(0, catalog.users, catalog.books, catalog.categories, true, true);
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(serialized)) {
+            out.writeObject(new LibrarySnapshot(catalog.users, catalog.books, catalog.categories));
+        }
+        byte[] javaImage = serialized.toByteArray();
+
+        System.out.printf("Acervo: %d livros, %d reviews; %d threads%n", catalog.books.size(), catalog.reviewCount(),
+                Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-14s %-22s %12s %7s %12s %12s%n", "imagem", "compressão", "bytes", "razão", "save MB/s", "load MB/s");
+
+        for (Settings settings : VARIANTS) {
+            SnapshotCodecBenchmark.Timing timing = SnapshotCodecBenchmark.measure(iterations,
+                    () -> SnapshotCodec.saveImage(file.getPath(), codecImage, settings),
+                    () -> SnapshotCodec.load(file.getPath()).finish());
+            report("SnapshotCodec", settings, codecImage.length, file.length(), timing);
+        }
+        for (Settings settings : VARIANTS) {
+            SnapshotCodecBenchmark.Timing timing = SnapshotCodecBenchmark.measure(iterations,
+                    () -> SnapshotCodec.saveImage(file.getPath(), javaImage, settings),
+                    () -> {
+                        try (InputStream in = BlockCompression.input(new FileInputStream(file))) {
+                            new ObjectInputStream(in).readObject();
+                        }
+                    });
+            report("Serialização", settings, javaImage.length, file.length(), timing);
+        }
+
+        file.delete();
+        dir.delete();
+    }
+
+    private static void report(String image, Settings settings, long rawBytes, long fileBytes,
+                               SnapshotCodecBenchmark.Timing timing) {
+        String label = settings.codec() == Codec.NONE ? "nenhuma"
+                : String.format("deflate %dKB nível %d", settings.blockSize() / 1024, settings.level());
+        double megabytes = rawBytes / (1024.0 * 1024.0);
+        System.out.printf("%-14s %-22s %,12d %6.2fx %12.1f %12.1f%n", image, label, fileBytes,
+                (double) rawBytes / fileBytes, megabytes / (timing.saveMs() / 1000), megabytes / (timing.loadMs() / 1000));
+    }
+}
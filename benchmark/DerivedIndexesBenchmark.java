@@ -0,0 +1,53 @@
+package benchmark;
+
+import controller.persistence.DerivedIndexes;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Compara, para acervos de tamanhos crescentes, reconstruir os índices derivados
+ * (nomes de usuário, árvore de categorias, notas por livro) a partir dos objetos
+ * com lê-los do arquivo gravado por {@link DerivedIndexes}: é o que a carga faz
+ * quando o carimbo confere ou diverge.
+ *
+ * Uso: java benchmark.DerivedIndexesBenchmark [reviewsPorLivro] [iterações] [livros...]
+ */
+public final class DerivedIndexesBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int reviewsPerBook = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int[] bookCounts = args.length > 2
+                ? Arrays.stream(args, 2, args.length).mapToInt(Integer::parseInt).toArray()
+                : new int[] { 5_000, 20_000, 80_000 };
+
+        File dir = Files.createTempDirectory("indexes-bench").toFile();
+        File file = new File(dir, "indexes.idx");
+
+        System.out.printf("%10s %10s %12s %16s %12s%n", "livros", "reviews", "bytes", "reconstrução ms", "carga ms");
+        for (int bookCount : bookCounts) {
+            SampleCatalog catalog = new SampleCatalog(bookCount, reviewsPerBook, 42);
+            DerivedIndexes[] built = new DerivedIndexes[1];
+            SnapshotCodecBenchmark.Timing timing = SnapshotCodecBenchmark.measure(iterations,
+                    () -> {
+                        built[0] = new DerivedIndexes(DerivedIndexes.namesOf(catalog.users),
+                                DerivedIndexes.treeOf(catalog.categories), DerivedIndexes.scoresOf(catalog.books));
+                        built[0].save(file, 1);
+                    },
+                    () -> {
+                        if (DerivedIndexes.load(file, 1) == null) throw new IllegalStateException("carimbo não confere");
+                    });
+            // a "gravação" medida inclui a reconstrução; desconta a gravação sozinha
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) built[0].save(file, 1);
+            double saveMs = (System.nanoTime() - start) / 1e6 / iterations;
+
+            System.out.printf("%,10d %,10d %,12d %16.2f %12.2f%n", catalog.books.size(), catalog.reviewCount(),
+                    file.length(), timing.saveMs() - saveMs, timing.loadMs());
+        }
+        file.delete();
+        dir.delete();
+    }
+}
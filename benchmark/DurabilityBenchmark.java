@@ -0,0 +1,98 @@
+package benchmark;
+
+import controller.persistence.EntityRecord;
+import controller.persistence.GroupCommit;
+import controller.persistence.GroupCommit.Durability;
+import controller.persistence.MutationJournal;
+import model.Category;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Anexa entradas ao {@link MutationJournal} a partir de várias threads em cada
+ * modo de durabilidade do {@link GroupCommit} e mostra a vazão (operações/s) e
+ * a latência de cada anexação (mediana e p99), além de quantos fsyncs foram feitos.
+ *
+ * Uso: java benchmark.DurabilityBenchmark [operaçõesPorThread] [intervaloMs] [maxOps] [threads...]
+ */
+public final class DurabilityBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int opsPerThread = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        long intervalMs = args.length > 1 ? Long.parseLong(args[1]) : 10;
+        int maxOps = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        int[] threadCounts = args.length > 3
+                ? Arrays.stream(args, 3, args.length).mapToInt(Integer::parseInt).toArray()
+                : new int[] { 1, 4, 16 };
+
+        File dir = Files.createTempDirectory("durability-bench").toFile();
+        byte[] sample = MutationJournal.encode(MutationJournal.Op.UPDATE,
+                EntityRecord.of(new Category.Builder().setId(1).setName("Categoria de teste").build()));
+
+        System.out.printf("%d operações por thread, lote de até %d ms ou %d operações, entrada de %d bytes%n",
+                opsPerThread, intervalMs, maxOps, sample.length);
+        System.out.printf("%-8s %8s %12s %12s %12s %10s %12s%n",
+                "modo", "threads", "ops/s", "mediana ms", "p99 ms", "fsyncs", "ops/fsync");
+
+        for (Durability mode : Durability.values()) {
+            for (int threads : threadCounts) {
+                File file = new File(dir, "journal-" + mode + "-" + threads + ".log");
+                GroupCommit commit = new GroupCommit(mode, intervalMs, maxOps);
+                MutationJournal journal = new MutationJournal(file.getPath(), commit);
+                run(journal, sample, threads, Math.max(1, opsPerThread / 10)); // aquecimento
+                journal.reset();
+
+                commit = new GroupCommit(mode, intervalMs, maxOps);
+                journal = new MutationJournal(file.getPath(), commit);
+                long start = System.nanoTime();
+                long[] latencies = run(journal, sample, threads, opsPerThread);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                journal.close();
+                file.delete();
+
+                Arrays.sort(latencies);
+                long syncs = commit.syncCount();
+                System.out.printf("%-8s %8d %12.0f %12.3f %12.3f %10d %12.1f%n", mode, threads,
+                        latencies.length / seconds, percentile(latencies, 0.50), percentile(latencies, 0.99),
+                        syncs, syncs == 0 ? 0d : (double) latencies.length / syncs);
+            }
+        }
+        dir.delete();
+    }
+
+    /** Cada thread anexa {@code ops} entradas, uma por vez; devolve a latência de todas. **/
+    private static long[] run(MutationJournal journal, byte[] entry, int threads, int ops) throws InterruptedException {
+        long[] latencies = new long[threads * ops];
+        CountDownLatch startLine = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t * ops;
+            Thread worker = new Thread(() -> {
+                try {
+                    startLine.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < ops; i++) {
+                    long start = System.nanoTime();
+                    journal.writeEntries(List.of(entry));
+                    latencies[offset + i] = System.nanoTime() - start;
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        startLine.countDown();
+        for (Thread worker : workers) worker.join();
+        return latencies;
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))] / 1e6;
+    }
+}
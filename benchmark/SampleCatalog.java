@@ -0,0 +1,74 @@
+package benchmark;
+
+import model.Book;
+import model.Category;
+import model.Review;
+import model.Shelf;
+import model.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Acervo sintético para os benchmarks de persistência: livros com reviews,
+ * categorias compartilhando livros e usuários com estantes, todos ligados
+ * entre si como na aplicação real.
+ */
+public final class SampleCatalog {
+    private static final String[] AUTHORS = {"Machado de Assis", "Clarice Lispector", "Jorge Amado", "Cecília Meireles"};
+    private static final String[] PUBLISHERS = {"Companhia das Letras", "Rocco", "Record"};
+    private static final String[] COMMENTS = {"Ótimo livro, recomendo", "Leitura arrastada no começo", "Clássico indispensável"};
+
+    public final List<User> users = new ArrayList<>();
+    public final List<Book> books = new ArrayList<>();
+    public final List<Category> categories = new ArrayList<>();
+
+    public SampleCatalog(int bookCount, int reviewsPerBook, long seed) {
+        Random random = new Random(seed);
+        int userCount = Math.max(1, bookCount / 10);
+
+        for (int i = 1; i <= userCount; i++) {
+            users.add(new User.Builder().setId(i).setUsername("leitor" + i).setPassword("senha" + i).build());
+        }
+
+        int reviewId = 1;
+        for (int i = 1; i <= bookCount; i++) {
+            Book book = new Book.Builder()
+                    .setId(i)
+                    .setName("Livro " + i)
+                    .setPrice(10 + random.nextInt(9000) / 100d)
+                    .setAuthor(AUTHORS[random.nextInt(AUTHORS.length)])
+                    .setPublisher(PUBLISHERS[random.nextInt(PUBLISHERS.length)])
+                    .setPages(50 + random.nextInt(900))
+                    .build();
+            for (int r = 0; r < reviewsPerBook; r++) {
+                book.addReview(new Review.Builder()
+                        .setId(reviewId++)
+                        .setAuthor(users.get(random.nextInt(userCount)))
+                        .setComment(COMMENTS[random.nextInt(COMMENTS.length)])
+                        .setScore((double) random.nextInt(6))
+                        .build());
+            }
+            books.add(book);
+        }
+
+        int categoryCount = Math.max(1, bookCount / 100);
+        for (int i = 1; i <= categoryCount; i++) {
+            Category category = new Category.Builder().setId(i).setName("Categoria " + i).build();
+            if (i > 1) categories.get(random.nextInt(i - 1)).addSubCategory(category);
+            categories.add(category);
+        }
+        for (Book book : books) categories.get(random.nextInt(categoryCount)).addBook(book);
+
+        for (User user : users) {
+            Shelf shelf = new Shelf("Favoritos");
+            for (int b = 0; b < 5; b++) shelf.addBook(books.get(random.nextInt(bookCount)));
+            user.addShelf(shelf);
+        }
+    }
+
+    public int reviewCount() {
+        return books.stream().mapToInt(b -> b.getReviews().size()).sum();
+    }
+}
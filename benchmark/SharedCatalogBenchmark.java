@@ -0,0 +1,71 @@
+package benchmark;
+
+import controller.persistence.CatalogImage;
+import controller.persistence.DerivedIndexes;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Mede a imagem do catálogo compartilhada entre processos ({@link CatalogImage}):
+ * tempo de gravação e de abertura, custo de uma busca por id (materializando o
+ * livro) e o heap que o processo retém com a imagem aberta, comparado ao do
+ * acervo carregado em objetos.
+ *
+ * Uso: java benchmark.SharedCatalogBenchmark [buscas] [livros...]
+ */
+public final class SharedCatalogBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int lookups = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int[] bookCounts = args.length > 1
+                ? Arrays.stream(args, 1, args.length).mapToInt(Integer::parseInt).toArray()
+                : new int[] { 5_000, 20_000, 80_000 };
+
+        File dir = Files.createTempDirectory("catalog-bench").toFile();
+        File file = new File(dir, "catalog.img");
+
+        System.out.printf("%10s %12s %12s %10s %12s %14s %14s%n", "livros", "bytes", "gravação ms",
+                "abrir ms", "busca ns", "heap imagem KB", "heap objetos KB");
+        for (int bookCount : bookCounts) {
+            long heapObjects;
+            {
+                long before = usedHeap();
+                SampleCatalog catalog = new SampleCatalog(bookCount, 5, 42);
+                heapObjects = usedHeap() - before;
+
+                long start = System.nanoTime();
+                CatalogImage.write(file, catalog.books, catalog.categories,
+                        DerivedIndexes.scoresOf(catalog.books), 1);
+                double writeMs = (System.nanoTime() - start) / 1e6;
+                System.out.printf("%,10d %,12d %12.2f", bookCount, file.length(), writeMs);
+            }
+
+            long before = usedHeap();
+            long start = System.nanoTime();
+            CatalogImage image = CatalogImage.open(file);
+            double openMs = (System.nanoTime() - start) / 1e6;
+            long heapImage = usedHeap() - before;
+
+            Random random = new Random(7);
+            long pages = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < lookups; i++) pages += image.book(1 + random.nextInt(bookCount)).getPages();
+            double lookupNs = (System.nanoTime() - start) / (double) lookups;
+
+            System.out.printf(" %10.2f %12.0f %,14d %,14d%n", openMs, lookupNs,
+                    Math.max(0, heapImage) / 1024, heapObjects / 1024);
+            if (pages == 0) System.out.println(); // mantém as buscas vivas
+        }
+        file.delete();
+        dir.delete();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,75 @@
+package benchmark;
+
+import controller.DataManager;
+import controller.persistence.LibrarySnapshot;
+import controller.persistence.SnapshotCodec;
+
+import java.io.File;
+import java.nio.file.Files;
+
+/**
+ * Compara o snapshot em serialização Java (DataManager/ObjectOutputStream)
+ * com o {@link SnapshotCodec}: tamanho do arquivo, tempo de gravação e de carga.
+ *
+ * Uso: java benchmark.SnapshotCodecBenchmark [livros] [reviewsPorLivro] [iterações]
+ */
+public final class SnapshotCodecBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int bookCount = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int reviewsPerBook = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        SampleCatalog catalog = new SampleCatalog(bookCount, reviewsPerBook, 42);
+        File dir = Files.createTempDirectory("snapshot-bench").toFile();
+        String javaFile = new File(dir, "library-java.dat").getPath();
+        String codecFile = new File(dir, "library-codec.dat").getPath();
+
+        System.out.printf("Acervo: %d livros, %d reviews, %d usuários, %d categorias%n",
+                catalog.books.size(), catalog.reviewCount(), catalog.users.size(), catalog.categories.size());
+
+        Timing java = measure(iterations,
+                () -> DataManager.save(new LibrarySnapshot(catalog.users, catalog.books, catalog.categories), javaFile),
+                () -> DataManager.load(javaFile));
+        Timing codec = measure(iterations,
+                () -> SnapshotCodec.save(codecFile, catalog.users, catalog.books, catalog.categories),
+                () -> SnapshotCodec.load(codecFile).finish());
+
+        report("ObjectOutputStream", new File(javaFile).length(), java);
+        report("SnapshotCodec", new File(codecFile).length(), codec);
+
+        new File(javaFile).delete();
+        new File(codecFile).delete();
+        dir.delete();
+    }
+
+    interface Task { void run() throws Exception; }
+
+    record Timing(double saveMs, double loadMs) {}
+
+    /** Executa metade das iterações como aquecimento e mede a média das demais. **/
+    static Timing measure(int iterations, Task save, Task load) throws Exception {
+        int warmup = Math.max(1, iterations / 2);
+        for (int i = 0; i < warmup; i++) {
+            save.run();
+            load.run();
+        }
+
+        long saveNanos = 0, loadNanos = 0;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            save.run();
+            saveNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            load.run();
+            loadNanos += System.nanoTime() - start;
+        }
+        return new Timing(saveNanos / 1e6 / iterations, loadNanos / 1e6 / iterations);
+    }
+
+    static void report(String label, long bytes, Timing timing) {
+        System.out.printf("%-20s %,12d bytes   save %8.2f ms   load %8.2f ms%n",
+                label, bytes, timing.saveMs(), timing.loadMs());
+    }
+}
@@ -0,0 +1,140 @@
+package benchmark;
+
+import controller.GlobalElementsController;
+import controller.persistence.EntityType;
+import controller.persistence.StorageEngine;
+import controller.persistence.StorageEngines;
+import model.Category;
+import model.ChangeTracker;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Executa a mesma carga de CRUD (create, update, findById, delete, saveAll,
+ * loadAll) pelo código do {@link GlobalElementsController}, trocando só o
+ * {@link StorageEngine}, e mostra o tempo de cada fase por engine.
+ *
+ * Uso: java benchmark.StorageEngineBenchmark [objetos] [iterações]
+ *
+ * Cada put/delete do engine log espera o fsync do modo de durabilidade
+ * ({@code -Dbiblioteca.durability=none|batched|perop}); com uma só thread,
+ * batched custa até um intervalo de lote por operação.
+ */
+public final class StorageEngineBenchmark {
+
+    private static final String[] ENGINES = { "memory", "snapshot", "log" };
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 5_000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        ChangeTracker.suspend(); // o benchmark não gera checkpoints
+        File dir = Files.createTempDirectory("engine-bench").toFile();
+
+        System.out.printf("%d categorias, %d iterações (após aquecimento)%n", count, iterations);
+        System.out.printf("%-10s %10s %10s %10s %10s %10s %10s %12s%n",
+                "engine", "create", "update", "find", "delete", "saveAll", "loadAll", "bytes");
+
+        for (String engine : ENGINES) {
+            String dataFile = new File(dir, engine + ".dat").getPath();
+            run(engine, dataFile, count); // aquecimento
+            double[] total = new double[6];
+            for (int i = 0; i < iterations; i++) {
+                double[] phases = run(engine, dataFile, count);
+                for (int p = 0; p < phases.length; p++) total[p] += phases[p];
+            }
+            System.out.printf("%-10s %8.2fms %8.2fms %8.2fms %8.2fms %8.2fms %8.2fms %,12d%n", engine,
+                    total[0] / iterations, total[1] / iterations, total[2] / iterations,
+                    total[3] / iterations, total[4] / iterations, total[5] / iterations, bytesOf(dir, engine));
+        }
+
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) f.delete();
+        dir.delete();
+    }
+
+    private static double[] run(String engine, String dataFile, int count) {
+        new File(dataFile).delete();
+        new File(dataFile.replace(".dat", ".log")).delete();
+        Category.resetIdCounter(1);
+
+        StorageEngine<Category> storage = StorageEngines.open(engine, dataFile);
+        BenchController controller = new BenchController(dataFile, storage);
+        Random random = new Random(7);
+        double[] phases = new double[6];
+
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) controller.create("Categoria " + i);
+        phases[0] = elapsedMs(start);
+
+        start = System.nanoTime();
+        for (int i = 1; i <= count; i++) controller.update(i, "Categoria alterada " + i);
+        phases[1] = elapsedMs(start);
+
+        start = System.nanoTime();
+        for (int i = 0; i < count; i++) controller.findById(1 + random.nextInt(count));
+        phases[2] = elapsedMs(start);
+
+        start = System.nanoTime();
+        for (int i = 1; i <= count; i += 10) controller.deleteById(i);
+        phases[3] = elapsedMs(start);
+
+        start = System.nanoTime();
+        controller.saveAll();
+        phases[4] = elapsedMs(start);
+
+        start = System.nanoTime();
+        controller.loadAll();
+        phases[5] = elapsedMs(start);
+
+        if (controller.listAll().size() != count - (count + 9) / 10 && !engine.equals("memory"))
+            System.err.println("[ERRO] " + engine + ": carga devolveu " + controller.listAll().size() + " objetos");
+        storage.close();
+        return phases;
+    }
+
+    private static long bytesOf(File dir, String engine) {
+        long bytes = 0;
+        File[] files = dir.listFiles((d, name) -> name.startsWith(engine + "."));
+        if (files != null) for (File f : files) bytes += f.length();
+        return bytes;
+    }
+
+    private static double elapsedMs(long start) {
+        return (System.nanoTime() - start) / 1e6;
+    }
+
+    /** Controlador mínimo: toda a lógica de CRUD é a herdada. **/
+    private static final class BenchController extends GlobalElementsController<Category> {
+        BenchController(String dataFile, StorageEngine<Category> storage) {
+            super(dataFile, storage);
+        }
+
+        @Override
+        protected Category build(Object... args) {
+            return new Category.Builder().setName((String) args[0]).build();
+        }
+
+        @Override
+        protected void applyUpdate(Category category, Object... args) {
+            category.setName((String) args[0]);
+        }
+
+        @Override
+        protected void resetIdCounter(int nextId) {
+            Category.resetIdCounter(nextId);
+        }
+
+        @Override
+        protected int nextId() {
+            return Category.getNextId();
+        }
+
+        @Override
+        protected EntityType idType() {
+            return EntityType.CATEGORY;
+        }
+    }
+}
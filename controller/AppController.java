@@ -1,16 +1,80 @@
 package controller;
 
+import controller.persistence.CatalogImage;
+import controller.persistence.Checkpoint;
+import controller.persistence.DerivedIndexes;
+import controller.persistence.EntityRecord;
+import controller.persistence.EntityType;
+import controller.persistence.GroupCommit;
+import controller.persistence.IdSequences;
+import controller.persistence.IoThrottle;
+import controller.persistence.LibraryGraph;
+import controller.persistence.LibrarySnapshot;
+import controller.persistence.LibraryStore;
+import controller.persistence.MaintenanceScheduler;
+import controller.persistence.MappedBookStore;
+import controller.persistence.MutationJournal;
+import controller.persistence.PersistenceConfig;
+import controller.persistence.PersistenceService;
+import controller.persistence.ReviewStore;
+import controller.persistence.SharedCatalog;
+import controller.persistence.SnapshotCodec;
+import controller.persistence.TaskGraph;
+import model.Book;
+import model.ChangeTracker;
 import model.User;
+
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 public final class AppController {
 
+    private static final String SNAPSHOT_FILE = "data/library.dat";
+    private static final String JOURNAL_FILE = "data/journal.log";
+    private static final String BOOK_RECORDS_FILE = "data/books.map";
+    private static final String BOOK_STRINGS_FILE = "data/books.strings";
+    private static final String REVIEW_STORE_DIR = "data/reviews";
+    private static final String INDEX_FILE = "data/indexes.idx";
+    private static final String CATALOG_FILE = "data/catalog.img";
+    private static final String DATA_DIR = "data";
+
+    private final UserController userController = new UserController();
     private final BookController bookController = new BookController();
-    private final ReviewController reviewController = new ReviewController(null, bookController);
-    private final ShelfController shelfController = new ShelfController(null);
+    private final ReviewController reviewController = new ReviewController(null, bookController, userController);
+    private final ShelfController shelfController = new ShelfController(null, userController);
     private final CategoryController categoryController = new CategoryController();
-    private final UserController userController = new UserController();
+    private final MutationJournal journal = new MutationJournal(JOURNAL_FILE);
+    private final LibraryStore store = new LibraryStore(SNAPSHOT_FILE,
+            PersistenceConfig.snapshotConsolidateEvery(), PersistenceConfig.snapshotShards());
+    private final PersistenceService persistence;
+    // Modo somente leitura (biblioteca.catalog.readOnly): o catálogo vem só da imagem compartilhada
+    private final SharedCatalog catalog;
+    private final MaintenanceScheduler maintenance = new MaintenanceScheduler(DATA_DIR, this::maintain);
+    private ReviewStore reviewStore;
     private User user;
+    private String indexLoad = "ainda não carregados";
+    private volatile TaskGraph.Timings lastLoad;
+    private volatile TaskGraph.Timings lastSave;
+    // gravações em série, fora da thread de quem pede (a EDT do Swing, por exemplo)
+    private final ExecutorService saves = Executors.newSingleThreadExecutor(task -> {
+        Thread t = new Thread(task, "persistence-save");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile Future<?> pendingSave = CompletableFuture.completedFuture(null);
+    // onde a manutenção agendada lê o estado; null: na própria thread da manutenção
+    private volatile Executor stateThread;
+    private volatile Thread stateOwner;
 
     private transient final ArrayList<UserObserver> observers = new ArrayList<>();
     private static final AppController instance = new AppController();
@@ -19,6 +83,86 @@ public final class AppController {
     private AppController() {
         registerObserver(reviewController);
         registerObserver(shelfController);
+
+        if (PersistenceConfig.catalogReadOnly()) {
+            // sem journal, snapshots, stores nem manutenção: este processo não grava nada
+            catalog = new SharedCatalog(CATALOG_FILE, PersistenceConfig.catalogRefreshMillis());
+            bookController.attachCatalog(catalog);
+            categoryController.attachCatalog(catalog);
+            userController.setReadOnly();
+            persistence = null;
+            return;
+        }
+        catalog = null;
+
+        userController.attachJournal(journal);
+        bookController.attachJournal(journal);
+        categoryController.attachJournal(journal);
+        reviewController.attachJournal(journal);
+        shelfController.attachJournal(journal);
+
+        if (PersistenceConfig.booksMapped() || PersistenceConfig.booksHeapBudgetBytes() > 0) attachMappedBooks();
+        if (PersistenceConfig.reviewsLsm() || PersistenceConfig.reviewsLazy()) attachReviewStore();
+
+        if (PersistenceConfig.writeBehindEnabled()) {
+            persistence = new PersistenceService(journal, store, this::beforeJournalReset,
+                    PersistenceConfig.writeBehindDelayMillis(),
+                    PersistenceConfig.writeBehindMaxPendingBytes());
+            journal.setWriteBehind(persistence);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                awaitSaves();
+                persistence.close();
+            }, "persistence-shutdown"));
+        } else {
+            persistence = null;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                awaitSaves();
+                journal.close();
+            }, "persistence-shutdown"));
+        }
+        maintenance.start(PersistenceConfig.maintenanceIntervalSeconds());
+    }
+
+    private void attachMappedBooks() {
+        try {
+            MappedBookStore mapped = new MappedBookStore(BOOK_RECORDS_FILE, BOOK_STRINGS_FILE);
+            bookController.attachMappedStore(mapped);
+            bookController.setHeapBudget(PersistenceConfig.booksHeapBudgetBytes());
+            store.setBooksStoredExternally(true);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    mapped.close();
+                } catch (IOException e) {
+                    System.err.println("[ERRO] Falha ao fechar " + BOOK_RECORDS_FILE + ": " + e.getMessage());
+                }
+            }, "mapped-books-shutdown"));
+        } catch (IOException e) {
+            System.err.println("[ERRO] Falha ao mapear " + BOOK_RECORDS_FILE + ", usando livros em memória: " + e.getMessage());
+        }
+    }
+
+    private void attachReviewStore() {
+        ReviewStore reviews = new ReviewStore(REVIEW_STORE_DIR,
+                PersistenceConfig.reviewMemtableBytes(), PersistenceConfig.reviewCompactAfter());
+        try {
+            reviews.open();
+        } catch (IOException e) {
+            System.err.println("[ERRO] Falha ao abrir " + REVIEW_STORE_DIR + ", reviews ficam nos snapshots: " + e.getMessage());
+            return;
+        }
+        reviews.setCompactionThrottle(IoThrottle.fromConfig());
+        reviewStore = reviews;
+        store.setReviewsStoredExternally(true);
+        reviewController.attachStore(reviews);
+        bookController.attachReviewStore(reviews, userController::findById);
+        if (PersistenceConfig.reviewsLazy()) bookController.enableLazyReviews(PersistenceConfig.reviewCacheBooks());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                reviews.close();
+            } catch (IOException e) {
+                System.err.println("[ERRO] Falha ao fechar " + REVIEW_STORE_DIR + ": " + e.getMessage());
+            }
+        }, "review-store-shutdown"));
     }
 
     public BookController books() { return bookController; }
@@ -27,6 +171,16 @@ public final class AppController {
     public CategoryController categories() { return categoryController; }
     public UserController user() { return userController; }
 
+    /** Importação em lote (CSV/JSONL) para os controladores da aplicação. **/
+    public CatalogImporter importer() {
+        return new CatalogImporter(bookController, userController, reviewController);
+    }
+
+    /** Exportação (CSV/JSONL) de livros, reviews, categorias e estantes da aplicação. **/
+    public CatalogExporter exporter() {
+        return new CatalogExporter(bookController, reviewController, categoryController, userController);
+    }
+
     public void setUser(User user) {
         this.user = user;
         notifyUserChange(user);
@@ -51,19 +205,379 @@ public final class AppController {
         }
     }
 
+    /**
+     * Grava um checkpoint do acervo em formato binário, onde cada entidade aparece
+     * uma só vez (reviews e estantes referenciam por id). Normalmente é um delta
+     * só com o que mudou desde o último checkpoint; periodicamente, uma base completa.
+     * O journal só é truncado se o checkpoint foi gravado com sucesso.
+     *
+     * Tudo o que lê o estado (imagem do checkpoint, cópias dos índices e dos
+     * filtros, marcas de id) é capturado aqui, na thread de quem chama, que é a
+     * dona do estado. A thread de gravação só faz E/S: com write-behind, o writer
+     * grava a imagem e esta thread grava o resto sem que quem chama espere pelos
+     * fsyncs ({@link #awaitDurable()} espera). Sem write-behind o checkpoint é
+     * gravado aqui mesmo, como cada mutação nesse modo.
+     */
     public void saveAll() {
-        userController.saveAll();
-        bookController.saveAll();
-        reviewController.saveAll();
-        categoryController.saveAll();
-        shelfController.saveAll();
+        if (catalog != null) return;
+        if (persistence != null) {
+            persistence.submitCheckpoint(this::prepareCheckpoint);
+            persistence.flush();
+        } else {
+            checkpoint();
+        }
+        Runnable indexes = captureIndexes();
+        Runnable userFilters = userController.captureLookupFilters();
+        Runnable bookFilters = bookController.captureLookupFilters();
+        Runnable categoryFilters = categoryController.captureLookupFilters();
+        recordIdSequences();
+
+        // arquivos independentes, gravados ao mesmo tempo
+        pendingSave = saves.submit(() -> {
+            TaskGraph tasks = new TaskGraph("gravação");
+            tasks.add("WAL das reviews", () -> {
+                if (reviewStore != null) reviewStore.sync();
+            });
+            tasks.add("índices derivados", indexes::run);
+            tasks.add("filtros de usuários", userFilters::run);
+            tasks.add("filtros de livros", bookFilters::run);
+            tasks.add("filtros de categorias", categoryFilters::run);
+            tasks.add("marcas de id", IdSequences.shared()::save);
+            lastSave = tasks.run(PersistenceConfig.parallelPhases());
+        });
+    }
+
+    private void checkpoint() {
+        // segura o journal: uma mutação de outra thread não pode ser anexada entre a imagem e o reset
+        synchronized (journal) {
+            Checkpoint checkpoint = prepareCheckpoint();
+            if (checkpoint != null) writeCheckpoint(checkpoint);
+        }
+    }
+
+    /** Espera a última gravação pedida por {@link #saveAll()} (as anteriores rodam antes dela). **/
+    private void awaitSaves() {
+        try {
+            pendingSave.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("[ERRO] Falha ao gravar o estado: " + e.getCause().getMessage());
+        }
+    }
+
+    /** Sobe a marca d'água de ids de cada tipo ({@link IdSequences}); a gravação vem depois, fora desta thread. **/
+    private void recordIdSequences() {
+        userController.recordIdSequence();
+        bookController.recordIdSequence();
+        categoryController.recordIdSequence();
+        reviewController.recordIdSequence();
+    }
+
+    /** Leva ao disco o arquivo mapeado dos livros, que o journal cobre até o próximo reset. **/
+    private void forceMappedBooks() {
+        if (bookController.getMappedStore() != null) bookController.getMappedStore().force();
+    }
+
+    /** O que o journal cobre e o checkpoint não grava: o arquivo mapeado e o WAL das reviews. **/
+    private void beforeJournalReset() {
+        forceMappedBooks();
+        if (reviewStore != null) reviewStore.sync();
+    }
+
+    private void writeCheckpoint(Checkpoint checkpoint) {
+        try {
+            store.write(checkpoint);
+            beforeJournalReset();
+            journal.reset();
+        } catch (IOException e) {
+            System.err.println("[ERRO] Falha ao salvar snapshot em " + checkpoint.file() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Copia os índices derivados com o carimbo do checkpoint recém-preparado;
+     * a gravação devolvida pode rodar em outra thread.
+     */
+    private Runnable captureIndexes() {
+        long stamp = indexStamp();
+        DerivedIndexes indexes = new DerivedIndexes(userController.nameIndex(), categoryController.treeIndex(),
+                bookController.scoreIndex());
+        return () -> saveIndexes(indexes, stamp);
+    }
+
+    private void saveIndexes(DerivedIndexes indexes, long stamp) {
+        File file = new File(INDEX_FILE);
+        try {
+            indexes.save(file, stamp);
+        } catch (IOException e) {
+            file.delete(); // um arquivo antigo não pode sobrar com um carimbo que ainda confira
+            System.err.println("[ERRO] Falha ao gravar " + INDEX_FILE + ": " + e.getMessage());
+        }
+    }
+
+    private long indexStamp() {
+        return DerivedIndexes.stampOf(store.lastSequence(), reviewStore == null ? 0 : reviewStore.version());
+    }
+
+    /**
+     * Usa os índices lidos se o carimbo confere com o que foi carregado;
+     * senão (ou se a carga reaplicou journal) cada controlador os reconstrói.
+     */
+    private void restoreIndexes(DerivedIndexes.Stamped read, boolean fromCheckpoint) {
+        long start = System.nanoTime();
+        DerivedIndexes saved = fromCheckpoint && read != null && read.stamp() == indexStamp() ? read.indexes() : null;
+        userController.restoreNameIndex(saved == null ? null : saved.usersByName());
+        categoryController.restoreTreeIndex(saved == null ? null : saved.parents());
+        bookController.restoreScoreIndex(saved == null ? null : saved.scores());
+        indexLoad = String.format("%s em %.2f ms", saved != null ? "lidos de " + INDEX_FILE : "reconstruídos",
+                (System.nanoTime() - start) / 1e6);
     }
 
+    /**
+     * Registra onde o estado dos controladores é alterado (ex.: a EDT do Swing):
+     * a manutenção agendada faz ali as etapas que o leem, como um save pedido
+     * pela interface. Sem registro, ela as faz na própria thread.
+     */
+    public void setStateThread(Executor owner) {
+        stateThread = owner;
+    }
+
+    /**
+     * Roda {@code capture} na thread dona do estado e espera o resultado. Chamado
+     * da própria thread dona (ex.: {@link #runMaintenance()} na EDT), roda direto.
+     */
+    private <T> T onStateThread(Supplier<T> capture) {
+        Executor owner = stateThread;
+        Thread caller = Thread.currentThread();
+        if (owner == null || caller == stateOwner) return capture.get();
+        return CompletableFuture.supplyAsync(() -> {
+            // só um executor que troca de thread tem dona; o que roda na de quem chama só serializa
+            if (Thread.currentThread() != caller) stateOwner = Thread.currentThread();
+            return capture.get();
+        }, owner).join();
+    }
+
+    /**
+     * Manutenção agendada ({@link MaintenanceScheduler}): grava uma base completa,
+     * que torna obsoletos o journal e os deltas, esvazia o WAL das reviews e
+     * compacta segmentos e logs dos controladores. O que lê o estado (captura do
+     * checkpoint, compactação dos engines, imagem do catálogo) roda na thread
+     * registrada em {@link #setStateThread}; o resto, nesta.
+     */
+    private void maintain() {
+        if (catalog != null) return;
+        onStateThread(() -> {
+            store.requireFullBase();
+            saveAll();
+            return null;
+        });
+        awaitDurable();
+        if (reviewStore != null) {
+            reviewStore.flush();
+            reviewStore.compactNow();
+        }
+        onStateThread(() -> {
+            userController.compactStorage();
+            bookController.compactStorage();
+            categoryController.compactStorage();
+            return null;
+        });
+        if (PersistenceConfig.catalogPublish()) writeCatalog(onStateThread(this::encodeCatalog));
+    }
+
+    /**
+     * Grava a imagem do catálogo ({@link CatalogImage}) que os processos somente
+     * leitura mapeiam. As notas vêm do índice derivado, sem tocar nas reviews; no
+     * modo mapeado os livros são materializados um a um, dentro do orçamento.
+     */
+    public void exportCatalog() {
+        if (catalog != null) return;
+        writeCatalog(encodeCatalog());
+    }
+
+    private ByteBuffer encodeCatalog() {
+        return CatalogImage.encode(bookController.listAll(), categoryController.listAll(),
+                bookController.scoreIndex(), store.lastSequence());
+    }
+
+    private void writeCatalog(ByteBuffer image) {
+        try {
+            CatalogImage.write(new File(CATALOG_FILE), image);
+        } catch (IOException e) {
+            System.err.println("[ERRO] Falha ao gravar " + CATALOG_FILE + ": " + e.getMessage());
+        }
+    }
+
+    /** Executa a manutenção agora, fora do agendamento. **/
+    public MaintenanceScheduler.Run runMaintenance() {
+        return maintenance.runNow();
+    }
+
+    private Checkpoint prepareCheckpoint() {
+        return store.prepare(
+                userController.listAll(),
+                bookController.listLoaded(),
+                categoryController.listAll(),
+                ChangeTracker.drain());
+    }
+
+    /** Filtros de Bloom de cada armazenamento, índices derivados, fsyncs do group commit e última manutenção. **/
+    public String storageStats() {
+        if (catalog != null) return "[catálogo somente leitura]\n" + catalog.stats();
+        StringBuilder stats = new StringBuilder()
+                .append("[usuários]\n").append(userController.lookupStats())
+                .append("\n[livros]\n").append(bookController.lookupStats())
+                .append("\n[categorias]\n").append(categoryController.lookupStats());
+        MappedBookStore mapped = bookController.getMappedStore();
+        if (mapped != null) {
+            stats.append("\n[livros mapeados]\n").append(mapped.filterStats())
+                    .append('\n').append(bookController.tierStats());
+        }
+        if (reviewStore != null) {
+            stats.append("\n[reviews]\n").append(reviewStore.stats())
+                    .append('\n').append(bookController.reviewCacheStats());
+        }
+        stats.append("\n[índices derivados]\n").append(indexLoad);
+        stats.append("\n[etapas]\n").append(lastLoad != null ? lastLoad : "carga: ainda não executada")
+                .append('\n').append(lastSave != null ? lastSave : "gravação: ainda não executada");
+        String damage = store.damage();
+        if (damage != null) stats.append("\n[snapshots]\n").append(damage);
+        stats.append("\n[durabilidade]\n").append(GroupCommit.shared().stats());
+        stats.append("\n[manutenção]\n").append(maintenance.stats());
+        return stats.toString();
+    }
+
+    /** Pede a gravação imediata do que estiver pendente, sem bloquear. **/
+    public void flush() {
+        if (persistence != null) persistence.flush();
+    }
+
+    /** Bloqueia até que todas as mudanças feitas até aqui estejam em disco. **/
+    public void awaitDurable() {
+        awaitSaves();
+        if (persistence != null) persistence.awaitDurable();
+    }
+
+    /**
+     * Carrega o último snapshot e reaplica o journal de mutações por cima, como
+     * um grafo de etapas ({@link TaskGraph}): os arquivos independentes são lidos
+     * ao mesmo tempo, cada um uma vez só; as referências entre entidades são
+     * ligadas numa etapa única depois de todas as leituras, e os controladores
+     * são restaurados em paralelo a partir do grafo ligado.
+     */
     public void loadAll() {
-        userController.loadAll();
-        bookController.loadAll();
-        reviewController.loadAll();
-        categoryController.loadAll();
-        shelfController.loadAll();
+        if (catalog != null) return; // a imagem é mapeada na construção e conferida a cada acesso
+        awaitDurable(); // gravações pendentes precisam chegar ao disco antes de reler
+
+        Loading loading = new Loading();
+        TaskGraph tasks = new TaskGraph("carga");
+        TaskGraph.Task snapshot = readSnapshot(tasks, loading);
+        TaskGraph.Task journalRead = tasks.add("journal", () -> loading.journal = journal.readRecords());
+        TaskGraph.Task indexRead = tasks.add("leitura dos índices",
+                () -> loading.indexes = DerivedIndexes.read(new File(INDEX_FILE)));
+        TaskGraph.Task link = tasks.add("aplicação e ligação", () -> link(loading), snapshot, journalRead);
+
+        // contadores de ids pela marca gravada e pelos ids vistos na carga, sem percorrer os objetos
+        TaskGraph.Task users = tasks.add("usuários", () -> userController.restore(loading.graph.users(),
+                loading.graph.highestId(EntityType.USER)), link);
+        TaskGraph.Task books = tasks.add("livros", () -> bookController.restore(loading.graph.books(),
+                loading.graph.highestId(EntityType.BOOK)), link);
+        TaskGraph.Task categories = tasks.add("categorias", () -> categoryController.restore(
+                loading.graph.categories(), loading.graph.highestId(EntityType.CATEGORY)), link);
+        TaskGraph.Task reviews = tasks.add("reviews", () -> {
+            if (reviewStore != null) attachStoredReviews();
+            reviewController.restoreIdCounter(loading.graph.highestId(EntityType.REVIEW));
+        }, users, books);
+        tasks.add("índices derivados", () -> restoreIndexes(loading.indexes,
+                loading.journal.isEmpty() && store.hasBase()), indexRead, users, categories, reviews);
+        lastLoad = tasks.run(PersistenceConfig.parallelPhases());
+    }
+
+    /** O que as etapas da carga leem, para as etapas seguintes. **/
+    private static final class Loading {
+        LibraryStore.Loaded snapshot;   // base binária e deltas, ainda fora do grafo
+        LibraryGraph legacy;            // formatos antigos, já com as entidades
+        List<EntityRecord> journal = List.of();
+        DerivedIndexes.Stamped indexes;
+        LibraryGraph graph;
+    }
+
+    /**
+     * Aplica o snapshot e depois o journal num único grafo e liga as referências
+     * entre as entidades; só esta etapa escreve no grafo.
+     */
+    private void link(Loading loading) {
+        LibraryGraph graph;
+        ChangeTracker.suspend();
+        try {
+            graph = withBookSource(loading.legacy != null ? loading.legacy : new LibraryGraph());
+            if (loading.snapshot != null) store.apply(loading.snapshot, graph);
+            graph.finish();
+        } finally {
+            ChangeTracker.resume();
+        }
+        ChangeTracker.clear();
+
+        // o que vem do journal ainda não está em nenhum snapshot: fica marcado como alterado
+        for (EntityRecord record : loading.journal) graph.apply(record);
+        graph.finish();
+        loading.graph = graph;
+    }
+
+    /**
+     * Na primeira carga com o ReviewStore, as reviews vindas dos snapshots são
+     * copiadas para ele (e a próxima base sai sem elas); depois disso o store é
+     * a fonte das reviews de cada livro carregado. No modo lazy nenhuma review é
+     * lida aqui: cada livro as carrega no primeiro acesso.
+     */
+    private void attachStoredReviews() {
+        if (reviewStore.isFresh()) {
+            reviewStore.importAll(bookController.listLoaded());
+            store.requireFullBase();
+            if (!bookController.lazyReviews()) return;
+        }
+        for (Book book : bookController.listLoaded()) bookController.deferStoredReviews(book);
+    }
+
+    /** No modo mapeado, livros referenciados são buscados no arquivo mapeado sob demanda. **/
+    private LibraryGraph withBookSource(LibraryGraph graph) {
+        MappedBookStore mapped = bookController.getMappedStore();
+        if (mapped != null) graph.setBookSource(mapped::read);
+        return graph;
+    }
+
+    /** Etapas que leem o acervo no formato que estiver em disco; a devolvida termina depois de todas. **/
+    private TaskGraph.Task readSnapshot(TaskGraph tasks, Loading loading) {
+        if (!new File(SNAPSHOT_FILE).exists()) {
+            // Formato antigo: um arquivo por tipo (books.dat, category.dat, users.dat), independentes
+            TaskGraph.Task users = tasks.add("users.dat", userController::loadAll);
+            TaskGraph.Task books = tasks.add("books.dat", bookController::loadAll);
+            TaskGraph.Task categories = tasks.add("category.dat", categoryController::loadAll);
+            return tasks.add("grafo dos arquivos antigos", () -> loading.legacy = new LibraryGraph(
+                    userController.listAll(), bookController.listAll(), categoryController.listAll()),
+                    users, books, categories);
+        }
+
+        if (store.hasBase()) {
+            return tasks.add("snapshot", () -> {
+                try {
+                    loading.snapshot = store.read();
+                } catch (IOException | RuntimeException e) {
+                    // o grafo fica vazio: nenhum checkpoint pode gravá-lo por cima do que está em disco
+                    store.suspend("falha ao carregar " + SNAPSHOT_FILE + " (" + e.getMessage() + ")");
+                }
+            });
+        }
+
+        // Snapshot antigo, gravado com serialização Java
+        return tasks.add("snapshot (serialização Java)", () -> {
+            Object loaded = DataManager.load(SNAPSHOT_FILE);
+            if (loaded instanceof LibrarySnapshot snapshot) {
+                loading.legacy = new LibraryGraph(snapshot.getUsers(), snapshot.getBooks(), snapshot.getCategories());
+            } else if (new File(SNAPSHOT_FILE).length() > 0) {
+                store.suspend(SNAPSHOT_FILE + " ilegível (nem snapshot binário nem serialização Java)");
+            }
+        });
     }
 }
@@ -1,13 +1,353 @@
 package controller;
 
+import controller.persistence.CatalogImage;
+import controller.persistence.DerivedIndexes;
+import controller.persistence.EntityType;
+import controller.persistence.MappedBookStore;
+import controller.persistence.MutationJournal;
+import controller.persistence.ReviewStore;
+import controller.persistence.SharedCatalog;
+import controller.persistence.TieredCache;
 import model.Book;
 import model.Category;
+import model.Review;
+import model.User;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
 
 public final class BookController extends GlobalElementsController<Book> {
+    // Modo mapeado: livros já materializados a partir do MappedBookStore, por id; com
+    // orçamento de heap (modo em camadas), os de uso mais antigo voltam só ao arquivo
+    private MappedBookStore mapped;
+    private TieredCache<Book> resident = new TieredCache<>(0, BookController::estimateBytes, this::evict);
+    // Reviews no ReviewStore: anexadas aos livros na carga e removidas junto com eles
+    private ReviewStore reviewStore;
+    private IntFunction<User> authors;
+    // Modo lazy: livros com as reviews em memória, do uso mais antigo ao mais recente
+    private final LinkedHashMap<Integer, Book> reviewCache = new LinkedHashMap<>(16, 0.75f, true);
+    private final Function<Book, ArrayList<Review>> reviewFault = this::faultReviews;
+    private int reviewCacheLimit;
+    private long reviewFaults;
+    private long reviewEvictions;
+    // Índice derivado: quantidade e soma das notas por livro; persistido em DerivedIndexes
+    private Map<Integer, DerivedIndexes.Score> scores = new HashMap<>();
+    // Modo somente leitura: livros e notas lidos da imagem compartilhada, sem cópia no heap
+    private SharedCatalog catalog;
+
     public BookController() {
         super("data/books.dat");
     }
 
+    /**
+     * Passa a ler e gravar os campos dos livros pelo arquivo mapeado: findById e
+     * update acessam só o registro do livro, sem carregar a lista inteira.
+     */
+    public void attachMappedStore(MappedBookStore mapped) {
+        this.mapped = mapped;
+    }
+
+    public MappedBookStore getMappedStore() {
+        return mapped;
+    }
+
+    /**
+     * Modo em camadas: limita os livros materializados do arquivo mapeado a
+     * {@code budgetBytes} estimados. Os de uso mais antigo (findById, listAll) saem
+     * do heap com as suas reviews e são relidos do arquivo mapeado e do ReviewStore
+     * no próximo acesso. Deve ser chamado antes da carga.
+     */
+    public void setHeapBudget(long budgetBytes) {
+        resident = new TieredCache<>(budgetBytes, BookController::estimateBytes, this::evict);
+    }
+
+    public String tierStats() {
+        return resident.stats();
+    }
+
+    /** Estimativa grosseira do heap de um livro e, se carregadas, das suas reviews. **/
+    static long estimateBytes(Book book) {
+        long bytes = 280 + book.getName().length() + book.getAuthor().length() + book.getPublisher().length()
+                + 8L * book.getCategories().size();
+        if (book.reviewsLoaded()) {
+            for (Review review : book.getReviews()) bytes += 120 + review.getComment().length();
+        }
+        return bytes;
+    }
+
+    /** Solta o livro que saiu da camada quente; ele segue no arquivo mapeado e as reviews no store. **/
+    private void evict(Book book) {
+        storage.evict(book.getId());
+        if (lazyReviews()) {
+            synchronized (reviewCache) {
+                reviewCache.remove(book.getId());
+            }
+            book.deferReviews(reviewFault);
+        }
+    }
+
+    /**
+     * Passa a servir consultas pela imagem do catálogo, mapeada e compartilhada
+     * com outros processos: cada findById/listAll materializa os livros de novo
+     * e nada fica retido aqui. Alterações são recusadas.
+     */
+    public void attachCatalog(SharedCatalog catalog) {
+        this.catalog = catalog;
+        setReadOnly();
+    }
+
+    public SharedCatalog getCatalog() {
+        return catalog;
+    }
+
+    public void attachReviewStore(ReviewStore reviewStore, IntFunction<User> authors) {
+        this.reviewStore = reviewStore;
+        this.authors = authors;
+    }
+
+    /**
+     * Reviews sob demanda: os livros carregados ficam sem reviews até o primeiro
+     * acesso, e no máximo {@code cacheLimit} livros as mantêm em memória; o de uso
+     * mais antigo as descarta (estão todas no ReviewStore) e volta a carregá-las
+     * se for acessado de novo.
+     */
+    public void enableLazyReviews(int cacheLimit) {
+        if (reviewStore == null) return;
+        reviewCacheLimit = Math.max(1, cacheLimit);
+    }
+
+    public boolean lazyReviews() {
+        return reviewCacheLimit > 0;
+    }
+
+    /** No modo lazy, descarta as reviews do livro até o próximo acesso; senão, carrega-as já. **/
+    void deferStoredReviews(Book book) {
+        if (!lazyReviews()) {
+            loadStoredReviews(book);
+            return;
+        }
+        synchronized (reviewCache) {
+            reviewCache.remove(book.getId());
+        }
+        book.deferReviews(reviewFault);
+    }
+
+    private ArrayList<Review> faultReviews(Book book) {
+        ArrayList<Review> reviews = loadStoredReviews(book);
+        resident.resize(book.getId());
+        synchronized (reviewCache) {
+            reviewFaults++;
+            reviewCache.put(book.getId(), book);
+            Iterator<Book> eldest = reviewCache.values().iterator();
+            while (reviewCache.size() > reviewCacheLimit) {
+                Book evicted = eldest.next();
+                eldest.remove();
+                evicted.deferReviews(reviewFault);
+                reviewEvictions++;
+            }
+        }
+        return reviews;
+    }
+
+    /** Ocupação e atividade do cache de reviews do modo lazy. **/
+    public String reviewCacheStats() {
+        if (!lazyReviews()) return "reviews carregadas com os livros";
+        synchronized (reviewCache) {
+            return String.format("lazy: %d de %d livros com reviews em memória, %d carregamentos, %d descartes",
+                    reviewCache.size(), reviewCacheLimit, reviewFaults, reviewEvictions);
+        }
+    }
+
+    /** Substitui as reviews do livro pelas gravadas no ReviewStore e devolve a lista publicada. **/
+    ArrayList<Review> loadStoredReviews(Book book) {
+        ArrayList<Review> reviews = new ArrayList<>();
+        if (reviewStore == null) return reviews;
+        for (ReviewStore.Entry entry : reviewStore.scan(book.getId())) {
+            Review review = ReviewStore.toReview(entry, authors);
+            if (review != null) reviews.add(review);
+        }
+        book.replaceReviews(reviews);
+        return reviews;
+    }
+
+    /** Além de avisar o engine, recalcula as notas do livro (reviews criadas, alteradas ou removidas). **/
+    @Override
+    public void markChanged(Book book) {
+        super.markChanged(book);
+        updateScore(book);
+    }
+
+    @Override
+    public void markChanged(List<Book> books) {
+        super.markChanged(books);
+        for (Book book : books) updateScore(book);
+    }
+
+    private void updateScore(Book book) {
+        if (book == null) return;
+        if (lazyReviews()) {
+            synchronized (reviewCache) {
+                reviewCache.get(book.getId()); // uso recente
+            }
+        }
+        if (book.getReviews().isEmpty()) scores.remove(book.getId());
+        else scores.put(book.getId(), DerivedIndexes.Score.of(book.getReviews()));
+    }
+
+    /** Média das notas do livro pelo índice, sem percorrer as reviews. **/
+    public double scoreOf(int bookId) {
+        if (catalog != null) return catalog.current().score(bookId).average();
+        return scores.getOrDefault(bookId, DerivedIndexes.Score.EMPTY).average();
+    }
+
+    /** Livros da maior para a menor média de notas. **/
+    public List<Book> rankedByScore() {
+        List<Book> ranked = new ArrayList<>(listAll());
+        if (catalog != null) {
+            CatalogImage image = catalog.current(); // a mesma imagem para todas as comparações
+            ranked.sort(Comparator.comparingDouble((Book b) -> image.score(b.getId()).average()).reversed());
+            return ranked;
+        }
+        ranked.sort(Comparator.comparingDouble((Book b) -> scoreOf(b.getId())).reversed());
+        return ranked;
+    }
+
+    /**
+     * Adota o índice de notas gravado ou, se null, reconstrói: pelo ReviewStore,
+     * quando ativo (inclui livros ainda não materializados), ou pelos livros carregados.
+     */
+    public void restoreScoreIndex(Map<Integer, DerivedIndexes.Score> saved) {
+        if (saved != null) {
+            scores = saved;
+        } else if (reviewStore != null) {
+            Map<Integer, DerivedIndexes.Score> rebuilt = new HashMap<>();
+            for (ReviewStore.Entry entry : reviewStore.scanAll()) {
+                rebuilt.put(entry.bookId(), rebuilt.getOrDefault(entry.bookId(), DerivedIndexes.Score.EMPTY)
+                        .plus(entry.score()));
+            }
+            scores = rebuilt;
+        } else {
+            scores = DerivedIndexes.scoresOf(listLoaded());
+        }
+    }
+
+    public Map<Integer, DerivedIndexes.Score> scoreIndex() {
+        return new HashMap<>(scores);
+    }
+
+    @Override
+    public Book create(Object... args) {
+        Book book = super.create(args);
+        if (mapped != null && book != null) {
+            mapped.write(book);
+            resident.put(book.getId(), book);
+        }
+        return book;
+    }
+
+    @Override
+    public void insertAll(List<Book> books) {
+        super.insertAll(books);
+        if (mapped == null || readOnly) return;
+        for (Book book : books) {
+            mapped.write(book);
+            resident.put(book.getId(), book);
+        }
+    }
+
+    @Override
+    public void update(int id, Object... args) {
+        if (catalog != null || mapped == null) {
+            super.update(id, args);
+            return;
+        }
+        Book book = findById(id);
+        if (book == null) return;
+        applyUpdate(book, args);
+        mapped.write(book);
+        logMutation(MutationJournal.Op.UPDATE, book);
+    }
+
+    @Override
+    public Book findById(int id) {
+        if (catalog != null) return catalog.current().book(id);
+        if (mapped == null) return super.findById(id);
+
+        Book book = resident.get(id);
+        if (book != null) return book;
+
+        book = resident.revive(id); // saiu da camada, mas ainda está preso a algo: mesma instância
+        if (book == null) {
+            book = mapped.read(id);
+            if (book == null) return null;
+            deferStoredReviews(book);
+        }
+        resident.put(id, book);
+        storage.put(book);
+        return book;
+    }
+
+    @Override
+    public List<Book> listAll() {
+        if (catalog != null) return catalog.current().books();
+        if (mapped == null) return super.listAll();
+
+        List<Book> all = new ArrayList<>();
+        for (int id : mapped.ids()) all.add(findById(id));
+        return all;
+    }
+
+    /**
+     * Percorre os livros sem montar a lista e sem reter o que leu: no modo mapeado
+     * e no somente leitura, os que não estão em memória são lidos do arquivo e
+     * descartados em seguida, sem entrar na camada quente.
+     */
+    @Override
+    public void forEach(Consumer<? super Book> action) {
+        if (catalog != null) {
+            CatalogImage image = catalog.current();
+            for (int id : image.bookIds()) action.accept(image.book(id));
+            return;
+        }
+        if (mapped == null) {
+            super.forEach(action);
+            return;
+        }
+        for (int id : mapped.ids()) {
+            Book book = resident.get(id);
+            if (book == null) book = mapped.read(id);
+            if (book != null) action.accept(book);
+        }
+    }
+
+    /** Livros já em memória; no modo mapeado, só os materializados até agora. **/
+    public List<Book> listLoaded() {
+        return super.listAll();
+    }
+
+    @Override
+    public void restore(List<Book> loaded, int highestSeen) {
+        super.restore(loaded, highestSeen);
+        if (mapped == null) return;
+
+        resident.clear();
+        for (Book book : loaded) {
+            resident.put(book.getId(), book);
+            // inclui livros vindos de snapshots/journal (strings iguais não são regravadas)
+            mapped.write(book);
+        }
+        // livros que só estão no arquivo mapeado não passaram pela carga
+        restoreIdCounter(Math.max(highestSeen, mapped.maxId()));
+    }
+
     @Override
     protected Book build(Object... args) {
         String name = (String) args[0];
@@ -45,17 +385,44 @@ public final class BookController extends GlobalElementsController<Book> {
         Book.resetIdCounter(nextId);
     }
 
+    @Override
+    protected int nextId() {
+        return Book.getNextId();
+    }
+
+    @Override
+    protected EntityType idType() {
+        return EntityType.BOOK;
+    }
+
     @Override
     public void loadAll() {
         super.loadAll();
+        restoreScoreIndex(null);
     }
 
     @Override
     public boolean deleteById(int id) {
-        Book obj = crudAux.findById(id);
+        if (refuseWrite()) return false;
+        Book obj = findById(id);
         assert obj != null;
-        obj.getReviews().clear();
+        // no modo preguiçoso as reviews que ainda não subiram saem do ReviewStore por faixa, sem carregá-las
+        if (obj.reviewsLoaded()) obj.getReviews().clear();
+        else obj.replaceReviews(new ArrayList<>());
         obj.getCategories().clear();
-        return crudAux.delete(obj);
+        boolean removed = storage.delete(id);
+        scores.remove(id);
+        if (lazyReviews()) {
+            synchronized (reviewCache) {
+                reviewCache.remove(id);
+            }
+        }
+        if (reviewStore != null) reviewStore.deleteBook(id);
+        if (mapped != null) {
+            resident.remove(id);
+            mapped.delete(id);
+        }
+        if (removed) logMutation(MutationJournal.Op.DELETE, obj);
+        return removed;
     }
 }
@@ -0,0 +1,346 @@
+package controller;
+
+import controller.CatalogImporter.Format;
+import controller.persistence.PersistenceConfig;
+import controller.persistence.ReviewColumns;
+import model.Book;
+import model.Category;
+import model.Review;
+import model.Shelf;
+import model.User;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Exportação de livros, reviews, categorias e estantes para CSV (com cabeçalho)
+ * ou JSONL (um objeto por linha), pela extensão do arquivo como na
+ * {@link CatalogImporter}, cujas colunas de livros e reviews os arquivos gerados
+ * incluem. Texto com quebra de linha vai entre aspas no CSV, que a importação
+ * não aceita; para reimportar, prefira JSONL.
+ *
+ * Os controladores são percorridos com forEach, sem a cópia do listAll, e cada
+ * linha vai para um buffer de tamanho fixo que é escrito no canal do arquivo
+ * quando enche: a memória não cresce com o acervo. No modo mapeado os livros
+ * fora da camada quente são lidos e soltos; com o ReviewStore, as reviews vêm
+ * das entradas, livro a livro, sem passar pelo cache do modo lazy.
+ *
+ * O arquivo é escrito ao lado com ".tmp" e renomeado no fim: quem lê a extração
+ * nunca vê um arquivo pela metade. Para análise das notas há também o retrato
+ * colunar das reviews ({@link #exportReviewColumns}).
+ */
+public final class CatalogExporter {
+
+    /** Linhas e bytes escritos e a vazão; {@code error} não nulo se a exportação falhou. **/
+    public record Report(String source, long rows, long bytes, double seconds, String error) {
+        public double rowsPerSecond() {
+            return seconds > 0 ? rows / seconds : 0;
+        }
+
+        @Override
+        public String toString() {
+            if (error != null) return String.format("%s: falhou depois de %,d linhas (%s)", source, rows, error);
+            return String.format("%s: %,d linhas, %,d KB em %.2f s (%,.0f linhas/s)",
+                    source, rows, bytes / 1024, seconds, rowsPerSecond());
+        }
+    }
+
+    private final BookController books;
+    private final ReviewController reviews;
+    private final CategoryController categories;
+    private final UserController users;
+
+    public CatalogExporter(BookController books, ReviewController reviews, CategoryController categories,
+                           UserController users) {
+        this.books = books;
+        this.reviews = reviews;
+        this.categories = categories;
+        this.users = users;
+    }
+
+    public Report exportBooks(Path file) {
+        return exportBooks(file, book -> true);
+    }
+
+    public Report exportBooks(Path file, Predicate<? super Book> filter) {
+        return export(file, "livros", List.of("id", "name", "price", "author", "publisher", "pages", "score"),
+                out -> books.forEach(book -> {
+                    if (!filter.test(book)) return;
+                    out.row(book.getId(), book.getName(), book.getPrice(), book.getAuthor(), book.getPublisher(),
+                            book.getPages(), books.scoreOf(book.getId()));
+                }));
+    }
+
+    public Report exportReviews(Path file) {
+        return exportReviews(file, (book, review) -> true);
+    }
+
+    public Report exportReviews(Path file, BiPredicate<? super Book, ? super Review> filter) {
+        return export(file, "reviews", List.of("id", "bookId", "authorId", "username", "score", "comment"),
+                out -> books.forEach(book -> reviews.forEachOf(book, review -> {
+                    if (!filter.test(book, review)) return;
+                    out.row(review.getId(), book.getId(), review.getAuthorId(), review.getAuthor().getUsername(),
+                            review.getScore(), review.getComment());
+                })));
+    }
+
+    public Report exportCategories(Path file) {
+        return exportCategories(file, category -> true);
+    }
+
+    public Report exportCategories(Path file, Predicate<? super Category> filter) {
+        return export(file, "categorias", List.of("id", "name", "parentId", "bookIds"),
+                out -> categories.forEach(category -> {
+                    if (!filter.test(category)) return;
+                    List<Book> inCategory = category.getBooks();
+                    int[] bookIds = new int[inCategory.size()];
+                    for (int i = 0; i < bookIds.length; i++) bookIds[i] = inCategory.get(i).getId();
+                    out.row(category.getId(), category.getName(), categories.parentIdOf(category.getId()), bookIds);
+                }));
+    }
+
+    public Report exportShelves(Path file) {
+        return exportShelves(file, (owner, shelf) -> true);
+    }
+
+    /** As estantes de todos os usuários, com o dono de cada uma. **/
+    public Report exportShelves(Path file, BiPredicate<? super User, ? super Shelf> filter) {
+        return export(file, "estantes", List.of("id", "name", "ownerId", "username", "bookIds"),
+                out -> users.forEach(owner -> {
+                    for (Shelf shelf : owner.getShelves()) {
+                        if (!filter.test(owner, shelf)) continue;
+                        List<Book> stored = shelf.getStoredBooks();
+                        int[] bookIds = new int[stored.size()];
+                        for (int i = 0; i < bookIds.length; i++) bookIds[i] = stored.get(i).getId();
+                        out.row(shelf.getId(), shelf.getName(), owner.getId(), owner.getUsername(), bookIds);
+                    }
+                }));
+    }
+
+    /**
+     * Retrato colunar das reviews ({@link ReviewColumns}) no diretório {@code dir},
+     * com a relação entre livros e categorias, para médias e distribuições sem
+     * carregar o acervo. O diretório anterior só é trocado no fim.
+     */
+    public Report exportReviewColumns(Path dir) {
+        String source = "colunas das reviews para " + dir;
+        long start = System.nanoTime();
+        ReviewColumns.Writer out = null;
+        try {
+            Path parent = dir.toAbsolutePath().getParent();
+            if (parent != null) Files.createDirectories(parent);
+            out = new ReviewColumns.Writer(dir, PersistenceConfig.columnBlockRows(),
+                    PersistenceConfig.exportBufferBytes());
+            ReviewColumns.Writer columns = out;
+            books.forEach(book -> reviews.forEachOf(book, review -> {
+                try {
+                    columns.review(book.getId(), review.getAuthorId(), review.getScore(), review.getComment());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+            categories.forEach(category -> {
+                try {
+                    for (Book book : category.getBooks()) columns.bookCategory(category.getId(), book.getId());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            long bytes = out.bytes();
+            out.close();
+            return new Report(source, out.reviewCount(), bytes, (System.nanoTime() - start) / 1e9, null);
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("[ERRO] Falha ao exportar " + source + ": " + e.getMessage());
+            if (out != null) out.abort();
+            return new Report(source, out == null ? 0 : out.reviewCount(), 0, (System.nanoTime() - start) / 1e9,
+                    e.getMessage());
+        }
+    }
+
+    private Report export(Path file, String what, List<String> columns, Consumer<Output> rows) {
+        String source = what + " para " + file;
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        long start = System.nanoTime();
+        Output out = null;
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) Files.createDirectories(parent);
+            out = new Output(tmp, Format.of(file), columns);
+            try (Output open = out) {
+                rows.accept(open);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return new Report(source, out.rows, out.bytes, (System.nanoTime() - start) / 1e9, null);
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("[ERRO] Falha ao exportar " + source + ": " + e.getMessage());
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {
+                // fica o .tmp; a próxima exportação o sobrescreve
+            }
+            return new Report(source, out == null ? 0 : out.rows, out == null ? 0 : out.bytes,
+                    (System.nanoTime() - start) / 1e9, e.getMessage());
+        }
+    }
+
+    /**
+     * Linhas no formato escolhido, codificadas em UTF-8 num buffer fixo que vai
+     * para o canal quando enche. Valores: texto, número, null (vazio no CSV) e
+     * int[] (ids separados por espaço no CSV, lista no JSONL).
+     */
+    private static final class Output implements Closeable {
+        private final Format format;
+        private final List<String> columns;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(PersistenceConfig.exportBufferBytes());
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final StringBuilder line = new StringBuilder(256);
+        private long rows;
+        private long bytes;
+
+        Output(Path file, Format format, List<String> columns) throws IOException {
+            this.format = format;
+            this.columns = columns;
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            if (format == Format.CSV) {
+                line.setLength(0);
+                for (int i = 0; i < columns.size(); i++) {
+                    if (i > 0) line.append(',');
+                    line.append(columns.get(i));
+                }
+                write(line.append('\n'));
+            }
+        }
+
+        void row(Object... values) {
+            line.setLength(0);
+            if (format == Format.CSV) {
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) line.append(',');
+                    appendCsv(values[i]);
+                }
+            } else {
+                line.append('{');
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) line.append(',');
+                    appendJsonString(columns.get(i));
+                    line.append(':');
+                    appendJson(values[i]);
+                }
+                line.append('}');
+            }
+            write(line.append('\n'));
+            rows++;
+        }
+
+        private void appendCsv(Object value) {
+            if (value == null) return;
+            if (value instanceof int[] ids) {
+                for (int i = 0; i < ids.length; i++) {
+                    if (i > 0) line.append(' ');
+                    line.append(ids[i]);
+                }
+                return;
+            }
+            String text = value.toString();
+            boolean quote = !text.isEmpty() && (text.indexOf(',') >= 0 || text.indexOf('"') >= 0
+                    || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0
+                    || Character.isWhitespace(text.charAt(0)) || Character.isWhitespace(text.charAt(text.length() - 1)));
+            if (!quote) {
+                line.append(text);
+                return;
+            }
+            line.append('"');
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '"') line.append('"');
+                line.append(c);
+            }
+            line.append('"');
+        }
+
+        private void appendJson(Object value) {
+            if (value == null) {
+                line.append("null");
+            } else if (value instanceof int[] ids) {
+                line.append('[');
+                for (int i = 0; i < ids.length; i++) {
+                    if (i > 0) line.append(',');
+                    line.append(ids[i]);
+                }
+                line.append(']');
+            } else if (value instanceof Number number) {
+                line.append(number);
+            } else {
+                appendJsonString(value.toString());
+            }
+        }
+
+        private void appendJsonString(String text) {
+            line.append('"');
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '"' -> line.append("\\\"");
+                    case '\\' -> line.append("\\\\");
+                    case '\n' -> line.append("\\n");
+                    case '\r' -> line.append("\\r");
+                    case '\t' -> line.append("\\t");
+                    default -> {
+                        if (c < 0x20) line.append(String.format("\\u%04x", (int) c));
+                        else line.append(c);
+                    }
+                }
+            }
+            line.append('"');
+        }
+
+        /** Codifica a linha no buffer; cada vez que ele enche, esvazia no canal. **/
+        private void write(CharSequence text) {
+            CharBuffer in = CharBuffer.wrap(text);
+            try {
+                while (true) {
+                    CoderResult result = encoder.encode(in, buffer, false);
+                    if (result.isOverflow()) drain();
+                    else if (result.isUnderflow()) break;
+                    else result.throwException();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) bytes += channel.write(buffer);
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (channel) {
+                drain();
+                channel.force(false);
+            }
+        }
+    }
+}
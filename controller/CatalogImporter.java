@@ -0,0 +1,496 @@
+package controller;
+
+import controller.persistence.PersistenceConfig;
+import model.Book;
+import model.Review;
+import model.User;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Importação em lote de livros e reviews a partir de CSV (com cabeçalho) ou
+ * JSONL (um objeto por linha), em estágios ligados por filas limitadas:
+ *
+ *   leitura (uma thread, lotes de linhas) -> parse e validação (N threads,
+ *   objetos construídos pelos Builders com ids reservados por lote) ->
+ *   inserção (thread de quem chama: insertAll no controlador, um fsync por lote).
+ *
+ * Quando parsers ou inserção ficam para trás, as filas enchem e a leitura
+ * espera: a memória fica em poucos lotes, qualquer que seja o tamanho do
+ * arquivo. Linhas rejeitadas não interrompem a importação; vão para o relatório.
+ *
+ * Colunas (sem diferenciar maiúsculas) dos livros: name, price, author,
+ * publisher, pages; só name é obrigatória. Das reviews: bookId, username,
+ * score, comment; o livro precisa existir no acervo e o usuário estar cadastrado.
+ */
+public final class CatalogImporter {
+
+    public enum Format {
+        CSV, JSONL;
+
+        /** Pela extensão: .jsonl, .ndjson e .json são JSONL; o resto, CSV. **/
+        public static Format of(Path file) {
+            String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            return name.endsWith(".jsonl") || name.endsWith(".ndjson") || name.endsWith(".json") ? JSONL : CSV;
+        }
+    }
+
+    /** Linhas lidas, importadas e rejeitadas (com os primeiros motivos) e a vazão. **/
+    public record Report(String source, long lines, long imported, long rejected, List<String> errors, double seconds) {
+        public double rowsPerSecond() {
+            return seconds > 0 ? imported / seconds : 0;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(String.format(
+                    "%s: %,d linhas, %,d importadas, %,d rejeitadas em %.2f s (%,.0f linhas/s)",
+                    source, lines, imported, rejected, seconds, rowsPerSecond()));
+            for (String error : errors) sb.append("\n  ").append(error);
+            if (rejected > errors.size()) sb.append(String.format("%n  ... e mais %,d", rejected - errors.size()));
+            return sb.toString();
+        }
+    }
+
+    private static final int REPORTED_ERRORS = 20;
+
+    private record Chunk(long firstLine, List<String> lines) {}
+    private static final Chunk END_OF_INPUT = new Chunk(-1, List.of());
+
+    private record Row<T>(long line, T value) {}
+    /** Lote já construído e as linhas rejeitadas nele; {@code last}: o parser terminou. **/
+    private record Parsed<T>(List<Row<T>> rows, List<String> errors, boolean last) {}
+
+    /** Review validada, ainda fora do livro: o livro é buscado na inserção. **/
+    private record PendingReview(int bookId, Review review) {}
+
+    /** Valida os campos de uma linha e devolve como construir o objeto com o id reservado. **/
+    @FunctionalInterface
+    private interface RowReader<T> {
+        IntFunction<T> read(Map<String, String> fields);
+    }
+
+    /** Insere um lote; devolve as linhas rejeitadas nessa etapa. **/
+    @FunctionalInterface
+    private interface Inserter<T> {
+        List<String> insert(List<Row<T>> rows);
+    }
+
+    private final BookController books;
+    private final UserController users;
+    private final ReviewController reviews;
+
+    public CatalogImporter(BookController books, UserController users, ReviewController reviews) {
+        this.books = books;
+        this.users = users;
+        this.reviews = reviews;
+    }
+
+    public Report importBooks(Path file) {
+        return run(file, "livros", CatalogImporter::readBook, books::reserveIds, rows -> {
+            List<Book> batch = new ArrayList<>(rows.size());
+            for (Row<Book> row : rows) batch.add(row.value());
+            books.insertAll(batch);
+            return List.of();
+        });
+    }
+
+    /** Os autores são procurados numa cópia do índice de nomes, tirada no início: os parsers não tocam no controlador. **/
+    public Report importReviews(Path file) {
+        Map<String, User> byName = new HashMap<>();
+        for (User user : users.listAll()) byName.putIfAbsent(user.getUsername().toLowerCase(Locale.ROOT), user);
+        return run(file, "reviews", fields -> readReview(fields, byName), reviews::reserveIds, this::insertReviews);
+    }
+
+    private List<String> insertReviews(List<Row<PendingReview>> rows) {
+        Map<Book, List<Review>> byBook = new LinkedHashMap<>();
+        Map<Integer, Book> found = new HashMap<>();
+        List<String> errors = new ArrayList<>();
+        for (Row<PendingReview> row : rows) {
+            int bookId = row.value().bookId();
+            Book book = found.computeIfAbsent(bookId, books::findById);
+            if (book == null) {
+                errors.add(lineError(row.line(), "livro " + bookId + " não existe"));
+                continue;
+            }
+            byBook.computeIfAbsent(book, b -> new ArrayList<>()).add(row.value().review());
+        }
+        reviews.insertAll(byBook);
+        return errors;
+    }
+
+    // --- pipeline ---
+
+    private <T> Report run(Path file, String what, RowReader<T> reader, IntUnaryOperator reserveIds,
+                           Inserter<T> inserter) {
+        String source = what + " de " + file;
+        if (books.refuseWrite()) return new Report(source, 0, 0, 0, List.of(), 0);
+        long start = System.nanoTime();
+        Format format = Format.of(file);
+        int parsers = PersistenceConfig.importParsers();
+        int capacity = PersistenceConfig.importQueueBatches();
+
+        BufferedReader in;
+        List<String> header = null;
+        try {
+            in = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+            if (format == Format.CSV) {
+                String line = in.readLine();
+                header = new ArrayList<>();
+                if (line != null) {
+                    for (String name : splitCsv(stripBom(line))) header.add(name.trim().toLowerCase(Locale.ROOT));
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("[ERRO] Falha ao ler " + file + ": " + e.getMessage());
+            return new Report(source, 0, 0, 0, List.of(), 0);
+        }
+
+        BlockingQueue<Chunk> raw = new ArrayBlockingQueue<>(capacity);
+        BlockingQueue<Parsed<T>> parsed = new ArrayBlockingQueue<>(capacity);
+        AtomicReference<String> readFailure = new AtomicReference<>();
+        long firstLine = format == Format.CSV ? 2 : 1;
+        List<Thread> threads = new ArrayList<>();
+        threads.add(start("import-reader",
+                () -> readChunks(in, firstLine, PersistenceConfig.importBatchRows(), raw, parsers, readFailure)));
+        List<String> columns = header;
+        for (int i = 0; i < parsers; i++) {
+            threads.add(start("import-parser-" + (i + 1),
+                    () -> parseChunks(raw, parsed, format, columns, reader, reserveIds)));
+        }
+
+        long lines = 0;
+        long imported = 0;
+        long rejected = 0;
+        List<String> errors = new ArrayList<>();
+        try {
+            for (int finished = 0; finished < parsers; ) {
+                Parsed<T> batch = parsed.take();
+                if (batch.last()) {
+                    finished++;
+                    continue;
+                }
+                List<String> batchErrors = new ArrayList<>(batch.errors());
+                if (!batch.rows().isEmpty()) batchErrors.addAll(inserter.insert(batch.rows()));
+                lines += batch.rows().size() + batch.errors().size();
+                imported += batch.rows().size() + batch.errors().size() - batchErrors.size();
+                rejected += batchErrors.size();
+                for (String error : batchErrors) if (errors.size() < REPORTED_ERRORS) errors.add(error);
+            }
+        } catch (InterruptedException e) {
+            threads.forEach(Thread::interrupt);
+            Thread.currentThread().interrupt();
+            errors.add("importação interrompida");
+        }
+        if (readFailure.get() != null) errors.add("leitura interrompida: " + readFailure.get());
+        return new Report(source, lines, imported, rejected, errors, (System.nanoTime() - start) / 1e9);
+    }
+
+    private static Thread start(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /** Lê o arquivo em lotes de linhas; no fim (ou numa falha), um marcador por parser. **/
+    private static void readChunks(BufferedReader in, long firstLine, int batchRows, BlockingQueue<Chunk> raw,
+                                   int parsers, AtomicReference<String> failure) {
+        try (in) {
+            long next = firstLine;
+            List<String> lines = new ArrayList<>(batchRows);
+            String line;
+            while ((line = in.readLine()) != null) {
+                lines.add(line);
+                if (lines.size() < batchRows) continue;
+                raw.put(new Chunk(next, lines));
+                next += lines.size();
+                lines = new ArrayList<>(batchRows);
+            }
+            if (!lines.isEmpty()) raw.put(new Chunk(next, lines));
+        } catch (IOException | UncheckedIOException e) {
+            failure.set(e.getMessage());
+        } catch (InterruptedException e) {
+            return; // importação cancelada: ninguém mais espera os marcadores
+        }
+        try {
+            for (int i = 0; i < parsers; i++) raw.put(END_OF_INPUT);
+        } catch (InterruptedException ignored) {
+            // cancelada
+        }
+    }
+
+    /** Valida as linhas de cada lote, reserva os ids de uma vez e constrói os objetos. **/
+    private static <T> void parseChunks(BlockingQueue<Chunk> raw, BlockingQueue<Parsed<T>> parsed, Format format,
+                                        List<String> header, RowReader<T> reader, IntUnaryOperator reserveIds) {
+        try {
+            while (true) {
+                Chunk chunk = raw.take();
+                if (chunk == END_OF_INPUT) break;
+
+                List<Long> lineNumbers = new ArrayList<>(chunk.lines().size());
+                List<IntFunction<T>> builders = new ArrayList<>(chunk.lines().size());
+                List<String> errors = new ArrayList<>();
+                for (int i = 0; i < chunk.lines().size(); i++) {
+                    String text = chunk.lines().get(i);
+                    long line = chunk.firstLine() + i;
+                    if (text.isBlank()) continue;
+                    try {
+                        builders.add(reader.read(format == Format.CSV ? csvFields(header, text) : jsonFields(text)));
+                        lineNumbers.add(line);
+                    } catch (RuntimeException e) {
+                        errors.add(lineError(line, e.getMessage()));
+                    }
+                }
+
+                int first = builders.isEmpty() ? 0 : reserveIds.applyAsInt(builders.size());
+                List<Row<T>> rows = new ArrayList<>(builders.size());
+                for (int i = 0; i < builders.size(); i++) {
+                    try {
+                        rows.add(new Row<>(lineNumbers.get(i), builders.get(i).apply(first + i)));
+                    } catch (RuntimeException e) {
+                        errors.add(lineError(lineNumbers.get(i), e.getMessage()));
+                    }
+                }
+                parsed.put(new Parsed<>(rows, errors, false));
+            }
+            parsed.put(new Parsed<>(List.of(), List.of(), true));
+        } catch (InterruptedException e) {
+            // importação cancelada
+        }
+    }
+
+    private static String lineError(long line, String reason) {
+        return "linha " + line + ": " + reason;
+    }
+
+    // --- validação (as mesmas regras dos Builders, mais a conversão dos números) ---
+
+    private static IntFunction<Book> readBook(Map<String, String> fields) {
+        String name = required(fields, "name");
+        Double price = decimal(fields, "price");
+        String author = text(fields, "author");
+        String publisher = text(fields, "publisher");
+        Integer pages = integer(fields, "pages");
+        return id -> new Book.Builder()
+                .setId(id)
+                .setName(name)
+                .setPrice(price)
+                .setAuthor(author)
+                .setPublisher(publisher)
+                .setPages(pages)
+                .build();
+    }
+
+    private static IntFunction<PendingReview> readReview(Map<String, String> fields, Map<String, User> byName) {
+        Integer bookId = integer(fields, "bookid");
+        if (bookId == null) throw new IllegalArgumentException("campo bookId vazio ou ausente");
+        String username = required(fields, "username");
+        User author = byName.get(username.toLowerCase(Locale.ROOT));
+        if (author == null) throw new IllegalArgumentException("usuário " + username + " não cadastrado");
+        Double score = decimal(fields, "score");
+        String comment = text(fields, "comment");
+        return id -> new PendingReview(bookId, new Review.Builder()
+                .setId(id)
+                .setAuthor(author)
+                .setComment(comment)
+                .setScore(score)
+                .build());
+    }
+
+    private static String text(Map<String, String> fields, String name) {
+        String value = fields.get(name);
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    private static String required(Map<String, String> fields, String name) {
+        String value = text(fields, name);
+        if (value == null) throw new IllegalArgumentException("campo " + name + " vazio ou ausente");
+        return value;
+    }
+
+    private static Double decimal(Map<String, String> fields, String name) {
+        String value = text(fields, name);
+        if (value == null) return null;
+        try {
+            double parsed = Double.parseDouble(value);
+            if (Double.isFinite(parsed)) return parsed;
+        } catch (NumberFormatException ignored) {
+            // relatado abaixo
+        }
+        throw new IllegalArgumentException(name + " não é um número: " + value);
+    }
+
+    private static Integer integer(Map<String, String> fields, String name) {
+        String value = text(fields, name);
+        if (value == null) return null;
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " não é um inteiro: " + value);
+        }
+    }
+
+    // --- formatos ---
+
+    private static String stripBom(String line) {
+        return line.startsWith("﻿") ? line.substring(1) : line;
+    }
+
+    /** Campos de uma linha CSV pelos nomes do cabeçalho. **/
+    private static Map<String, String> csvFields(List<String> header, String line) {
+        List<String> values = splitCsv(line);
+        if (values.size() != header.size()) {
+            throw new IllegalArgumentException(values.size() + " campos, o cabeçalho tem " + header.size());
+        }
+        Map<String, String> fields = HashMap.newHashMap(header.size());
+        for (int i = 0; i < values.size(); i++) fields.put(header.get(i), values.get(i));
+        return fields;
+    }
+
+    /** Separa por vírgulas; entre aspas duplas a vírgula é texto e "" é uma aspa. Um registro por linha. **/
+    private static List<String> splitCsv(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) throw new IllegalArgumentException("aspas sem fechamento (registros de várias linhas não são aceitos)");
+        values.add(field.toString());
+        return values;
+    }
+
+    /** Campos de um objeto JSON plano (valores texto, número, booleano ou null), com as chaves em minúsculas. **/
+    private static Map<String, String> jsonFields(String line) {
+        return new JsonLine(line).object();
+    }
+
+    private static final class JsonLine {
+        private final String text;
+        private int pos;
+
+        JsonLine(String text) {
+            this.text = stripBom(text);
+        }
+
+        Map<String, String> object() {
+            Map<String, String> fields = new HashMap<>();
+            expect('{');
+            if (peek() == '}') {
+                pos++;
+            } else {
+                while (true) {
+                    String key = string();
+                    expect(':');
+                    String value = value();
+                    if (value != null) fields.put(key.toLowerCase(Locale.ROOT), value);
+                    char c = next();
+                    if (c == '}') break;
+                    if (c != ',') throw error("esperava ',' ou '}'");
+                }
+            }
+            if (peek() != 0) throw error("texto depois do objeto");
+            return fields;
+        }
+
+        private String value() {
+            char c = peek();
+            if (c == '"') return string();
+            if (c == '{' || c == '[') throw error("valores aninhados não são aceitos");
+            int start = pos;
+            while (pos < text.length() && ",}] \t".indexOf(text.charAt(pos)) < 0) pos++;
+            String literal = text.substring(start, pos);
+            if (literal.isEmpty()) throw error("valor ausente");
+            return literal.equals("null") ? null : literal;
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                if (pos >= text.length()) throw error("texto sem fechamento");
+                char c = text.charAt(pos++);
+                if (c == '"') return sb.toString();
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                if (pos >= text.length()) throw error("escape incompleto");
+                char escaped = text.charAt(pos++);
+                switch (escaped) {
+                    case '"', '\\', '/' -> sb.append(escaped);
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'n' -> sb.append('\n');
+                    case 'r' -> sb.append('\r');
+                    case 't' -> sb.append('\t');
+                    case 'u' -> {
+                        if (pos + 4 > text.length()) throw error("escape \\u incompleto");
+                        try {
+                            sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("escape \\u inválido");
+                        }
+                        pos += 4;
+                    }
+                    default -> throw error("escape inválido \\" + escaped);
+                }
+            }
+        }
+
+        /** Próximo caractere fora os espaços, sem consumir; 0 no fim. **/
+        private char peek() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+            return pos < text.length() ? text.charAt(pos) : 0;
+        }
+
+        private char next() {
+            char c = peek();
+            if (c == 0) throw error("fim inesperado");
+            pos++;
+            return c;
+        }
+
+        private void expect(char wanted) {
+            if (next() != wanted) throw error("esperava '" + wanted + "'");
+        }
+
+        private IllegalArgumentException error(String reason) {
+            return new IllegalArgumentException("JSON inválido, " + reason + " (coluna " + (pos + 1) + ")");
+        }
+    }
+}
@@ -1,17 +1,60 @@
 package controller;
 
+import controller.persistence.CatalogImage;
+import controller.persistence.DerivedIndexes;
+import controller.persistence.EntityType;
+import controller.persistence.MutationJournal;
+import controller.persistence.SharedCatalog;
 import model.Book;
 import model.Category;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public final class CategoryController extends GlobalElementsController<Category> {
+    // Índice derivado: id da subcategoria -> id da categoria-mãe; persistido em DerivedIndexes
+    private Map<Integer, Integer> parents = new HashMap<>();
+    // Modo somente leitura: categorias e árvore lidas da imagem compartilhada
+    private SharedCatalog catalog;
 
     public CategoryController() {
         super("data/category.dat");
     }
 
+    /** Passa a servir consultas pela imagem do catálogo e a recusar alterações. **/
+    public void attachCatalog(SharedCatalog catalog) {
+        this.catalog = catalog;
+        setReadOnly();
+    }
+
+    @Override
+    public Category findById(int id) {
+        if (catalog == null) return super.findById(id);
+        return catalog.current().category(id);
+    }
+
+    @Override
+    public List<Category> listAll() {
+        if (catalog == null) return super.listAll();
+        CatalogImage image = catalog.current();
+        List<Category> all = new ArrayList<>();
+        for (int id : image.categoryIds()) all.add(image.category(id));
+        return all;
+    }
+
+    @Override
+    public void forEach(Consumer<? super Category> action) {
+        if (catalog == null) {
+            super.forEach(action);
+            return;
+        }
+        CatalogImage image = catalog.current();
+        for (int id : image.categoryIds()) action.accept(image.category(id));
+    }
+
     @Override
     protected Category build(Object... args) {
         String name = (String) args[0];
@@ -31,16 +74,32 @@ public final class CategoryController extends GlobalElementsController<Category>
         Category.resetIdCounter(nextId);
     }
 
+    @Override
+    protected int nextId() {
+        return Category.getNextId();
+    }
+
+    @Override
+    protected EntityType idType() {
+        return EntityType.CATEGORY;
+    }
+
     // ======== Métodos de Livros ========
 
     public boolean addBookToCategory(Category category, Book book) {
+        if (refuseWrite()) return false;
         if (category == null || book == null) return false;
-        return category.addBook(book);
+        boolean added = category.addBook(book);
+        if (added) logMutation(MutationJournal.Op.UPDATE, category);
+        return added;
     }
 
     public boolean removeBookFromCategory(Category category, Book book) {
+        if (refuseWrite()) return false;
         if (category == null || book == null) return false;
-        return category.removeBook(book);
+        boolean removed = category.removeBook(book);
+        if (removed) logMutation(MutationJournal.Op.UPDATE, category);
+        return removed;
     }
 
     public List<Book> listBooksInCategory(Category category) {
@@ -50,20 +109,33 @@ public final class CategoryController extends GlobalElementsController<Category>
     // ======== Métodos de Subcategorias ========
 
     public boolean addSubCategory(Category parent, String subName) {
+        if (refuseWrite()) return false;
         if (parent == null) return false;
         Category sub = new Category.Builder()
                 .setName(subName)
                 .build();
-        crudAux.addObject(sub);
-        return parent.addSubCategory(sub);
+        storage.put(sub);
+        logMutation(MutationJournal.Op.CREATE, sub);
+        boolean added = parent.addSubCategory(sub);
+        if (added) {
+            parents.put(sub.getId(), parent.getId());
+            logMutation(MutationJournal.Op.UPDATE, parent);
+        }
+        return added;
     }
 
     public boolean removeSubCategory(Category parent, int subId) {
+        if (refuseWrite()) return false;
         if (parent == null) return false;
         Category sub = findById(subId);
         if (sub == null) return false;
         boolean removed = parent.removeSubCategory(sub);
-        if (removed) crudAux.delete(sub);
+        if (removed) {
+            parents.remove(subId);
+            storage.delete(subId);
+            logMutation(MutationJournal.Op.UPDATE, parent);
+            logMutation(MutationJournal.Op.DELETE, sub);
+        }
         return removed;
     }
 
@@ -71,8 +143,58 @@ public final class CategoryController extends GlobalElementsController<Category>
         return category.getSubCategories();
     }
 
+    /** Categoria da qual esta é subcategoria, ou null se for raiz. **/
+    public Category findParent(Category category) {
+        if (category == null) return null;
+        if (catalog != null) {
+            int parentId = catalog.current().parentOf(category.getId());
+            return parentId == 0 ? null : findById(parentId);
+        }
+        Integer parentId = parents.get(category.getId());
+        return parentId == null ? null : findById(parentId);
+    }
+
+    /** Id da categoria da qual esta é subcategoria, ou 0 se for raiz. **/
+    public int parentIdOf(int categoryId) {
+        if (catalog != null) return catalog.current().parentOf(categoryId);
+        return parents.getOrDefault(categoryId, 0);
+    }
+
+    /** Categorias que não são subcategoria de nenhuma outra. **/
+    public List<Category> listRoots() {
+        if (catalog != null) {
+            CatalogImage image = catalog.current();
+            List<Category> roots = new ArrayList<>();
+            for (int id : image.categoryIds()) {
+                if (image.parentOf(id) == 0) roots.add(image.category(id));
+            }
+            return roots;
+        }
+        return listAll().stream()
+                .filter(c -> !parents.containsKey(c.getId()))
+                .toList();
+    }
+
+    // ======== Índice da árvore ========
+
+    @Override
+    public void loadAll() {
+        super.loadAll();
+        restoreTreeIndex(null);
+    }
+
+    /** Adota o índice da árvore gravado ou, se null, reconstrói a partir das categorias carregadas. **/
+    public void restoreTreeIndex(Map<Integer, Integer> saved) {
+        parents = saved != null ? saved : DerivedIndexes.treeOf(storage.scan());
+    }
+
+    public Map<Integer, Integer> treeIndex() {
+        return new HashMap<>(parents);
+    }
+
     @Override
     public boolean deleteById(int id) {
+        if (refuseWrite()) return false;
         Category category = findById(id);
         if (category == null) return false;
 
@@ -84,6 +206,7 @@ public final class CategoryController extends GlobalElementsController<Category>
             deleteById(sub.getId());
         }
 
+        parents.remove(id);
         return super.deleteById(id);
     }
 }
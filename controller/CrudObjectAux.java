@@ -1,34 +1,62 @@
 package controller;
 
+import model.ChangeTracker;
 import model.CrudObjectInterface;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 
 public final class CrudObjectAux<T extends CrudObjectInterface> {
 
-    private ArrayList<T> allObjects = new ArrayList<>();
+    // Por id, na ordem de inclusão: incluir, buscar e remover sem percorrer a lista
+    private LinkedHashMap<Integer, T> allObjects = new LinkedHashMap<>();
 
+    /** Cópia dos objetos, na ordem de inclusão. **/
     public ArrayList<T> getAllObjects() {
-        return allObjects;
+        return new ArrayList<>(allObjects.values());
     }
 
+    /** Os objetos, sem cópia e só para leitura; não pode ser percorrida enquanto outra thread altera. **/
+    public Collection<T> view() {
+        return Collections.unmodifiableCollection(allObjects.values());
+    }
+
+    public int size() {
+        return allObjects.size();
+    }
 
+    /** Inclui o objeto; um de mesmo id é substituído, na mesma posição. **/
     public void addObject(T object) {
-        if (object != null && !allObjects.contains(object)) allObjects.add(object);
+        if (object != null) allObjects.put(object.getId(), object);
+    }
+
+    /** Inclui vários objetos de uma vez (ex.: importação em lote). **/
+    public void addObjects(Collection<? extends T> objects) {
+        for (T object : objects) addObject(object);
     }
 
 
     public T findById(int id) {
-        for (T object : allObjects) if (object.getId() == id) return object;
-        return null;
+        return allObjects.get(id);
     }
 
 
     public boolean delete(T object) {
-        return allObjects.remove(object);
+        boolean removed = object != null && allObjects.remove(object.getId(), object);
+        if (removed) ChangeTracker.markRemoved(object);
+        return removed;
+    }
+
+    /** Tira o objeto da lista sem registrá-lo como removido (ele continua existindo em outro meio). **/
+    public boolean evict(T object) {
+        return object != null && allObjects.remove(object.getId(), object);
     }
 
-    public void setObjects(ArrayList<T> loadedList) {
-        this.allObjects = loadedList;
+    public void setObjects(Collection<? extends T> loadedList) {
+        LinkedHashMap<Integer, T> loaded = LinkedHashMap.newLinkedHashMap(loadedList.size());
+        for (T object : loadedList) loaded.put(object.getId(), object);
+        this.allObjects = loaded;
     }
 }
@@ -1,19 +1,38 @@
 package controller;
 
+import controller.persistence.BlockCompression;
+import controller.persistence.GroupCommit;
+import controller.persistence.PersistenceConfig;
+import controller.persistence.SegmentedFile;
+import model.CrudObjectInterface;
+
 import java.io.*;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.List;
 
 public final class DataManager {
     private DataManager() {}
 
+    /** Listas de entidades vão em segmentos com checksum ({@link SegmentedFile}); o resto, serializado inteiro. **/
     public static void save(Object data, String filename) {
         try {
             File file = new File(filename);
             File parent = file.getParentFile();
             if (parent != null) parent.mkdirs();
-            try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
-                out.writeObject(data);
+            List<CrudObjectInterface> entities = entitiesOf(data);
+            if (entities != null) {
+                try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+                    SegmentedFile.write(out, entities, PersistenceConfig.segmentObjects(),
+                            BlockCompression.Settings.fromConfig());
+                }
+            } else {
+                try (ObjectOutputStream out = new ObjectOutputStream(
+                        BlockCompression.output(new FileOutputStream(file), BlockCompression.Settings.fromConfig()))) {
+                    out.writeObject(data);
+                }
             }
+            GroupCommit.shared().commit(GroupCommit.file(file.toPath()));
         } catch (IOException e) {
             System.err.println("[ERRO] Falha ao salvar dados em " + filename + ": " + e.getMessage());
         }
@@ -34,16 +53,35 @@ public final class DataManager {
                 return null;
             }
 
-            // 🔹 Se existir, tenta ler
-            try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
+            // 🔹 Se existir, tenta ler: segmentos corrompidos são pulados e o resto é carregado
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            if (SegmentedFile.isSegmented(bytes)) {
+                SegmentedFile.Result<Object> result = SegmentedFile.read(bytes);
+                for (SegmentedFile.LostRange lost : result.lost()) {
+                    System.err.println("[ERRO] Dados perdidos em " + filename + ", " + lost
+                            + "; o restante foi carregado.");
+                }
+                return (T) new ArrayList<>(result.objects());
+            }
+            try (ObjectInputStream in = new ObjectInputStream(BlockCompression.input(new ByteArrayInputStream(bytes)))) {
                 return (T) in.readObject();
             }
         } catch (EOFException e) {
             // Arquivo existe, mas está vazio
             return (T) new ArrayList<>();
-        } catch (IOException | ClassNotFoundException e) {
+        } catch (IOException | ClassNotFoundException | IllegalArgumentException e) {
             System.err.println("[ERRO] Falha ao carregar " + filename + ": " + e.getMessage());
             return (T) new ArrayList<>();
         }
     }
+
+    /** A lista, se todos os elementos forem entidades com id; senão null. **/
+    @SuppressWarnings("unchecked")
+    private static List<CrudObjectInterface> entitiesOf(Object data) {
+        if (!(data instanceof List<?> list)) return null;
+        for (Object element : list) {
+            if (!(element instanceof CrudObjectInterface)) return null;
+        }
+        return (List<CrudObjectInterface>) list;
+    }
 }
@@ -1,85 +1,220 @@
 package controller;
 
+import controller.persistence.EntityRecord;
+import controller.persistence.EntityType;
+import controller.persistence.FilteredEngine;
+import controller.persistence.IdSequences;
+import controller.persistence.MutationJournal;
+import controller.persistence.PersistenceConfig;
+import controller.persistence.StorageEngine;
+import controller.persistence.StorageEngines;
 import model.CrudObjectInterface;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 public abstract class GlobalElementsController<T extends CrudObjectInterface> implements Controller<T> {
-    protected final CrudObjectAux<T> crudAux;
+    protected final FilteredEngine<T> storage;
     protected final String dataFile;
+    protected MutationJournal journal;
+    // Catálogo compartilhado somente leitura: create, update e delete são recusados
+    protected boolean readOnly;
 
-    // O construtor permanece o mesmo que você enviou
+    // O engine vem da configuração (biblioteca.engine.<arquivo>); ver StorageEngines
     protected GlobalElementsController(String dataFile) {
-        this.crudAux = new CrudObjectAux<T>();
+        this(dataFile, StorageEngines.forDataFile(dataFile));
+    }
+
+    // Todo engine ganha um filtro de Bloom dos ids, gravado ao lado do arquivo de dados
+    protected GlobalElementsController(String dataFile, StorageEngine<T> engine) {
+        this.storage = new FilteredEngine<>(engine, sidecar(dataFile, ".ids.bloom"),
+                PersistenceConfig.bloomFalsePositiveRate());
         this.dataFile = dataFile;
         new java.io.File("data").mkdirs();
     }
 
+    /** Arquivo auxiliar ao lado do de dados: data/users.dat -> data/users.ids.bloom **/
+    protected static String sidecar(String dataFile, String suffix) {
+        int dot = dataFile.lastIndexOf('.');
+        return (dot > dataFile.lastIndexOf('/') ? dataFile.substring(0, dot) : dataFile) + suffix;
+    }
+
+    /** Grava os filtros de busca junto com o checkpoint. **/
+    public void saveLookupFilters() {
+        captureLookupFilters().run();
+    }
+
+    /** Copia os filtros de busca na thread de quem chama; a gravação devolvida pode rodar em outra. **/
+    public Runnable captureLookupFilters() {
+        return storage.captureFilter();
+    }
+
+    /** Tamanho e taxa de falso positivo dos filtros de busca. **/
+    public String lookupStats() {
+        return "ids: " + storage.idFilter().stats();
+    }
+
+    /** Compacta o armazenamento, se o engine acumular versões antigas (manutenção agendada). **/
+    public void compactStorage() {
+        storage.compact();
+    }
+
+    /** Passa a registrar cada create/update/delete no journal informado. **/
+    public void attachJournal(MutationJournal journal) {
+        this.journal = journal;
+    }
+
+    /** Recusa, a partir daqui, qualquer alteração (processo somente leitura). **/
+    public void setReadOnly() {
+        this.readOnly = true;
+    }
+
+    /** Se somente leitura, avisa e devolve true: quem chama desiste da alteração. **/
+    protected boolean refuseWrite() {
+        if (!readOnly) return false;
+        System.err.println("[ERRO] Catálogo aberto somente para leitura: alteração ignorada.");
+        return true;
+    }
+
+    protected void logMutation(MutationJournal.Op op, T obj) {
+        if (obj == null) return;
+        if (op == MutationJournal.Op.UPDATE) storage.put(obj);
+        if (journal == null) return;
+        journal.append(op, op == MutationJournal.Op.DELETE
+                ? EntityRecord.deletionOf(obj)
+                : EntityRecord.of(obj));
+    }
+
+    /** Avisa o engine de uma alteração feita direto no objeto (ex.: reviews de um livro). **/
+    public void markChanged(T obj) {
+        if (obj != null) storage.put(obj);
+    }
+
+    /** Como {@link #markChanged(CrudObjectInterface)} para um lote: uma passada (e um commit) no engine. **/
+    public void markChanged(List<T> objects) {
+        if (!objects.isEmpty()) storage.putAll(objects);
+    }
+
     protected abstract T build(Object... args);
     protected abstract void applyUpdate(T obj, Object... args);
     protected abstract void resetIdCounter(int nextId);
+    /** Próximo id que o modelo vai alocar. **/
+    protected abstract int nextId();
+    /** Tipo das entidades, para a marca d'água de ids ({@link IdSequences}). **/
+    protected abstract EntityType idType();
+
+    /**
+     * Ajusta o contador de ids sem percorrer os objetos: o maior entre a marca
+     * gravada, o maior id que o engine já guardou e {@code highestSeen} (maior id
+     * visto pela carga, inclusive de objetos removidos; 0 se não se sabe).
+     */
+    public void restoreIdCounter(int highestSeen) {
+        int highest = Math.max(highestSeen, storage.highestId());
+        resetIdCounter(Math.max(idSequences().next(idType()), highest + 1));
+    }
+
+    /** Marcas d'água do diretório do arquivo de dados (data/ids.seq para os controladores da aplicação). **/
+    private IdSequences idSequences() {
+        String parent = new java.io.File(dataFile).getParent();
+        return IdSequences.in(parent == null ? "." : parent);
+    }
+
+    /** Sobe a marca d'água do tipo até o contador atual; quem grava os dados chama {@link IdSequences#save}. **/
+    public void recordIdSequence() {
+        idSequences().raise(idType(), nextId());
+    }
+
+    /**
+     * Reserva {@code count} ids consecutivos para objetos construídos fora do
+     * create (ex.: importação em lote, com o id passado ao Builder).
+     *
+     * @return o primeiro id reservado
+     */
+    public synchronized int reserveIds(int count) {
+        int first = nextId();
+        resetIdCounter(first + count);
+        return first;
+    }
+
+    /**
+     * Inclui objetos já construídos, com ids reservados ({@link #reserveIds}):
+     * uma passada no engine e um único fsync no journal para o lote todo.
+     */
+    public void insertAll(List<T> objects) {
+        if (refuseWrite() || objects.isEmpty()) return;
+        storage.putAll(objects);
+        if (journal == null) return;
+        List<EntityRecord> records = new ArrayList<>(objects.size());
+        for (T obj : objects) records.add(EntityRecord.of(obj));
+        journal.appendAll(MutationJournal.Op.CREATE, records);
+    }
 
     @Override
     public T create(Object... args) {
+        if (refuseWrite()) return null;
         T obj = build(args);
-        if (obj != null) crudAux.addObject(obj);
+        if (obj != null) {
+            storage.put(obj);
+            logMutation(MutationJournal.Op.CREATE, obj);
+        }
         return obj;
     }
 
     @Override
     public void update(int id, Object... args) {
-        T obj = crudAux.findById(id);
-        if (obj != null) applyUpdate(obj, args);
+        if (refuseWrite()) return;
+        T obj = storage.get(id);
+        if (obj != null) {
+            applyUpdate(obj, args);
+            logMutation(MutationJournal.Op.UPDATE, obj);
+        }
     }
 
     @Override
-    public List<T> listAll() { return new ArrayList<>(crudAux.getAllObjects()); }
+    public List<T> listAll() { return storage.scan(); }
+
+    /** Percorre os objetos sem a cópia do listAll (ex.: exportação). **/
+    public void forEach(Consumer<? super T> action) { storage.forEach(action); }
 
     @Override
-    public T findById(int id) { return crudAux.findById(id); }
+    public T findById(int id) { return storage.get(id); }
 
     @Override
     public boolean deleteById(int id) {
-        T obj = crudAux.findById(id);
-        return crudAux.delete(obj);
+        if (refuseWrite()) return false;
+        T obj = storage.get(id);
+        boolean removed = obj != null && storage.delete(id);
+        if (removed) logMutation(MutationJournal.Op.DELETE, obj);
+        return removed;
     }
 
     @Override
     public void saveAll() {
-        List<T> all = new ArrayList<>(crudAux.getAllObjects());
-        if (all.isEmpty()) {
-            resetIdCounter(1);
-        } else {
-            int maxId = all.stream()
-                    .mapToInt(CrudObjectInterface::getId)
-                    .max()
-                    .orElse(0);
-            resetIdCounter(maxId + 1);
-        }
-        DataManager.save(all, dataFile);
+        if (readOnly) return; // processo somente leitura não grava nada
+        // a marca vai antes dos dados: nunca fica abaixo de um id já gravado
+        recordIdSequence();
+        idSequences().save();
+        storage.flush();
     }
 
-    @SuppressWarnings("unchecked")
-    @Override
-    public void loadAll() {
-        crudAux.getAllObjects().clear();
-
-        List<T> loaded = DataManager.load(dataFile);
-
-        if (loaded == null || loaded.isEmpty()) {
-            resetIdCounter(1);
-            return;
-        }
-        for (T obj : loaded) crudAux.addObject(obj);
-
-        List<T> all = crudAux.getAllObjects();
+    /**
+     * Substitui o conteúdo do controlador por objetos já carregados
+     * (ex.: vindos do snapshot unificado) e ajusta o contador de ids.
+     */
+    public void restore(List<T> loaded) {
+        restore(loaded, 0);
+    }
 
-        int maxId = all.stream()
-                .mapToInt(CrudObjectInterface::getId)
-                .max()
-                .orElse(0);
+    /** Como {@link #restore(List)}, com o maior id visto pela carga ({@link #restoreIdCounter}). **/
+    public void restore(List<T> loaded, int highestSeen) {
+        storage.replaceAll(loaded);
+        restoreIdCounter(highestSeen);
+    }
 
-        resetIdCounter(maxId + 1);
+    @Override
+    public void loadAll() {
+        storage.load();
+        restoreIdCounter(0);
     }
 }
\ No newline at end of file
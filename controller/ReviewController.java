@@ -1,17 +1,46 @@
 package controller;
 
+import controller.persistence.EntityRecord;
+import controller.persistence.EntityType;
+import controller.persistence.IdSequences;
+import controller.persistence.MutationJournal;
+import controller.persistence.ReviewStore;
 import model.Book;
 import model.Review;
 import model.User;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
 public final class ReviewController implements UserObserver {
 
     private final BookController bookController;
+    private final UserController userController;
     private User currentUser;
+    private MutationJournal journal;
+    private ReviewStore store;
 
-    public ReviewController(User user, BookController bookController) {
+    /** {@code userController} resolve os autores das reviews lidas do {@link ReviewStore}. **/
+    public ReviewController(User user, BookController bookController, UserController userController) {
         this.currentUser = user;
         this.bookController = bookController;
+        this.userController = userController;
+    }
+
+    /** Cada review criada/alterada/removida vira uma entrada no journal. **/
+    public void attachJournal(MutationJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Passa a gravar as reviews no {@link ReviewStore}: create/update/delete viram
+     * escritas no store (e não entradas no journal), e findById/listAll leem dele.
+     */
+    public void attachStore(ReviewStore store) {
+        this.store = store;
     }
 
     @Override
@@ -37,12 +66,43 @@ public final class ReviewController implements UserObserver {
                 .build();
 
         book.addReview(review);
-        saveAll();
+        logMutation(MutationJournal.Op.CREATE, book, review);
         return review;
     }
 
+    /** Reserva {@code count} ids de review consecutivos (importação em lote); devolve o primeiro. **/
+    public synchronized int reserveIds(int count) {
+        int first = Review.getNextId();
+        Review.resetIdCounter(first + count);
+        return first;
+    }
+
+    /**
+     * Inclui reviews já construídas (ids de {@link #reserveIds}) nos seus livros,
+     * sem passar pelo usuário logado: as notas de cada livro são recalculadas uma
+     * vez e o lote vai ao ReviewStore ou ao journal com um único fsync.
+     */
+    public void insertAll(Map<Book, List<Review>> reviewsByBook) {
+        if (reviewsByBook.isEmpty()) return;
+        Map<Integer, List<Review>> byBookId = new LinkedHashMap<>();
+        List<EntityRecord> records = new ArrayList<>();
+        for (Map.Entry<Book, List<Review>> entry : reviewsByBook.entrySet()) {
+            Book book = entry.getKey();
+            for (Review review : entry.getValue()) {
+                book.addReview(review);
+                records.add(EntityRecord.of(book, review));
+            }
+            byBookId.put(book.getId(), entry.getValue());
+        }
+        bookController.markChanged(new ArrayList<>(reviewsByBook.keySet()));
+        if (store != null) store.putAll(byBookId);
+        else if (journal != null) journal.appendAll(MutationJournal.Op.CREATE, records);
+        else saveAll();
+    }
+
     public void update(Book book, Review review, String newComment, Double newRank) {
-        if (book == null || review == null || !book.getReviews().contains(review)) return;
+        review = residentOf(book, review);
+        if (review == null) return;
         if (currentUser == null || !reviewAuthorIsCurrentUser(review)) {
             System.out.println("Você só pode editar suas próprias reviews.");
             return;
@@ -51,34 +111,87 @@ public final class ReviewController implements UserObserver {
         if (newComment != null) review.setComment(newComment);
         if (newRank != null) review.setScore(newRank);
 
-        saveAll();
+        logMutation(MutationJournal.Op.UPDATE, book, review);
     }
 
     public void delete(Book book, Review review) {
-        if (book == null || review == null) return;
+        review = residentOf(book, review);
+        if (review == null) return;
         if (currentUser == null || !reviewAuthorIsCurrentUser(review)) {
             System.out.println("Você só pode remover suas próprias reviews.");
             return;
         }
 
         book.removeReview(review);
-        saveAll();
+        logMutation(MutationJournal.Op.DELETE, book, review);
     }
 
     public void listAll(Book book) {
         if (book == null) return;
 
         System.out.println("Reviews de \"" + book.getName() + "\":");
-        if (book.getReviews().isEmpty()) {
+        if (bookController.getCatalog() != null) {
+            // a imagem compartilhada guarda só os agregados, não o texto das reviews
+            System.out.printf(" (média %.1f; o texto das reviews não faz parte do catálogo somente leitura)%n",
+                    bookController.scoreOf(book.getId()));
+            return;
+        }
+        List<Review> reviews = reviewsOf(book);
+        if (reviews.isEmpty()) {
             System.out.println(" (Nenhuma review)");
         } else {
-            book.getReviews().forEach(r -> {
+            reviews.forEach(r -> {
                 String marker = (currentUser != null && reviewAuthorIsCurrentUser(r)) ? " (sua)" : "";
                 System.out.println(" - " + r + marker);
             });
         }
     }
 
+    /**
+     * Percorre as reviews do livro sem prendê-las a ele: com o ReviewStore, cada
+     * entrada vira uma review avulsa e o cache do modo lazy não é tocado.
+     */
+    public void forEachOf(Book book, Consumer<? super Review> action) {
+        if (book == null) return;
+        if (store == null) {
+            book.getReviews().forEach(action);
+            return;
+        }
+        for (ReviewStore.Entry entry : store.scan(book.getId())) {
+            Review review = ReviewStore.toReview(entry, userController::findById);
+            if (review != null) action.accept(review);
+        }
+    }
+
+    private void logMutation(MutationJournal.Op op, Book book, Review review) {
+        bookController.markChanged(book);
+        if (store != null) {
+            if (op == MutationJournal.Op.DELETE) store.delete(book.getId(), review.getId());
+            else store.put(book.getId(), review);
+            return;
+        }
+        if (journal == null) {
+            saveAll();
+            return;
+        }
+        journal.append(op, op == MutationJournal.Op.DELETE
+                ? EntityRecord.deletionOf(book, review)
+                : EntityRecord.of(book, review));
+    }
+
+    /**
+     * A instância da review que está no livro. No modo lazy as reviews de um livro
+     * podem ter sido descartadas e recarregadas desde que quem chama obteve a sua.
+     */
+    private Review residentOf(Book book, Review review) {
+        if (book == null || review == null) return null;
+        if (book.getReviews().contains(review)) return review;
+        return book.getReviews().stream()
+                .filter(r -> r.getId() == review.getId())
+                .findFirst()
+                .orElse(null);
+    }
+
     private boolean reviewAuthorIsCurrentUser(Review review) {
         return currentUser != null && review != null &&
                 currentUser.getUsername().equals(review.getAuthor().getUsername());
@@ -109,30 +222,79 @@ public final class ReviewController implements UserObserver {
         }
     }
 
+    /**
+     * Reviews vivem dentro dos livros. Com journal ou ReviewStore anexado, quem
+     * grava é o checkpoint unificado do acervo; isto só roda sem nenhum dos dois.
+     */
     public void saveAll() {
         bookController.saveAll();
     }
 
     public void loadAll() {
         bookController.loadAll();
+    }
 
-        int maxId = bookController.listAll().stream()
-                .flatMap(book -> book.getReviews().stream())
-                .mapToInt(Review::getId)
-                .max()
-                .orElse(0);
+    /**
+     * Ajusta o contador de ids das reviews pela marca gravada ({@link IdSequences})
+     * e por {@code highestSeen}, o maior id visto na carga. Só sem marca e sem
+     * ReviewStore (dados antigos) percorre as reviews dos livros carregados.
+     */
+    public void restoreIdCounter(int highestSeen) {
+        int persisted = IdSequences.shared().next(EntityType.REVIEW);
+        int highest = highestSeen;
+        if (store != null) {
+            // o store conhece todas, inclusive as de livros não carregados ou ainda sem reviews em memória
+            highest = Math.max(highest, store.maxReviewId());
+        } else if (persisted == 0) {
+            // reviews só existem em livros já carregados (ver BookController.listLoaded)
+            highest = Math.max(highest, bookController.listLoaded().stream()
+                    .flatMap(book -> book.getReviews().stream())
+                    .mapToInt(Review::getId)
+                    .max()
+                    .orElse(0));
+        }
+        Review.resetIdCounter(Math.max(persisted, highest + 1));
+    }
 
-        Review.resetIdCounter(maxId + 1);
+    /** Sobe a marca d'água das reviews até o contador atual. **/
+    public void recordIdSequence() {
+        IdSequences.shared().raise(EntityType.REVIEW, Review.getNextId());
     }
 
     public Review findById(Book book, int reviewId) {
         if (book == null) return null;
+        if (store != null) {
+            ReviewStore.Entry entry = store.get(book.getId(), reviewId);
+            return entry == null ? null : resident(book, entry);
+        }
         return book.getReviews().stream()
                 .filter(r -> r.getId() == reviewId)
                 .findFirst()
                 .orElse(null);
     }
 
+    /** Reviews do livro; com o store ativo, na ordem e com o conteúdo gravados nele. **/
+    private List<Review> reviewsOf(Book book) {
+        if (store == null) return book.getReviews();
+
+        List<Review> reviews = new ArrayList<>();
+        for (ReviewStore.Entry entry : store.scan(book.getId())) {
+            Review review = resident(book, entry);
+            if (review != null) reviews.add(review);
+        }
+        return reviews;
+    }
+
+    /** A instância já presente no livro, ou uma nova montada a partir do store. **/
+    private Review resident(Book book, ReviewStore.Entry entry) {
+        for (Review r : book.getReviews()) {
+            if (r.getId() == entry.reviewId()) return r;
+        }
+        Review review = ReviewStore.toReview(entry, userController::findById);
+        if (review != null) book.addReview(review);
+        return review;
+    }
+
     public void deleteById(Book book, int reviewId) {
         Review review = findById(book, reviewId);
         if (review != null) delete(book, review);
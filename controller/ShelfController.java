@@ -9,8 +9,8 @@ import java.util.List;
 
 public final class ShelfController extends UserBoundElementsController<Shelf> implements UserObserver {
 
-    public ShelfController(User user) {
-        super(user);
+    public ShelfController(User user, UserController users) {
+        super(user, users);
     }
 
     @Override
@@ -25,6 +25,7 @@ public final class ShelfController extends UserBoundElementsController<Shelf> im
 
         Shelf shelf = new Shelf(name);
         user.addShelf(shelf); // Modifica o usuário em memória
+        logUserChange();
         return shelf;
     }
 
@@ -34,7 +35,10 @@ public final class ShelfController extends UserBoundElementsController<Shelf> im
         if (args.length == 0 || !(args[0] instanceof String newName)) return;
 
         Shelf shelf = findById(id);
-        if (shelf != null) shelf.setName(newName); // Modifica o usuário em memória
+        if (shelf != null) {
+            shelf.setName(newName); // Modifica o usuário em memória
+            logUserChange();
+        }
     }
 
     @Override
@@ -58,7 +62,9 @@ public final class ShelfController extends UserBoundElementsController<Shelf> im
         if (this.user == null) return false; // Proteção
 
         Shelf shelf = findById(id);
-        return shelf != null && user.removeShelf(shelf); // Modifica o usuário em memória
+        boolean removed = shelf != null && user.removeShelf(shelf); // Modifica o usuário em memória
+        if (removed) logUserChange();
+        return removed;
     }
 
 
@@ -66,7 +72,10 @@ public final class ShelfController extends UserBoundElementsController<Shelf> im
         if (this.user == null) return; // Proteção
 
         Shelf shelf = findById(shelfId);
-        if (shelf != null) shelf.addBook(book);
+        if (shelf != null) {
+            shelf.addBook(book);
+            logUserChange();
+        }
     }
     /**
      * Retorna a lista de livros de uma estante específica.
@@ -94,7 +103,9 @@ public final class ShelfController extends UserBoundElementsController<Shelf> im
 
         if (bookToRemove != null) {
             // Assumindo que seu model Shelf tem um método removeBook(Book b)
-            return shelf.removeBook(bookToRemove);
+            boolean removed = shelf.removeBook(bookToRemove);
+            if (removed) logUserChange();
+            return removed;
         }
         return false;
     }
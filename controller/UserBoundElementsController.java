@@ -1,16 +1,34 @@
 package controller;
 
+import controller.persistence.EntityRecord;
+import controller.persistence.MutationJournal;
 import model.CrudObjectInterface;
 import model.User;
 
 public abstract class UserBoundElementsController<T extends CrudObjectInterface> implements Controller<T> {
     protected User user;
+    protected final UserController users;
+    protected MutationJournal journal;
 
-    protected UserBoundElementsController(User user) {
+    protected UserBoundElementsController(User user, UserController users) {
         this.user = user;
+        this.users = users;
         new java.io.File("data").mkdirs();
     }
 
+    /** Passa a registrar no journal as alterações feitas no usuário dono. **/
+    public void attachJournal(MutationJournal journal) {
+        this.journal = journal;
+    }
+
+    /** Os elementos pertencem ao usuário: registra a nova imagem dele. **/
+    protected void logUserChange() {
+        if (user != null && users != null)
+            users.markChanged(user);
+        if (journal != null && user != null)
+            journal.append(MutationJournal.Op.UPDATE, EntityRecord.of(user));
+    }
+
     @Override
     public void saveAll() {
 
@@ -1,36 +1,96 @@
 package controller;
 
+import controller.persistence.BloomFilter;
+import controller.persistence.DerivedIndexes;
+import controller.persistence.EntityType;
+import controller.persistence.PersistenceConfig;
 import model.User;
 
-import java.util.ArrayList;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public final class UserController extends GlobalElementsController<User> {
+    // Filtro dos nomes de usuário (sem diferenciar maiúsculas, como usernameExists)
+    private final File namesFilterFile = new File(sidecar(dataFile, ".names.bloom"));
+    private BloomFilter usernames = BloomFilter.withCapacity(0, PersistenceConfig.bloomFalsePositiveRate());
+    // Índice derivado: hash do nome (BloomFilter.hashOf) -> id; persistido em DerivedIndexes
+    private Map<Long, Integer> idsByName = new HashMap<>();
+
     public UserController() {
         super( "data/users.dat");
     }
 
     @Override
-    public void saveAll() {
-        // 2. Salve a LISTA de usuários que está DENTRO do crudAux.
-        DataManager.save(crudAux.getAllObjects(), "data/users.dat");
+    public User create(Object... args) {
+        User user = super.create(args);
+        if (user != null) {
+            addUsername(user.getUsername());
+            idsByName.put(BloomFilter.hashOf(user.getUsername()), user.getId());
+        }
+        return user;
+    }
+
+    @Override
+    public void insertAll(List<User> users) {
+        super.insertAll(users);
+        if (readOnly) return;
+        for (User user : users) {
+            addUsername(user.getUsername());
+            idsByName.put(BloomFilter.hashOf(user.getUsername()), user.getId());
+        }
+    }
+
+    @Override
+    public boolean deleteById(int id) {
+        User user = findById(id);
+        boolean removed = super.deleteById(id);
+        if (removed) forgetName(user);
+        return removed;
+    }
+
+    @Override
+    public void restore(List<User> loaded, int highestSeen) {
+        super.restore(loaded, highestSeen);
+        restoreNameFilter();
     }
 
     @Override
     public void loadAll() {
-        ArrayList<User> loadedList = DataManager.load("data/users.dat");
+        super.loadAll();
+        restoreNameFilter();
+        restoreNameIndex(null);
+    }
 
-        if (loadedList == null) {
-            loadedList = new ArrayList<>();
-        }
+    /** Adota o índice de nomes gravado ou, se null, reconstrói a partir dos usuários carregados. **/
+    public void restoreNameIndex(Map<Long, Integer> saved) {
+        idsByName = saved != null ? saved : DerivedIndexes.namesOf(storage.scan());
+    }
 
-        crudAux.setObjects(loadedList);
+    public Map<Long, Integer> nameIndex() {
+        return new HashMap<>(idsByName);
+    }
 
+    @Override
+    public Runnable captureLookupFilters() {
+        Runnable ids = super.captureLookupFilters();
+        BloomFilter names = usernames.copy();
+        long stamp = namesStamp(storage.scan());
+        return () -> {
+            ids.run();
+            try {
+                names.save(namesFilterFile, stamp);
+            } catch (IOException e) {
+                System.err.println("[ERRO] Falha ao gravar " + namesFilterFile + ": " + e.getMessage());
+            }
+        };
+    }
 
-        int maxId = 0;
-        for (User u : loadedList) {
-            if (u.getId() > maxId) maxId = u.getId();
-        }
-        User.resetIdCounter(maxId + 1);
+    @Override
+    public String lookupStats() {
+        return super.lookupStats() + "\nnomes: " + usernames.stats();
     }
 
     @Override
@@ -49,7 +109,12 @@ public final class UserController extends GlobalElementsController<User> {
         String newUsername = (String) args[0];
         String newPassword = (String) args[1];
 
-        if (newUsername != null) user.setUsername(newUsername);
+        if (newUsername != null) {
+            forgetName(user);
+            user.setUsername(newUsername);
+            addUsername(newUsername); // o nome antigo continua no filtro até a próxima reconstrução
+            idsByName.put(BloomFilter.hashOf(newUsername), user.getId());
+        }
         if (newPassword != null) user.setPassword(newPassword);
     }
 
@@ -58,16 +123,81 @@ public final class UserController extends GlobalElementsController<User> {
         User.resetIdCounter(nextId);
     }
 
+    @Override
+    protected int nextId() {
+        return User.getNextId();
+    }
+
+    @Override
+    protected EntityType idType() {
+        return EntityType.USER;
+    }
+
     // --- métodos específicos ---
     public User login(String username, String password) {
-        return crudAux.getAllObjects().stream()
+        if (username == null || !usernames.mightContain(username)) return null;
+        User indexed = findByName(username);
+        if (indexed == null) return null;
+        if (indexed.getUsername().equals(username)) return indexed.getPassword().equals(password) ? indexed : null;
+        // mesmo nome com outra caixa (ou colisão de hash): confere todos
+        return storage.scan().stream()
                 .filter(u -> u.getUsername().equals(username) && u.getPassword().equals(password))
                 .findFirst()
                 .orElse(null);
     }
 
     public boolean usernameExists(String username) {
-        return crudAux.getAllObjects().stream()
-                .anyMatch(u -> u.getUsername().equalsIgnoreCase(username));
+        if (username == null || !usernames.mightContain(username)) return false;
+        boolean exists = findByName(username) != null;
+        if (!exists) usernames.reportFalsePositive();
+        return exists;
+    }
+
+    /** Usuário com o nome, sem diferenciar maiúsculas, pelo índice de nomes. **/
+    private User findByName(String username) {
+        Integer id = idsByName.get(BloomFilter.hashOf(username));
+        User user = id == null ? null : findById(id);
+        if (user != null && user.getUsername().equalsIgnoreCase(username)) return user;
+        if (user == null) return null;
+        return storage.scan().stream() // colisão de hash
+                .filter(u -> u.getUsername().equalsIgnoreCase(username))
+                .findFirst()
+                .orElse(null);
+    }
+
+    /** Tira o nome atual do índice; se outro usuário tiver o mesmo nome (outra caixa), ele passa a ser o indexado. **/
+    private void forgetName(User user) {
+        if (user == null) return;
+        long key = BloomFilter.hashOf(user.getUsername());
+        if (!idsByName.remove(key, user.getId())) return;
+        storage.scan().stream()
+                .filter(u -> u.getId() != user.getId() && u.getUsername().equalsIgnoreCase(user.getUsername()))
+                .findFirst()
+                .ifPresent(u -> idsByName.put(key, u.getId()));
+    }
+
+    private void addUsername(String username) {
+        usernames.add(username);
+        if (usernames.isOverCapacity()) rebuildNameFilter(storage.scan());
+    }
+
+    /** Reaproveita o filtro gravado se ele cobre exatamente os nomes carregados. **/
+    private void restoreNameFilter() {
+        List<User> all = storage.scan();
+        BloomFilter saved = BloomFilter.load(namesFilterFile, namesStamp(all));
+        if (saved != null && !saved.isOverCapacity()) usernames = saved;
+        else rebuildNameFilter(all);
+    }
+
+    private void rebuildNameFilter(List<User> all) {
+        BloomFilter fresh = BloomFilter.withCapacity(all.size() * 2, PersistenceConfig.bloomFalsePositiveRate());
+        for (User u : all) fresh.add(u.getUsername());
+        usernames = fresh;
+    }
+
+    private static long namesStamp(List<User> users) {
+        long[] keys = new long[users.size()];
+        for (int i = 0; i < keys.length; i++) keys[i] = BloomFilter.hashOf(users.get(i).getUsername());
+        return BloomFilter.stampOf(keys);
     }
 }
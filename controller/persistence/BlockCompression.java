@@ -0,0 +1,425 @@
+package controller.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compressão em blocos independentes (Deflater/Inflater do JDK) para os
+ * arquivos de dados. Cada bloco de {@code blockSize} bytes é comprimido e
+ * descomprimido numa thread do {@link Workers}, com uma janela limitada de
+ * blocos em andamento, então gravação e leitura continuam em fluxo.
+ *
+ * Formato: cabeçalho [magic][versão][codec][tamanho do bloco], blocos
+ * [tamanho original][tamanho comprimido][bytes], um bloco de tamanho zero como
+ * fim, a tabela com o offset de cada bloco e o rodapé
+ * [quantidade][tamanho original total][offset da tabela][magic]. A tabela
+ * permite ler um trecho qualquer descomprimindo só os blocos dele
+ * ({@link RandomAccess}).
+ *
+ * Arquivos sem o magic são lidos como estão, então dados antigos e
+ * {@link Codec#NONE} seguem o caminho sem compressão.
+ */
+public final class BlockCompression {
+
+    public static final int MAGIC = 0x42435A50; // "BCZP"
+    private static final short VERSION = 1;
+    private static final int FOOTER_BYTES = 24;
+
+    private BlockCompression() {}
+
+    public enum Codec { NONE, DEFLATE }
+
+    /** Codec, tamanho de bloco e nível de compressão a usar na gravação. **/
+    public record Settings(Codec codec, int blockSize, int level) {
+        public static final Settings NONE = new Settings(Codec.NONE, 0, 0);
+
+        public static Settings fromConfig() {
+            return new Settings(PersistenceConfig.compressionCodec(),
+                    PersistenceConfig.compressionBlockBytes(), PersistenceConfig.compressionLevel());
+        }
+    }
+
+    /** Fluxo de gravação: comprimido em blocos, ou o próprio {@code out} com {@link Codec#NONE}. **/
+    public static OutputStream output(OutputStream out, Settings settings) throws IOException {
+        if (settings.codec() == Codec.NONE) return out;
+        return new BlockOutputStream(out, settings);
+    }
+
+    /** Fluxo de leitura que descomprime se o arquivo tiver o magic; senão devolve os bytes como estão. **/
+    public static InputStream input(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, 1 << 16);
+        buffered.mark(Integer.BYTES);
+        byte[] magic = buffered.readNBytes(Integer.BYTES);
+        buffered.reset();
+        if (magic.length < Integer.BYTES || ByteBuffer.wrap(magic).getInt() != MAGIC) return buffered;
+        return new BufferedInputStream(new BlockInputStream(buffered), 1 << 16);
+    }
+
+    /** Quantos blocos manter em compressão ou descompressão ao mesmo tempo. **/
+    private static int window() {
+        return Math.max(2, Runtime.getRuntime().availableProcessors()) * 2;
+    }
+
+    private static byte[] deflate(byte[] raw, int length, int level) {
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(raw, 0, length);
+            deflater.finish();
+            byte[] out = new byte[length + length / 1000 + 64];
+            int size = 0;
+            while (!deflater.finished()) {
+                if (size == out.length) out = Arrays.copyOf(out, out.length * 2);
+                size += deflater.deflate(out, size, out.length - size);
+            }
+            return Arrays.copyOf(out, size);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] compressed, int rawLength) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] raw = new byte[rawLength];
+            int size = 0;
+            while (size < rawLength) {
+                int n = inflater.inflate(raw, size, rawLength - size);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) break;
+                size += n;
+            }
+            if (size != rawLength) throw new IOException("Bloco comprimido truncado");
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IOException("Bloco comprimido inválido: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] await(Future<byte[]> block) throws IOException {
+        try {
+            return Workers.await(block);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Falha no bloco comprimido: " + e.getMessage(), e);
+        }
+    }
+
+    /** Comprime blocos cheios em paralelo e os grava na ordem original. **/
+    private static final class BlockOutputStream extends FilterOutputStream {
+        private record Pending(int rawLength, Future<byte[]> compressed) {}
+
+        private final DataOutputStream out;
+        private final Settings settings;
+        private final ArrayDeque<Pending> pending = new ArrayDeque<>();
+        private final LongList offsets = new LongList();
+        private byte[] block;
+        private int filled;
+        private long position;
+        private long rawTotal;
+        private boolean closed;
+
+        BlockOutputStream(OutputStream target, Settings settings) throws IOException {
+            super(target);
+            this.out = new DataOutputStream(target);
+            this.settings = settings;
+            this.block = new byte[settings.blockSize()];
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeByte(settings.codec().ordinal());
+            out.writeInt(settings.blockSize());
+            position = out.size();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            block[filled++] = (byte) b;
+            if (filled == block.length) submitBlock();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = Math.min(len, block.length - filled);
+                System.arraycopy(b, off, block, filled, n);
+                filled += n;
+                off += n;
+                len -= n;
+                if (filled == block.length) submitBlock();
+            }
+        }
+
+        private void submitBlock() throws IOException {
+            byte[] raw = block;
+            int length = filled;
+            int level = settings.level();
+            pending.add(new Pending(length, Workers.submitNested(() -> deflate(raw, length, level))));
+            rawTotal += length;
+            block = new byte[settings.blockSize()];
+            filled = 0;
+            while (pending.size() >= window()) writeOldest();
+        }
+
+        private void writeOldest() throws IOException {
+            Pending next = pending.poll();
+            byte[] compressed = await(next.compressed());
+            offsets.add(position);
+            out.writeInt(next.rawLength());
+            out.writeInt(compressed.length);
+            out.write(compressed);
+            position += 8 + compressed.length;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // blocos incompletos só vão para o disco no close
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                if (filled > 0) submitBlock();
+                while (!pending.isEmpty()) writeOldest();
+                out.writeInt(0); // fim dos blocos
+                out.writeInt(0);
+                long tableOffset = position + 8;
+                for (int i = 0; i < offsets.size(); i++) out.writeLong(offsets.get(i));
+                out.writeInt(offsets.size());
+                out.writeLong(rawTotal);
+                out.writeLong(tableOffset);
+                out.writeInt(MAGIC);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /** Lê blocos à frente e os descomprime em paralelo, entregando os bytes em ordem. **/
+    private static final class BlockInputStream extends InputStream {
+        private final DataInputStream in;
+        private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+        private byte[] current = new byte[0];
+        private int position;
+        private boolean exhausted;
+
+        BlockInputStream(InputStream source) throws IOException {
+            this.in = new DataInputStream(source);
+            in.readInt(); // magic
+            short version = in.readShort();
+            if (version != VERSION) throw new IOException("Versão de compressão não suportada: " + version);
+            int codec = in.readUnsignedByte();
+            if (codec != Codec.DEFLATE.ordinal()) throw new IOException("Codec de compressão desconhecido: " + codec);
+            in.readInt(); // tamanho do bloco: cada bloco já traz o seu
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) return -1;
+            return current[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (!fill()) return -1;
+            int n = Math.min(len, current.length - position);
+            System.arraycopy(current, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return current.length - position;
+        }
+
+        private boolean fill() throws IOException {
+            while (position == current.length) {
+                readAhead();
+                if (pending.isEmpty()) return false;
+                current = await(pending.poll());
+                position = 0;
+            }
+            return true;
+        }
+
+        private void readAhead() throws IOException {
+            while (!exhausted && pending.size() < window()) {
+                int rawLength = in.readInt();
+                int compressedLength = in.readInt();
+                if (rawLength == 0) {
+                    exhausted = true; // o resto é a tabela de blocos
+                    return;
+                }
+                if (rawLength < 0 || compressedLength < 0) throw new IOException("Bloco comprimido inválido");
+                byte[] compressed = in.readNBytes(compressedLength);
+                if (compressed.length != compressedLength) throw new EOFException("Arquivo comprimido truncado");
+                pending.add(Workers.submitNested(() -> inflate(compressed, rawLength)));
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (Future<byte[]> f : pending) f.cancel(false);
+            pending.clear();
+            in.close();
+        }
+    }
+
+    /**
+     * Leitura posicional sobre os bytes originais do arquivo, comprimido ou não.
+     * Num arquivo comprimido, só os blocos que cobrem o trecho pedido são lidos.
+     */
+    public abstract static class RandomAccess implements Closeable {
+        protected final FileChannel channel;
+
+        private RandomAccess(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        public static RandomAccess open(Path file) throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                if (channel.size() >= Integer.BYTES
+                        && readFully(channel, 0, Integer.BYTES).getInt() == MAGIC) return new Blocks(channel);
+                return new Plain(channel);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /** Tamanho dos dados sem compressão. **/
+        public abstract long size() throws IOException;
+
+        public abstract ByteBuffer read(long position, int length) throws IOException;
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) throw new EOFException("Arquivo truncado");
+            }
+            return buffer.flip();
+        }
+    }
+
+    private static final class Plain extends RandomAccess {
+        Plain(FileChannel channel) {
+            super(channel);
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public ByteBuffer read(long position, int length) throws IOException {
+            return readFully(channel, position, length);
+        }
+    }
+
+    private static final class Blocks extends RandomAccess {
+        private final int blockSize;
+        private final long rawSize;
+        private final long[] offsets;
+        private int cachedBlock = -1;
+        private byte[] cached;
+
+        Blocks(FileChannel channel) throws IOException {
+            super(channel);
+            ByteBuffer header = readFully(channel, Integer.BYTES, 7);
+            if (header.getShort() != VERSION || header.get() != Codec.DEFLATE.ordinal())
+                throw new IOException("Formato de compressão não suportado");
+            blockSize = header.getInt();
+
+            long size = channel.size();
+            if (size < 11 + FOOTER_BYTES) throw new IOException("Arquivo comprimido truncado");
+            ByteBuffer footer = readFully(channel, size - FOOTER_BYTES, FOOTER_BYTES);
+            int count = footer.getInt();
+            rawSize = footer.getLong();
+            long tableOffset = footer.getLong();
+            if (footer.getInt() != MAGIC || count < 0 || tableOffset + (long) count * Long.BYTES != size - FOOTER_BYTES)
+                throw new IOException("Tabela de blocos inválida");
+            ByteBuffer table = readFully(channel, tableOffset, count * Long.BYTES);
+            offsets = new long[count];
+            for (int i = 0; i < count; i++) offsets[i] = table.getLong();
+        }
+
+        @Override
+        public long size() {
+            return rawSize;
+        }
+
+        @Override
+        public ByteBuffer read(long position, int length) throws IOException {
+            if (position < 0 || position + length > rawSize) throw new EOFException("Leitura além do fim");
+            ByteBuffer result = ByteBuffer.allocate(length);
+            while (result.hasRemaining()) {
+                long at = position + result.position();
+                byte[] raw = block((int) (at / blockSize));
+                int from = (int) (at % blockSize);
+                result.put(raw, from, Math.min(result.remaining(), raw.length - from));
+            }
+            return result.flip();
+        }
+
+        /** Blocos lidos em sequência costumam repetir; guarda o último. **/
+        private byte[] block(int index) throws IOException {
+            if (index != cachedBlock) {
+                ByteBuffer frame = readFully(channel, offsets[index], 8);
+                int rawLength = frame.getInt();
+                int compressedLength = frame.getInt();
+                cached = inflate(readFully(channel, offsets[index] + 8, compressedLength).array(), rawLength);
+                cachedBlock = index;
+            }
+            return cached;
+        }
+    }
+
+    /** Lista de longs sem boxing, para a tabela de blocos. **/
+    private static final class LongList {
+        private long[] values = new long[64];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        long get(int i) {
+            return values[i];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package controller.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Filtro de Bloom para descartar buscas por chaves inexistentes sem tocar nos
+ * dados: {@code mightContain == false} garante que a chave nunca foi incluída.
+ * Não há remoção; chaves removidas continuam dando falso positivo até o filtro
+ * ser reconstruído.
+ *
+ * Strings são comparadas sem diferenciar maiúsculas da mesma forma que
+ * {@link String#equalsIgnoreCase}.
+ *
+ * Arquivo (.bloom): magic, versão, carimbo, funções de hash, inclusões, palavras de 64 bits.
+ * O carimbo identifica o conjunto de dados que o filtro cobre; quem carrega
+ * compara com o carimbo esperado e reconstrói o filtro se divergir.
+ */
+public final class BloomFilter {
+
+    private static final int MAGIC = 0x42424C4D; // "BBLM"
+    private static final short VERSION = 1;
+
+    private final long[] words;
+    private final int hashes;
+    private final int capacity;
+    private int count;
+
+    // consultas negativas e falsos positivos informados por quem consultou
+    private long negatives;
+    private long falsePositives;
+
+    private BloomFilter(long[] words, int hashes, int capacity, int count) {
+        this.words = words;
+        this.hashes = hashes;
+        this.capacity = capacity;
+        this.count = count;
+    }
+
+    /** Cópia independente, para gravar em outra thread enquanto este filtro segue recebendo chaves. **/
+    public synchronized BloomFilter copy() {
+        return new BloomFilter(words.clone(), hashes, capacity, count);
+    }
+
+    /** Dimensiona para {@code expected} chaves com a taxa de falso positivo desejada. **/
+    public static BloomFilter withCapacity(int expected, double falsePositiveRate) {
+        int n = Math.max(64, expected);
+        double p = Math.min(0.5, Math.max(1e-9, falsePositiveRate));
+        long bits = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        int hashes = Math.max(1, (int) Math.round((double) bits / n * Math.log(2)));
+        return new BloomFilter(new long[(int) ((bits + 63) / 64)], hashes, n, 0);
+    }
+
+    /** Inclui a chave; só conta como nova se mudou algum bit (reinclusões não gastam capacidade). **/
+    public synchronized void add(long key) {
+        long h1 = mix(key);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        long bits = (long) words.length * 64;
+        boolean changed = false;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bits);
+            long word = words[(int) (bit >>> 6)];
+            words[(int) (bit >>> 6)] = word | (1L << bit);
+            changed |= (word & (1L << bit)) == 0;
+        }
+        if (changed) count++;
+    }
+
+    public void add(String key) {
+        add(hashOf(key));
+    }
+
+    public synchronized boolean mightContain(long key) {
+        long h1 = mix(key);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        long bits = (long) words.length * 64;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bits);
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                negatives++;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean mightContain(String key) {
+        return mightContain(hashOf(key));
+    }
+
+    /** O filtro disse "talvez", mas a chave não existia. **/
+    public synchronized void reportFalsePositive() {
+        falsePositives++;
+    }
+
+    /** Inclusões acima da capacidade degradam a taxa de falso positivo. **/
+    public synchronized boolean isOverCapacity() {
+        return count > capacity;
+    }
+
+    public synchronized int count() {
+        return count;
+    }
+
+    /** Taxa teórica para as inclusões feitas: (1 - e^(-kn/m))^k. **/
+    public synchronized double expectedFalsePositiveRate() {
+        double bits = (double) words.length * 64;
+        return Math.pow(1 - Math.exp(-hashes * count / bits), hashes);
+    }
+
+    /** Falsos positivos sobre todas as consultas por chaves ausentes. **/
+    public synchronized double observedFalsePositiveRate() {
+        long absent = negatives + falsePositives;
+        return absent == 0 ? 0d : (double) falsePositives / absent;
+    }
+
+    public long memoryBytes() {
+        return (long) words.length * Long.BYTES;
+    }
+
+    public synchronized String stats() {
+        return String.format("%d chaves, %d hashes, %.1f KB, FP estimada %.3f%%, FP observada %.3f%% (%d de %d ausentes)",
+                count, hashes, memoryBytes() / 1024.0, expectedFalsePositiveRate() * 100,
+                observedFalsePositiveRate() * 100, falsePositives, negatives + falsePositives);
+    }
+
+    public synchronized void save(File file, long stamp) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(stamp);
+            out.writeInt(hashes);
+            out.writeInt(capacity);
+            out.writeInt(count);
+            out.writeInt(words.length);
+            for (long word : words) out.writeLong(word);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Filtro gravado com o carimbo esperado, ou null se ausente, corrompido ou de outro conjunto. **/
+    public static BloomFilter load(File file, long expectedStamp) {
+        if (!file.exists()) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readShort() != VERSION || in.readLong() != expectedStamp) return null;
+            int hashes = in.readInt();
+            int capacity = in.readInt();
+            int count = in.readInt();
+            int length = in.readInt();
+            if (hashes <= 0 || length <= 0 || length > (1 << 27)) return null;
+            long[] words = new long[length];
+            for (int i = 0; i < length; i++) words[i] = in.readLong();
+            return new BloomFilter(words, hashes, capacity, count);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Carimbo de um conjunto de chaves, independente da ordem: soma das chaves
+     * embaralhadas. Conjuntos diferentes só coincidem por acaso (~2^-64).
+     */
+    public static long stampOf(long[] keys) {
+        long stamp = keys.length;
+        for (long key : keys) stamp += mix(key ^ 0x5851F42D4C957F2DL);
+        return stamp;
+    }
+
+    /** Hash de 64 bits do texto normalizado como em equalsIgnoreCase. **/
+    public static long hashOf(String key) {
+        StringBuilder folded = new StringBuilder(key.length());
+        for (int i = 0; i < key.length(); i++) {
+            folded.append(Character.toLowerCase(Character.toUpperCase(key.charAt(i))));
+        }
+        long h = 0xCBF29CE484222325L; // FNV-1a
+        for (byte b : folded.toString().getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xFF;
+            h *= 0x100000001B3L;
+        }
+        return mix(h);
+    }
+
+    /** Finalizador do SplitMix64: espalha bem chaves sequenciais (ids). **/
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
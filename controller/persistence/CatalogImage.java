@@ -0,0 +1,396 @@
+package controller.persistence;
+
+import model.Book;
+import model.Category;
+import model.ChangeTracker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Imagem somente leitura do catálogo (livros, categorias e agregados das
+ * reviews) num único arquivo, feita para ser mapeada por vários processos ao
+ * mesmo tempo: as páginas ficam no cache do sistema operacional, uma vez só para
+ * todos, e cada processo materializa apenas os objetos que consulta, sem guardá-los.
+ *
+ * Layout: cabeçalho; tabela de livros e tabela de categorias (registros de
+ * tamanho fixo, ordenados por id, achados por busca binária); vetor de ints com
+ * as listas de ids (categorias de cada livro, livros e subcategorias de cada
+ * categoria); heap de strings UTF-8 sem repetição (autores e editoras se repetem).
+ *
+ * O arquivo nunca é alterado no lugar: quem escreve grava um novo ao lado e o
+ * renomeia por cima ({@link #write}); quem já o mapeou segue com a versão antiga
+ * até reabrir (ver {@link SharedCatalog}).
+ */
+public final class CatalogImage {
+
+    private static final int MAGIC = 0x42434154; // "BCAT"
+    private static final short VERSION = 1;
+    private static final int HEADER = 64;
+
+    // cabeçalho
+    private static final int H_SEQUENCE = 8;
+    private static final int H_BOOKS = 16;
+    private static final int H_CATEGORIES = 20;
+    private static final int H_BOOKS_AT = 24;
+    private static final int H_CATEGORIES_AT = 28;
+    private static final int H_INTS_AT = 32;
+    private static final int H_STRINGS_AT = 36;
+    private static final int H_LENGTH = 40;
+
+    // registro de livro; strings e listas são (posição, tamanho)
+    private static final int BOOK_RECORD = 64;
+    private static final int B_ID = 0;
+    private static final int B_PAGES = 4;
+    private static final int B_PRICE = 8;
+    private static final int B_NAME = 16;
+    private static final int B_AUTHOR = 24;
+    private static final int B_PUBLISHER = 32;
+    private static final int B_REVIEWS = 40;
+    private static final int B_CATEGORIES = 44;
+    private static final int B_SCORE_SUM = 52;
+
+    // registro de categoria; C_PARENT = 0 para as raízes
+    private static final int CATEGORY_RECORD = 32;
+    private static final int C_ID = 0;
+    private static final int C_PARENT = 4;
+    private static final int C_NAME = 8;
+    private static final int C_BOOKS = 16;
+    private static final int C_SUBS = 24;
+
+    public static final CatalogImage EMPTY = new CatalogImage(encode(List.of(), List.of(), Map.of(), 0));
+
+    private final ByteBuffer buffer;
+    private final long sequence;
+    private final int bookCount;
+    private final int categoryCount;
+    private final int booksAt;
+    private final int categoriesAt;
+    private final int intsAt;
+    private final int stringsAt;
+
+    private CatalogImage(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.sequence = buffer.getLong(H_SEQUENCE);
+        this.bookCount = buffer.getInt(H_BOOKS);
+        this.categoryCount = buffer.getInt(H_CATEGORIES);
+        this.booksAt = buffer.getInt(H_BOOKS_AT);
+        this.categoriesAt = buffer.getInt(H_CATEGORIES_AT);
+        this.intsAt = buffer.getInt(H_INTS_AT);
+        this.stringsAt = buffer.getInt(H_STRINGS_AT);
+    }
+
+    // --- gravação ---
+
+    /**
+     * Grava a imagem do catálogo: livros e categorias como estão, com a quantidade
+     * e a soma das notas de cada livro vindas do índice ({@code scores}), sem
+     * precisar das reviews em memória. {@code sequence} identifica o checkpoint
+     * de origem.
+     */
+    public static void write(File file, List<Book> books, List<Category> categories,
+                             Map<Integer, DerivedIndexes.Score> scores, long sequence) throws IOException {
+        write(file, encode(books, categories, scores, sequence));
+    }
+
+    /** Grava uma imagem já codificada por {@link #encode}; pode rodar fora da thread que leu os objetos. **/
+    public static void write(File file, ByteBuffer image) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) parent.mkdirs();
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (image.hasRemaining()) channel.write(image);
+            channel.force(true);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (parent != null) GroupCommit.directory(parent.toPath()).force();
+    }
+
+    public static ByteBuffer encode(List<Book> books, List<Category> categories,
+                                     Map<Integer, DerivedIndexes.Score> scores, long sequence) {
+        List<Book> sortedBooks = new ArrayList<>(books);
+        sortedBooks.sort(Comparator.comparingInt(Book::getId));
+        List<Category> sortedCategories = new ArrayList<>(categories);
+        sortedCategories.sort(Comparator.comparingInt(Category::getId));
+
+        Map<Integer, Integer> parents = DerivedIndexes.treeOf(categories);
+        Map<Integer, List<Integer>> categoriesOfBook = new HashMap<>();
+        for (Category category : categories) {
+            for (Book book : category.getBooks()) {
+                categoriesOfBook.computeIfAbsent(book.getId(), id -> new ArrayList<>()).add(category.getId());
+            }
+        }
+
+        Pools pools = new Pools();
+        ByteBuffer bookTable = ByteBuffer.allocate(sortedBooks.size() * BOOK_RECORD);
+        for (Book book : sortedBooks) {
+            int at = bookTable.position();
+            DerivedIndexes.Score score = scores.getOrDefault(book.getId(), DerivedIndexes.Score.EMPTY);
+            bookTable.putInt(at + B_ID, book.getId())
+                    .putInt(at + B_PAGES, book.getPages())
+                    .putDouble(at + B_PRICE, book.getPrice());
+            pools.putString(bookTable, at + B_NAME, book.getName());
+            pools.putString(bookTable, at + B_AUTHOR, book.getAuthor());
+            pools.putString(bookTable, at + B_PUBLISHER, book.getPublisher());
+            bookTable.putInt(at + B_REVIEWS, score.count());
+            pools.putInts(bookTable, at + B_CATEGORIES, categoriesOfBook.getOrDefault(book.getId(), List.of()));
+            bookTable.putDouble(at + B_SCORE_SUM, score.sum());
+            bookTable.position(at + BOOK_RECORD);
+        }
+
+        ByteBuffer categoryTable = ByteBuffer.allocate(sortedCategories.size() * CATEGORY_RECORD);
+        for (Category category : sortedCategories) {
+            int at = categoryTable.position();
+            categoryTable.putInt(at + C_ID, category.getId())
+                    .putInt(at + C_PARENT, parents.getOrDefault(category.getId(), 0));
+            pools.putString(categoryTable, at + C_NAME, category.getName());
+            pools.putInts(categoryTable, at + C_BOOKS, category.getBooks().stream().map(Book::getId).toList());
+            pools.putInts(categoryTable, at + C_SUBS, category.getSubCategories().stream().map(Category::getId).toList());
+            categoryTable.position(at + CATEGORY_RECORD);
+        }
+
+        int booksAt = HEADER;
+        int categoriesAt = booksAt + bookTable.capacity();
+        int intsAt = categoriesAt + categoryTable.capacity();
+        int stringsAt = intsAt + pools.ints.position();
+        long length = (long) stringsAt + pools.strings.size();
+        if (length > Integer.MAX_VALUE) throw new IllegalStateException("catálogo maior que 2 GB");
+
+        ByteBuffer image = ByteBuffer.allocate((int) length);
+        image.putInt(0, MAGIC)
+                .putShort(4, VERSION)
+                .putLong(H_SEQUENCE, sequence)
+                .putInt(H_BOOKS, sortedBooks.size())
+                .putInt(H_CATEGORIES, sortedCategories.size())
+                .putInt(H_BOOKS_AT, booksAt)
+                .putInt(H_CATEGORIES_AT, categoriesAt)
+                .putInt(H_INTS_AT, intsAt)
+                .putInt(H_STRINGS_AT, stringsAt)
+                .putInt(H_LENGTH, (int) length);
+        image.put(booksAt, bookTable.array())
+                .put(categoriesAt, categoryTable.array())
+                .put(intsAt, pools.ints.array(), 0, pools.ints.position())
+                .put(stringsAt, pools.strings.toByteArray());
+        return image;
+    }
+
+    /** Heap de strings (sem repetição) e vetor de ints em construção. **/
+    private static final class Pools {
+        final ByteArrayOutputStream strings = new ByteArrayOutputStream();
+        final Map<String, Integer> offsets = new HashMap<>();
+        ByteBuffer ints = ByteBuffer.allocate(4096);
+
+        void putString(ByteBuffer table, int refAt, String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            Integer offset = offsets.get(value);
+            if (offset == null) {
+                offset = strings.size();
+                strings.writeBytes(bytes);
+                offsets.put(value, offset);
+            }
+            table.putInt(refAt, offset).putInt(refAt + 4, bytes.length);
+        }
+
+        void putInts(ByteBuffer table, int refAt, List<Integer> values) {
+            if (ints.remaining() < values.size() * Integer.BYTES) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(ints.capacity() * 2,
+                        ints.position() + values.size() * Integer.BYTES));
+                grown.put(ints.flip());
+                ints = grown;
+            }
+            table.putInt(refAt, ints.position() / Integer.BYTES).putInt(refAt + 4, values.size());
+            for (int value : values) ints.putInt(value);
+        }
+    }
+
+    // --- leitura ---
+
+    /** Mapeia a imagem gravada (somente leitura); o mapeamento sobrevive ao fechamento do canal. **/
+    public static CatalogImage open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER || size > Integer.MAX_VALUE) throw new IOException("tamanho inválido: " + size);
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC) throw new IOException("não é uma imagem do catálogo");
+            if (buffer.getShort(4) != VERSION) throw new IOException("versão não suportada: " + buffer.getShort(4));
+            if (buffer.getInt(H_LENGTH) != size) throw new IOException("arquivo truncado");
+            CatalogImage image = new CatalogImage(buffer);
+            if (image.booksAt + (long) image.bookCount * BOOK_RECORD > image.categoriesAt
+                    || image.categoriesAt + (long) image.categoryCount * CATEGORY_RECORD > image.intsAt
+                    || image.intsAt > image.stringsAt || image.stringsAt > size) {
+                throw new IOException("tabelas fora do arquivo");
+            }
+            return image;
+        }
+    }
+
+    /** Sequência do checkpoint a partir do qual a imagem foi gravada. **/
+    public long sequence() {
+        return sequence;
+    }
+
+    public int bookCount() {
+        return bookCount;
+    }
+
+    public int categoryCount() {
+        return categoryCount;
+    }
+
+    public int sizeBytes() {
+        return buffer.capacity();
+    }
+
+    /**
+     * O livro, materializado a cada chamada (não fica guardado aqui), com as suas
+     * categorias só com id e nome; null se não existir.
+     */
+    public Book book(int id) {
+        int at = bookSlot(id);
+        if (at < 0) return null;
+        ChangeTracker.suspend(); // ler a imagem não é uma alteração
+        try {
+            Book book = bookAt(at);
+            int[] categoryIds = intsAt(at + B_CATEGORIES);
+            for (int categoryId : categoryIds) {
+                int categoryAt = categorySlot(categoryId);
+                if (categoryAt >= 0) book.addCategory(categoryStubAt(categoryAt));
+            }
+            return book;
+        } finally {
+            ChangeTracker.resume();
+        }
+    }
+
+    /** Todos os livros, em ordem de id, sem as categorias (ver {@link #book}). **/
+    public List<Book> books() {
+        List<Book> books = new ArrayList<>(bookCount);
+        ChangeTracker.suspend();
+        try {
+            for (int i = 0; i < bookCount; i++) books.add(bookAt(booksAt + i * BOOK_RECORD));
+        } finally {
+            ChangeTracker.resume();
+        }
+        return books;
+    }
+
+    /** Ids dos livros, em ordem. **/
+    public int[] bookIds() {
+        int[] ids = new int[bookCount];
+        for (int i = 0; i < bookCount; i++) ids[i] = buffer.getInt(booksAt + i * BOOK_RECORD + B_ID);
+        return ids;
+    }
+
+    /** Quantidade e soma das notas das reviews do livro. **/
+    public DerivedIndexes.Score score(int bookId) {
+        int at = bookSlot(bookId);
+        if (at < 0 || buffer.getInt(at + B_REVIEWS) == 0) return DerivedIndexes.Score.EMPTY;
+        return new DerivedIndexes.Score(buffer.getInt(at + B_REVIEWS), buffer.getDouble(at + B_SCORE_SUM));
+    }
+
+    /**
+     * A categoria com os seus livros (materializados, sem outras categorias) e
+     * as subcategorias só com id e nome; null se não existir.
+     */
+    public Category category(int id) {
+        int at = categorySlot(id);
+        if (at < 0) return null;
+        ChangeTracker.suspend();
+        try {
+            Category category = categoryStubAt(at);
+            for (int bookId : intsAt(at + C_BOOKS)) {
+                int bookAt = bookSlot(bookId);
+                if (bookAt >= 0) category.addBook(bookAt(bookAt));
+            }
+            for (int subId : intsAt(at + C_SUBS)) {
+                int subAt = categorySlot(subId);
+                if (subAt >= 0) category.addSubCategory(categoryStubAt(subAt));
+            }
+            return category;
+        } finally {
+            ChangeTracker.resume();
+        }
+    }
+
+    /** Ids das categorias, em ordem. **/
+    public int[] categoryIds() {
+        int[] ids = new int[categoryCount];
+        for (int i = 0; i < categoryCount; i++) ids[i] = buffer.getInt(categoriesAt + i * CATEGORY_RECORD + C_ID);
+        return ids;
+    }
+
+    /** Id da categoria-mãe; 0 para raízes e categorias inexistentes. **/
+    public int parentOf(int categoryId) {
+        int at = categorySlot(categoryId);
+        return at < 0 ? 0 : buffer.getInt(at + C_PARENT);
+    }
+
+    private Book bookAt(int at) {
+        return new Book.Builder()
+                .setId(buffer.getInt(at + B_ID))
+                .setName(stringAt(at + B_NAME))
+                .setPrice(buffer.getDouble(at + B_PRICE))
+                .setAuthor(stringAt(at + B_AUTHOR))
+                .setPublisher(stringAt(at + B_PUBLISHER))
+                .setPages(buffer.getInt(at + B_PAGES))
+                .build();
+    }
+
+    private Category categoryStubAt(int at) {
+        return new Category.Builder()
+                .setId(buffer.getInt(at + C_ID))
+                .setName(stringAt(at + C_NAME))
+                .build();
+    }
+
+    // só leituras absolutas: o buffer é compartilhado entre threads sem trava
+
+    private String stringAt(int refAt) {
+        byte[] bytes = new byte[buffer.getInt(refAt + 4)];
+        buffer.get(stringsAt + buffer.getInt(refAt), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int[] intsAt(int refAt) {
+        int first = intsAt + buffer.getInt(refAt) * Integer.BYTES;
+        int[] values = new int[buffer.getInt(refAt + 4)];
+        for (int i = 0; i < values.length; i++) values[i] = buffer.getInt(first + i * Integer.BYTES);
+        return values;
+    }
+
+    private int bookSlot(int id) {
+        return slotOf(id, booksAt, bookCount, BOOK_RECORD, B_ID);
+    }
+
+    private int categorySlot(int id) {
+        return slotOf(id, categoriesAt, categoryCount, CATEGORY_RECORD, C_ID);
+    }
+
+    /** Posição do registro com o id, por busca binária na tabela ordenada; -1 se não houver. **/
+    private int slotOf(int id, int tableAt, int count, int recordSize, int idField) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int at = tableAt + mid * recordSize;
+            int found = buffer.getInt(at + idField);
+            if (found < id) low = mid + 1;
+            else if (found > id) high = mid - 1;
+            else return at;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,20 @@
+package controller.persistence;
+
+import java.util.List;
+
+/**
+ * Imagem de snapshot já codificada, pronta para ser gravada pelo {@link LibraryStore}.
+ *
+ * @param full     true para base completa, false para delta
+ * @param file     arquivo de destino (numa base fragmentada, o manifesto)
+ * @param image    bytes do snapshot ou do manifesto
+ * @param sequence sequência coberta pela base, ou a do próprio delta
+ * @param shards   arquivos de shard a gravar antes do manifesto (vazio se não fragmentado)
+ */
+public record Checkpoint(boolean full, String file, byte[] image, long sequence,
+                         List<ShardedSnapshot.Shard> shards) {
+
+    public Checkpoint(boolean full, String file, byte[] image, long sequence) {
+        this(full, file, image, sequence, List.of());
+    }
+}
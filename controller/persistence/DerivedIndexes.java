@@ -0,0 +1,209 @@
+package controller.persistence;
+
+import model.Book;
+import model.Category;
+import model.Review;
+import model.User;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Índices derivados dos dados, gravados ao lado deles para não serem
+ * reconstruídos a cada carga:
+ * <ul>
+ *   <li>nomes: hash do nome de usuário ({@link BloomFilter#hashOf}) -> id;</li>
+ *   <li>árvore: id da subcategoria -> id da categoria-mãe;</li>
+ *   <li>notas: por livro, quantidade e soma das notas das reviews.</li>
+ * </ul>
+ * Reconstruí-los exige percorrer todos os usuários, categorias e reviews; lê-los
+ * é copiar três tabelas de um arquivo mapeado.
+ *
+ * Arquivo: magic, versão, carimbo e as três tabelas, cada uma precedida do
+ * número de entradas, e o CRC32C de tudo isso no fim; um arquivo cujo CRC não
+ * confere é tratado como ausente e os índices são reconstruídos. O carimbo ({@link #stampOf}) amarra o arquivo à versão dos
+ * dados; quem carrega compara com o carimbo da carga atual e reconstrói os
+ * índices a partir dos objetos se divergir.
+ */
+public final class DerivedIndexes {
+
+    private static final int MAGIC = 0x42444958; // "BDIX"
+    private static final short VERSION = 2;
+    private static final int HEADER_BYTES = Integer.BYTES + Short.BYTES + Long.BYTES;
+
+    /** Quantidade e soma das notas das reviews de um livro. **/
+    public record Score(int count, double sum) {
+        public static final Score EMPTY = new Score(0, 0d);
+
+        public static Score of(List<Review> reviews) {
+            double sum = 0;
+            for (Review review : reviews) sum += review.getScore();
+            return new Score(reviews.size(), sum);
+        }
+
+        public Score plus(double score) {
+            return new Score(count + 1, sum + score);
+        }
+
+        public double average() {
+            return count == 0 ? 0d : sum / count;
+        }
+    }
+
+    private final Map<Long, Integer> usersByName;
+    private final Map<Integer, Integer> parents;
+    private final Map<Integer, Score> scores;
+
+    public DerivedIndexes(Map<Long, Integer> usersByName, Map<Integer, Integer> parents, Map<Integer, Score> scores) {
+        this.usersByName = usersByName;
+        this.parents = parents;
+        this.scores = scores;
+    }
+
+    public Map<Long, Integer> usersByName() {
+        return usersByName;
+    }
+
+    public Map<Integer, Integer> parents() {
+        return parents;
+    }
+
+    public Map<Integer, Score> scores() {
+        return scores;
+    }
+
+    /**
+     * Carimbo da versão dos dados: a sequência do último checkpoint e o número de
+     * escritas do {@link ReviewStore} (0 sem ele). Só vale para uma carga sem
+     * entradas de journal reaplicadas, que estariam fora do checkpoint.
+     */
+    public static long stampOf(long checkpointSequence, long reviewVersion) {
+        return BloomFilter.stampOf(new long[] { checkpointSequence, ~reviewVersion });
+    }
+
+    // --- reconstrução a partir dos objetos ---
+
+    public static Map<Long, Integer> namesOf(List<User> users) {
+        Map<Long, Integer> names = HashMap.newHashMap(users.size());
+        for (User user : users) names.put(BloomFilter.hashOf(user.getUsername()), user.getId());
+        return names;
+    }
+
+    public static Map<Integer, Integer> treeOf(List<Category> categories) {
+        Map<Integer, Integer> parents = new HashMap<>();
+        for (Category category : categories) {
+            for (Category sub : category.getSubCategories()) parents.put(sub.getId(), category.getId());
+        }
+        return parents;
+    }
+
+    public static Map<Integer, Score> scoresOf(List<Book> books) {
+        Map<Integer, Score> scores = new HashMap<>();
+        for (Book book : books) {
+            if (!book.getReviews().isEmpty()) scores.put(book.getId(), Score.of(book.getReviews()));
+        }
+        return scores;
+    }
+
+    // --- arquivo ---
+
+    public void save(File file, long stamp) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream fileOut = new FileOutputStream(tmp);
+        CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(fileOut), new CRC32C());
+        try (DataOutputStream out = new DataOutputStream(checked)) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(stamp);
+            out.writeInt(usersByName.size());
+            for (Map.Entry<Long, Integer> e : usersByName.entrySet()) {
+                out.writeLong(e.getKey());
+                out.writeInt(e.getValue());
+            }
+            out.writeInt(parents.size());
+            for (Map.Entry<Integer, Integer> e : parents.entrySet()) {
+                out.writeInt(e.getKey());
+                out.writeInt(e.getValue());
+            }
+            out.writeInt(scores.size());
+            for (Map.Entry<Integer, Score> e : scores.entrySet()) {
+                out.writeInt(e.getKey());
+                out.writeInt(e.getValue().count());
+                out.writeDouble(e.getValue().sum());
+            }
+            out.writeInt((int) checked.getChecksum().getValue());
+            out.flush();
+            fileOut.getChannel().force(true);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        GroupCommit.directory(file.getAbsoluteFile().getParentFile().toPath()).force();
+    }
+
+    /** Índices lidos de um arquivo, com o carimbo com que foram gravados. **/
+    public record Stamped(long stamp, DerivedIndexes indexes) {}
+
+    /** Índices gravados com o carimbo esperado, ou null se ausentes, corrompidos ou de outra versão dos dados. **/
+    public static DerivedIndexes load(File file, long expectedStamp) {
+        Stamped saved = read(file);
+        return saved != null && saved.stamp() == expectedStamp ? saved.indexes() : null;
+    }
+
+    /**
+     * Índices gravados, qualquer que seja o carimbo, ou null se ausentes ou
+     * corrompidos: a leitura pode correr antes de se saber o carimbo esperado.
+     */
+    public static Stamped read(File file) {
+        if (!file.exists()) return null;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.limit() < HEADER_BYTES + Integer.BYTES || !checksumMatches(in)) return null;
+            in.limit(in.limit() - Integer.BYTES);
+            if (in.getInt() != MAGIC || in.getShort() != VERSION) return null;
+            long stamp = in.getLong();
+
+            int count = tableSize(in, Long.BYTES + Integer.BYTES);
+            Map<Long, Integer> names = HashMap.newHashMap(count);
+            for (int i = 0; i < count; i++) names.put(in.getLong(), in.getInt());
+
+            count = tableSize(in, 2 * Integer.BYTES);
+            Map<Integer, Integer> parents = HashMap.newHashMap(count);
+            for (int i = 0; i < count; i++) parents.put(in.getInt(), in.getInt());
+
+            count = tableSize(in, 2 * Integer.BYTES + Double.BYTES);
+            Map<Integer, Score> scores = HashMap.newHashMap(count);
+            for (int i = 0; i < count; i++) scores.put(in.getInt(), new Score(in.getInt(), in.getDouble()));
+
+            return new Stamped(stamp, new DerivedIndexes(names, parents, scores));
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** Confere o CRC32C gravado nos últimos 4 bytes contra o resto do arquivo. **/
+    private static boolean checksumMatches(MappedByteBuffer in) {
+        CRC32C crc = new CRC32C();
+        crc.update(in.slice(0, in.limit() - Integer.BYTES));
+        return (int) crc.getValue() == in.getInt(in.limit() - Integer.BYTES);
+    }
+
+    /** Número de entradas da próxima tabela, conferido contra o que resta do arquivo. **/
+    private static int tableSize(MappedByteBuffer in, int entryBytes) {
+        int count = in.getInt();
+        if (count < 0 || (long) count * entryBytes > in.remaining()) throw new IllegalArgumentException("tabela truncada");
+        return count;
+    }
+}
@@ -0,0 +1,109 @@
+package controller.persistence;
+
+import model.Book;
+import model.Category;
+import model.CrudObjectInterface;
+import model.Review;
+import model.Shelf;
+import model.User;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Imagem persistível de uma entidade: só valores escalares e ids.
+ * Referências para outras entidades (autor, livros da estante, subcategorias)
+ * viram inteiros e são religadas pelo {@link LibraryGraph} na carga.
+ */
+public sealed interface EntityRecord {
+
+    EntityType type();
+    int id();
+
+    record UserRecord(int id, String username, String password, List<ShelfRecord> shelves) implements EntityRecord {
+        @Override
+        public EntityType type() { return EntityType.USER; }
+    }
+
+    record ShelfRecord(int id, String name, int[] bookIds) {}
+
+    record BookRecord(int id, String name, double price, String author, String publisher, int pages) implements EntityRecord {
+        @Override
+        public EntityType type() { return EntityType.BOOK; }
+    }
+
+    record CategoryRecord(int id, String name, int[] subCategoryIds, int[] bookIds) implements EntityRecord {
+        @Override
+        public EntityType type() { return EntityType.CATEGORY; }
+    }
+
+    record ReviewRecord(int id, int bookId, int authorId, String comment, double score) implements EntityRecord {
+        @Override
+        public EntityType type() { return EntityType.REVIEW; }
+    }
+
+    /** Remoção de uma entidade; ownerId é o livro dono no caso de reviews. **/
+    record Deletion(EntityType target, int id, int ownerId) implements EntityRecord {
+        @Override
+        public EntityType type() { return target; }
+    }
+
+    // ======== Fábricas a partir do modelo ========
+
+    static EntityRecord of(CrudObjectInterface entity) {
+        return switch (entity) {
+            case User u -> of(u);
+            case Book b -> of(b);
+            case Category c -> of(c);
+            default -> throw new IllegalArgumentException("Entidade sem registro: " + entity.getClass());
+        };
+    }
+
+    static UserRecord of(User user) {
+        List<ShelfRecord> shelves = new ArrayList<>();
+        for (Shelf shelf : user.getShelves()) {
+            shelves.add(new ShelfRecord(shelf.getId(), shelf.getName(), ids(shelf.getStoredBooks())));
+        }
+        return new UserRecord(user.getId(), user.getUsername(), user.getPassword(), shelves);
+    }
+
+    static BookRecord of(Book book) {
+        return new BookRecord(book.getId(), book.getName(), book.getPrice(),
+                book.getAuthor(), book.getPublisher(), book.getPages());
+    }
+
+    static CategoryRecord of(Category category) {
+        return new CategoryRecord(category.getId(), category.getName(),
+                ids(category.getSubCategories()), ids(category.getBooks()));
+    }
+
+    static ReviewRecord of(Book book, Review review) {
+        return new ReviewRecord(review.getId(), book.getId(), review.getAuthorId(),
+                review.getComment(), review.getScore());
+    }
+
+    static ReviewRecord of(Review review) {
+        return new ReviewRecord(review.getId(), review.getBookId(), review.getAuthorId(),
+                review.getComment(), review.getScore());
+    }
+
+    static Deletion deletionOf(CrudObjectInterface entity) {
+        return switch (entity) {
+            case User u -> new Deletion(EntityType.USER, u.getId(), 0);
+            case Book b -> new Deletion(EntityType.BOOK, b.getId(), 0);
+            case Category c -> new Deletion(EntityType.CATEGORY, c.getId(), 0);
+            case Review r -> new Deletion(EntityType.REVIEW, r.getId(), r.getBookId());
+            default -> throw new IllegalArgumentException("Entidade sem registro: " + entity.getClass());
+        };
+    }
+
+    static Deletion deletionOf(Book book, Review review) {
+        return new Deletion(EntityType.REVIEW, review.getId(), book.getId());
+    }
+
+    private static int[] ids(List<? extends CrudObjectInterface> entities) {
+        int[] ids = new int[entities.size()];
+        for (int i = 0; i < ids.length; i++) ids[i] = entities.get(i).getId();
+        return ids;
+    }
+}
@@ -0,0 +1,22 @@
+package controller.persistence;
+
+/** Tipos de entidade persistidos, com a tag usada no formato binário. **/
+public enum EntityType {
+    USER(1),
+    BOOK(2),
+    CATEGORY(3),
+    REVIEW(4);
+
+    private final int tag;
+
+    EntityType(int tag) {
+        this.tag = tag;
+    }
+
+    public int getTag() { return tag; }
+
+    public static EntityType fromTag(int tag) {
+        for (EntityType type : values()) if (type.tag == tag) return type;
+        throw new IllegalArgumentException("Tipo de entidade desconhecido: " + tag);
+    }
+}
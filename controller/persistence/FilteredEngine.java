@@ -0,0 +1,152 @@
+package controller.persistence;
+
+import model.CrudObjectInterface;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Decora um {@link StorageEngine} com um {@link BloomFilter} dos ids: um get de
+ * id inexistente volta sem consultar o engine. O filtro é gravado ao lado dos
+ * dados ({@code <arquivo>.ids.bloom}) e reaproveitado na carga quando o carimbo
+ * confere com os objetos carregados; caso contrário é reconstruído.
+ */
+public final class FilteredEngine<T extends CrudObjectInterface> implements StorageEngine<T> {
+    private final StorageEngine<T> delegate;
+    private final File filterFile;
+    private final double falsePositiveRate;
+    private BloomFilter ids;
+
+    public FilteredEngine(StorageEngine<T> delegate, String filterFile, double falsePositiveRate) {
+        this.delegate = delegate;
+        this.filterFile = new File(filterFile);
+        this.falsePositiveRate = falsePositiveRate;
+        this.ids = BloomFilter.withCapacity(0, falsePositiveRate);
+    }
+
+    @Override
+    public void put(T obj) {
+        if (obj == null) return;
+        delegate.put(obj);
+        ids.add(obj.getId());
+        if (ids.isOverCapacity()) rebuild(delegate.scan());
+    }
+
+    /** Um rebuild do filtro no máximo por lote, não um a cada vez que a capacidade estoura. **/
+    @Override
+    public void putAll(Collection<? extends T> objects) {
+        delegate.putAll(objects);
+        for (T obj : objects) ids.add(obj.getId());
+        if (ids.isOverCapacity()) rebuild(delegate.scan());
+    }
+
+    @Override
+    public T get(int id) {
+        if (!ids.mightContain(id)) return null;
+        T obj = delegate.get(id);
+        if (obj == null) ids.reportFalsePositive();
+        return obj;
+    }
+
+    @Override
+    public boolean delete(int id) {
+        return delegate.delete(id);
+    }
+
+    @Override
+    public boolean evict(int id) {
+        return delegate.evict(id); // continua no filtro: o objeto existe
+    }
+
+    @Override
+    public List<T> scan() {
+        return delegate.scan();
+    }
+
+    @Override
+    public void forEach(Consumer<? super T> action) {
+        delegate.forEach(action);
+    }
+
+    @Override
+    public void replaceAll(Collection<? extends T> objects) {
+        delegate.replaceAll(objects);
+        restoreFilter();
+    }
+
+    @Override
+    public void load() {
+        delegate.load();
+        restoreFilter();
+    }
+
+    @Override
+    public void flush() {
+        delegate.flush();
+        saveFilter();
+    }
+
+    @Override
+    public int highestId() {
+        return delegate.highestId();
+    }
+
+    @Override
+    public void compact() {
+        delegate.compact();
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+        saveFilter();
+    }
+
+    /** Grava o filtro com o carimbo dos objetos atuais. **/
+    public void saveFilter() {
+        captureFilter().run();
+    }
+
+    /**
+     * Copia o filtro e calcula o carimbo dos objetos atuais na thread de quem
+     * chama; a gravação devolvida pode rodar em outra thread sem reler os objetos.
+     */
+    public Runnable captureFilter() {
+        BloomFilter copy = ids.copy();
+        long stamp = stampOf(delegate.scan());
+        return () -> {
+            try {
+                copy.save(filterFile, stamp);
+            } catch (IOException e) {
+                System.err.println("[ERRO] Falha ao gravar " + filterFile + ": " + e.getMessage());
+            }
+        };
+    }
+
+    public BloomFilter idFilter() {
+        return ids;
+    }
+
+    private void restoreFilter() {
+        List<T> all = delegate.scan();
+        BloomFilter saved = BloomFilter.load(filterFile, stampOf(all));
+        if (saved != null && !saved.isOverCapacity()) ids = saved;
+        else rebuild(all);
+    }
+
+    /** Refaz o filtro com folga para o dobro dos objetos atuais. **/
+    private void rebuild(List<T> all) {
+        BloomFilter fresh = BloomFilter.withCapacity(all.size() * 2, falsePositiveRate);
+        for (T obj : all) fresh.add(obj.getId());
+        ids = fresh;
+    }
+
+    private static long stampOf(List<? extends CrudObjectInterface> objects) {
+        long[] keys = new long[objects.size()];
+        for (int i = 0; i < keys.length; i++) keys[i] = objects.get(i).getId();
+        return BloomFilter.stampOf(keys);
+    }
+}
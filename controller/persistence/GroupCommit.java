@@ -0,0 +1,242 @@
+package controller.persistence;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Decide quando o que foi escrito vai de fato para o disco (fsync):
+ * <ul>
+ *   <li>{@link Durability#NONE}: nunca; fica a cargo do sistema operacional.</li>
+ *   <li>{@link Durability#PER_OP}: um fsync a cada operação, na thread de quem escreveu.</li>
+ *   <li>{@link Durability#BATCHED}: group commit. Quem escreveu espera um fsync
+ *   compartilhado, feito por uma thread própria a cada {@code intervalMillis}
+ *   (contados da primeira operação do lote) ou assim que o lote junta
+ *   {@code maxOps} operações. Cada arquivo tocado no lote recebe um só fsync.</li>
+ * </ul>
+ *
+ * {@link #commit} nunca deve ser chamado segurando o lock que o
+ * {@link Syncable#force()} do alvo precisa, senão a thread do grupo trava.
+ */
+public final class GroupCommit {
+
+    public enum Durability { NONE, BATCHED, PER_OP }
+
+    /** Algo que sabe forçar as próprias escritas para o disco. **/
+    public interface Syncable {
+        void force() throws IOException;
+    }
+
+    private static final GroupCommit shared = new GroupCommit(PersistenceConfig.durability(),
+            PersistenceConfig.durabilityIntervalMillis(), PersistenceConfig.durabilityMaxOps());
+
+    private final Durability durability;
+    private final long intervalNanos;
+    private final int maxOps;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition arrived = lock.newCondition();
+    private final Condition synced = lock.newCondition();
+    private Batch open = new Batch();
+    private Thread syncer;
+
+    // estatísticas
+    private long operations;
+    private long syncs;
+    private long syncNanos;
+    private long waitNanos;
+    private int largestBatch;
+
+    private static final class Batch {
+        final Set<Syncable> targets = new LinkedHashSet<>();
+        int ops;
+        long startedAt;
+        boolean done;
+        IOException error;
+    }
+
+    public GroupCommit(Durability durability, long intervalMillis, int maxOps) {
+        this.durability = durability;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, intervalMillis));
+        this.maxOps = Math.max(1, maxOps);
+    }
+
+    /** Instância configurada por {@code biblioteca.durability} e usada pela aplicação. **/
+    public static GroupCommit shared() {
+        return shared;
+    }
+
+    public Durability durability() {
+        return durability;
+    }
+
+    /** Alvo que força um arquivo pelo caminho (abre, faz fsync e fecha). **/
+    public static Syncable file(Path path) {
+        return new FileTarget(path);
+    }
+
+    /**
+     * Alvo que força as entradas de um diretório (fsync do próprio diretório),
+     * para que uma troca de nome feita nele sobreviva a uma queda. Em sistemas
+     * que não abrem diretórios (Windows) não faz nada.
+     */
+    public static Syncable directory(Path dir) {
+        return new DirectoryTarget(dir);
+    }
+
+    /**
+     * Torna duráveis as escritas já feitas no alvo. Em BATCHED bloqueia até o
+     * fsync do lote em que a operação entrou.
+     */
+    public void commit(Syncable target) throws IOException {
+        switch (durability) {
+            case NONE -> {
+                return;
+            }
+            case PER_OP -> {
+                long start = System.nanoTime();
+                target.force();
+                recordSync(System.nanoTime() - start);
+                return;
+            }
+            case BATCHED -> { }
+        }
+
+        long start = System.nanoTime();
+        Batch batch;
+        lock.lock();
+        try {
+            startSyncer();
+            batch = open;
+            if (batch.ops++ == 0) batch.startedAt = start;
+            batch.targets.add(target);
+            arrived.signal();
+            while (!batch.done) synced.awaitUninterruptibly();
+            waitNanos += System.nanoTime() - start;
+        } finally {
+            lock.unlock();
+        }
+        if (batch.error != null) throw new IOException(batch.error.getMessage(), batch.error);
+    }
+
+    /** Como {@link #commit}, relatando a falha em vez de lançá-la. **/
+    public void commitOrReport(Syncable target, String description) {
+        try {
+            commit(target);
+        } catch (IOException e) {
+            System.err.println("[ERRO] Falha ao sincronizar " + description + ": " + e.getMessage());
+        }
+    }
+
+    public long syncCount() {
+        lock.lock();
+        try {
+            return syncs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String stats() {
+        lock.lock();
+        try {
+            if (syncs == 0) return durability + ": nenhum fsync";
+            return String.format("%s: %d operações em %d fsyncs (média %.1f, maior lote %d), "
+                            + "fsync médio %.2f ms, espera média %.2f ms",
+                    durability, operations, syncs, (double) operations / syncs, largestBatch,
+                    syncNanos / 1e6 / syncs, operations == 0 ? 0d : waitNanos / 1e6 / operations);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** fsync feito na própria thread (PER_OP): a espera é o próprio fsync. **/
+    private void recordSync(long nanos) {
+        lock.lock();
+        try {
+            operations++;
+            syncs++;
+            syncNanos += nanos;
+            waitNanos += nanos;
+            largestBatch = Math.max(largestBatch, 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void startSyncer() {
+        if (syncer != null) return;
+        syncer = new Thread(this::run, "group-commit");
+        syncer.setDaemon(true);
+        syncer.start();
+    }
+
+    private void run() {
+        while (true) {
+            Batch batch;
+            lock.lock();
+            try {
+                while (open.ops == 0) arrived.awaitUninterruptibly();
+                long remaining;
+                while (open.ops < maxOps && (remaining = open.startedAt + intervalNanos - System.nanoTime()) > 0) {
+                    arrived.awaitNanos(remaining);
+                }
+                batch = open;
+                open = new Batch();
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            long start = System.nanoTime();
+            for (Syncable target : batch.targets) {
+                try {
+                    target.force();
+                } catch (IOException e) {
+                    batch.error = e;
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+
+            lock.lock();
+            try {
+                operations += batch.ops;
+                syncs++;
+                syncNanos += elapsed;
+                largestBatch = Math.max(largestBatch, batch.ops);
+                batch.done = true;
+                synced.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private record FileTarget(Path path) implements Syncable {
+        @Override
+        public void force() throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+        }
+    }
+
+    private record DirectoryTarget(Path dir) implements Syncable {
+        @Override
+        public void force() throws IOException {
+            try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+                channel.force(true);
+            } catch (AccessDeniedException | UnsupportedOperationException e) {
+                // sem fsync de diretório na plataforma
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package controller.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Próximo id de cada tipo de entidade, gravado num arquivo pequeno ao lado dos
+ * dados para que a carga não percorra todos os objetos atrás do maior id. É uma
+ * marca d'água: só sobe, então o id de um objeto apagado não volta a ser usado,
+ * mesmo que nenhum snapshot (base, delta ou shard) guarde mais rastro dele.
+ *
+ * A marca pode ficar atrás dos dados (ex.: queda entre o checkpoint e esta
+ * gravação); quem carrega combina com o maior id visto nos registros aplicados
+ * ({@link LibraryGraph#highestId}) e nos engines.
+ *
+ * Arquivo: magic, versão, quantidade, pares [tag do tipo][próximo id] e o CRC32C
+ * do que veio antes.
+ */
+public final class IdSequences {
+
+    private static final int MAGIC = 0x42534551; // "BSEQ"
+    private static final short VERSION = 1;
+    private static final Map<String, IdSequences> byDirectory = new HashMap<>();
+
+    private final File file;
+    private final int[] next = new int[EntityType.values().length]; // 0 = sem marca
+    private boolean loaded;
+
+    public IdSequences(String file) {
+        this.file = new File(file);
+    }
+
+    /** As marcas dos dados de um diretório: um ids.seq por diretório, com todos os tipos. **/
+    public static IdSequences in(String directory) {
+        File file = new File(directory, "ids.seq");
+        synchronized (byDirectory) {
+            return byDirectory.computeIfAbsent(file.getAbsolutePath(), path -> new IdSequences(file.getPath()));
+        }
+    }
+
+    /** As marcas dos dados da aplicação (data/ids.seq). **/
+    public static IdSequences shared() {
+        return in("data");
+    }
+
+    /** Próximo id gravado para o tipo; 0 se não houver marca (dados antigos ou arquivo ilegível). **/
+    public synchronized int next(EntityType type) {
+        ensureLoaded();
+        return next[type.ordinal()];
+    }
+
+    /** Sobe a marca do tipo até {@code nextId}; nunca desce. **/
+    public synchronized void raise(EntityType type, int nextId) {
+        ensureLoaded();
+        next[type.ordinal()] = Math.max(next[type.ordinal()], nextId);
+    }
+
+    /** Grava as marcas atuais (arquivo temporário renomeado por cima do anterior). **/
+    public synchronized void save() {
+        ensureLoaded();
+        ByteBuffer out = ByteBuffer.allocate(10 + next.length * 5 + Integer.BYTES);
+        out.putInt(MAGIC).putShort(VERSION).putInt(next.length);
+        for (EntityType type : EntityType.values()) out.put((byte) type.getTag()).putInt(next[type.ordinal()]);
+        out.putInt(crcOf(out.array(), out.position()));
+        out.flip();
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null) parent.mkdirs();
+            try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (out.hasRemaining()) channel.write(out);
+                channel.force(true);
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (parent != null) GroupCommit.directory(parent.toPath()).force();
+        } catch (IOException e) {
+            System.err.println("[ERRO] Falha ao gravar " + file + ": " + e.getMessage());
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) return;
+        loaded = true;
+        if (!file.exists()) return;
+        try {
+            ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+            if (in.limit() < 10 || in.getInt() != MAGIC || in.getShort() != VERSION) {
+                throw new IOException("formato não reconhecido");
+            }
+            int count = in.getInt();
+            if (count < 0 || in.remaining() != count * 5 + Integer.BYTES) throw new IOException("tamanho inválido");
+            if (in.getInt(in.limit() - Integer.BYTES) != crcOf(in.array(), in.limit() - Integer.BYTES)) {
+                throw new IOException("CRC32C não confere");
+            }
+            for (int i = 0; i < count; i++) {
+                int tag = in.get();
+                int value = in.getInt();
+                next[EntityType.fromTag(tag).ordinal()] = value;
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // sem marcas: a carga volta a procurar o maior id nos dados
+            Arrays.fill(next, 0);
+            System.err.println("[ERRO] Falha ao carregar " + file + ", ids recalculados a partir dos dados: "
+                    + e.getMessage());
+        }
+    }
+
+    private static int crcOf(byte[] bytes, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,47 @@
+package controller.persistence;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limita a vazão de E/S de tarefas de fundo (compactação) para não disputar o
+ * disco com as gravações de primeiro plano. Balde de fichas: acumula até um
+ * segundo de crédito e faz quem passou do limite dormir o necessário.
+ */
+public final class IoThrottle {
+
+    public static final IoThrottle UNLIMITED = new IoThrottle(0);
+
+    private final long bytesPerSecond;
+    private double available;
+    private long refilledAt = System.nanoTime();
+
+    /** {@code bytesPerSecond <= 0} desliga o limite. **/
+    public IoThrottle(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.available = bytesPerSecond;
+    }
+
+    public static IoThrottle fromConfig() {
+        return new IoThrottle(PersistenceConfig.maintenanceIoBytesPerSecond());
+    }
+
+    /** Consome {@code bytes} do limite, dormindo se não houver crédito. **/
+    public void acquire(long bytes) {
+        if (bytesPerSecond <= 0 || bytes <= 0) return;
+        long sleepNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            available = Math.min(bytesPerSecond, available + (now - refilledAt) * bytesPerSecond / 1e9);
+            refilledAt = now;
+            available -= bytes;
+            sleepNanos = available >= 0 ? 0 : (long) (-available * 1e9 / bytesPerSecond);
+        }
+        if (sleepNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
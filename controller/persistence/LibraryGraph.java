@@ -0,0 +1,285 @@
+package controller.persistence;
+
+import controller.persistence.EntityRecord.BookRecord;
+import controller.persistence.EntityRecord.CategoryRecord;
+import controller.persistence.EntityRecord.Deletion;
+import controller.persistence.EntityRecord.ReviewRecord;
+import controller.persistence.EntityRecord.ShelfRecord;
+import controller.persistence.EntityRecord.UserRecord;
+import model.Book;
+import model.Category;
+import model.ChangeTracker;
+import model.Review;
+import model.Shelf;
+import model.User;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Grafo do acervo reconstruído a partir de {@link EntityRecord}s.
+ * Cada registro é aplicado como "upsert" (ou remoção) por id, então a mesma
+ * instância é reutilizada em todos os lugares que a referenciam. Ligações
+ * entre entidades (estantes, livros e subcategorias) ficam pendentes até
+ * {@link #finish()}, quando todos os registros já foram aplicados.
+ */
+public final class LibraryGraph {
+    private final Map<Integer, User> users = new LinkedHashMap<>();
+    private final Map<Integer, Book> books = new LinkedHashMap<>();
+    private final Map<Integer, Category> categories = new LinkedHashMap<>();
+
+    private final Map<Integer, List<ShelfRecord>> pendingShelves = new HashMap<>();
+    private final Map<Integer, CategoryRecord> pendingCategories = new HashMap<>();
+    private IntFunction<Book> bookSource = id -> null;
+    private int skipped;
+    // objetos desserializados (arquivos antigos) ainda com referências gravadas por id
+    private boolean objectsToLink;
+    // maior id de cada tipo visto nos registros aplicados, inclusive remoções
+    private final int[] highestIds = new int[EntityType.values().length];
+
+    public LibraryGraph() {}
+
+    /** Parte de objetos já carregados (ex.: snapshot) para aplicar registros por cima. **/
+    public LibraryGraph(List<User> users, List<Book> books, List<Category> categories) {
+        for (User u : users) {
+            this.users.put(u.getId(), u);
+            see(EntityType.USER, u.getId());
+        }
+        for (Book b : books) {
+            this.books.put(b.getId(), b);
+            see(EntityType.BOOK, b.getId());
+            for (Review r : b.getReviews()) see(EntityType.REVIEW, r.getId());
+        }
+        for (Category c : categories) {
+            this.categories.put(c.getId(), c);
+            see(EntityType.CATEGORY, c.getId());
+        }
+        objectsToLink = true;
+    }
+
+    /**
+     * Fonte para livros que não vieram nos registros (ex.: {@link MappedBookStore}):
+     * só os livros referenciados por reviews, categorias e estantes são materializados.
+     */
+    public void setBookSource(IntFunction<Book> bookSource) {
+        this.bookSource = bookSource;
+    }
+
+    private Book book(int id) {
+        Book book = books.get(id);
+        if (book == null) {
+            book = bookSource.apply(id);
+            if (book != null) books.put(id, book);
+        }
+        return book;
+    }
+
+    public void apply(EntityRecord record) {
+        switch (record) {
+            case UserRecord u -> {
+                see(EntityType.USER, u.id());
+                applyUser(u);
+            }
+            case BookRecord b -> {
+                see(EntityType.BOOK, b.id());
+                applyBook(b);
+            }
+            case CategoryRecord c -> {
+                see(EntityType.CATEGORY, c.id());
+                applyCategory(c);
+            }
+            case ReviewRecord r -> {
+                see(EntityType.REVIEW, r.id());
+                applyReview(r);
+            }
+            case Deletion d -> {
+                see(d.target(), d.id());
+                applyDeletion(d);
+            }
+        }
+    }
+
+    private void see(EntityType type, int id) {
+        if (id > highestIds[type.ordinal()]) highestIds[type.ordinal()] = id;
+    }
+
+    /**
+     * Maior id do tipo visto na carga (base, deltas, shards e journal), contando
+     * objetos depois removidos; 0 se nenhum. Livros só vindos do
+     * {@link #setBookSource fonte externa} não entram.
+     */
+    public int highestId(EntityType type) {
+        return highestIds[type.ordinal()];
+    }
+
+    private void applyUser(UserRecord record) {
+        User user = users.get(record.id());
+        if (user == null) {
+            user = new User.Builder().setId(record.id()).build();
+            users.put(record.id(), user);
+        }
+        user.setUsername(record.username());
+        user.setPassword(record.password());
+        pendingShelves.put(record.id(), record.shelves());
+    }
+
+    private void applyBook(BookRecord record) {
+        Book book = book(record.id());
+        if (book == null) {
+            book = new Book.Builder().setId(record.id()).build();
+            books.put(record.id(), book);
+        }
+        book.setName(record.name());
+        book.setPrice(record.price());
+        book.setAuthor(record.author());
+        book.setPublisher(record.publisher());
+        book.setPages(record.pages());
+    }
+
+    private void applyCategory(CategoryRecord record) {
+        Category category = categories.get(record.id());
+        if (category == null) {
+            category = new Category.Builder().setId(record.id()).build();
+            categories.put(record.id(), category);
+        }
+        category.setName(record.name());
+        pendingCategories.put(record.id(), record);
+    }
+
+    private void applyReview(ReviewRecord record) {
+        Book book = book(record.bookId());
+        User author = users.get(record.authorId());
+        if (book == null || author == null) {
+            skipped++;
+            return;
+        }
+
+        for (Review existing : book.getReviews()) {
+            if (existing.getId() == record.id()) {
+                existing.setComment(record.comment());
+                existing.setScore(record.score());
+                return;
+            }
+        }
+
+        book.addReview(new Review.Builder()
+                .setId(record.id())
+                .setAuthor(author)
+                .setComment(record.comment())
+                .setScore(record.score())
+                .build());
+    }
+
+    private void applyDeletion(Deletion deletion) {
+        switch (deletion.target()) {
+            case USER -> {
+                ChangeTracker.markRemoved(users.remove(deletion.id()));
+                pendingShelves.remove(deletion.id());
+            }
+            case BOOK -> {
+                Book book = book(deletion.id());
+                if (book == null) return;
+                books.remove(deletion.id());
+                ChangeTracker.markRemoved(book);
+                book.getReviews().clear();
+                for (Category c : new ArrayList<>(book.getCategories())) c.removeBook(book);
+            }
+            case CATEGORY -> {
+                Category category = categories.remove(deletion.id());
+                pendingCategories.remove(deletion.id());
+                if (category == null) return;
+                ChangeTracker.markRemoved(category);
+                for (Book b : new ArrayList<>(category.getBooks())) category.removeBook(b);
+            }
+            case REVIEW -> {
+                Book book = book(deletion.ownerId());
+                if (book == null) return;
+                for (Review r : new ArrayList<>(book.getReviews())) {
+                    if (r.getId() == deletion.id()) book.removeReview(r);
+                }
+            }
+        }
+    }
+
+    /** Religa estantes, livros de categorias e subcategorias pendentes. **/
+    public void finish() {
+        if (objectsToLink) linkObjects();
+
+        for (Map.Entry<Integer, List<ShelfRecord>> entry : pendingShelves.entrySet()) {
+            User user = users.get(entry.getKey());
+            if (user == null) continue;
+
+            user.getShelves().clear();
+            for (ShelfRecord record : entry.getValue()) {
+                Shelf shelf = new Shelf(record.name());
+                shelf.setId(record.id());
+                for (int bookId : record.bookIds()) {
+                    Book book = book(bookId);
+                    if (book != null) shelf.addBook(book);
+                    else skipped++;
+                }
+                user.addShelf(shelf);
+            }
+        }
+
+        for (CategoryRecord record : pendingCategories.values()) {
+            Category category = categories.get(record.id());
+            if (category == null) continue;
+
+            List<Book> wanted = new ArrayList<>();
+            for (int bookId : record.bookIds()) {
+                Book book = book(bookId);
+                if (book != null) wanted.add(book);
+                else skipped++;
+            }
+            for (Book b : new ArrayList<>(category.getBooks())) {
+                if (!wanted.contains(b)) category.removeBook(b);
+            }
+            for (Book b : wanted) category.addBook(b);
+
+            category.clearSubCategories();
+            for (int subId : record.subCategoryIds()) {
+                Category sub = categories.get(subId);
+                if (sub != null) category.addSubCategory(sub);
+                else skipped++;
+            }
+        }
+
+        pendingShelves.clear();
+        pendingCategories.clear();
+    }
+
+    /**
+     * Resolve, pelos mapas deste grafo, as referências que os objetos
+     * desserializados trazem só como ids: autor das reviews, livros das estantes,
+     * livros e subcategorias das categorias. Reviews sem autor são descartadas,
+     * como na aplicação de registros.
+     */
+    private void linkObjects() {
+        objectsToLink = false;
+        for (Book book : books.values()) {
+            for (Review review : new ArrayList<>(book.getReviews())) {
+                if (review.resolveAuthor(users::get)) continue;
+                book.removeReview(review);
+                skipped++;
+            }
+        }
+        for (User user : users.values()) {
+            for (Shelf shelf : user.getShelves()) skipped += shelf.resolveBooks(this::book);
+        }
+        for (Category category : categories.values()) {
+            skipped += category.resolveReferences(categories::get, this::book);
+        }
+    }
+
+    public List<User> users() { return new ArrayList<>(users.values()); }
+    public List<Book> books() { return new ArrayList<>(books.values()); }
+    public List<Category> categories() { return new ArrayList<>(categories.values()); }
+
+    /** Quantidade de referências que não puderam ser resolvidas (entidade removida ou ausente). **/
+    public int getSkipped() { return skipped; }
+}
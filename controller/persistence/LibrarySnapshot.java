@@ -0,0 +1,35 @@
+package controller.persistence;
+
+import model.Book;
+import model.Category;
+import model.User;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fotografia única de todo o acervo (usuários, livros e categorias).
+ * Por ser gravada num só ObjectOutputStream, cada entidade é escrita uma
+ * única vez e as referências compartilhadas (Category.books, Shelf.storedBooks,
+ * Review.author) voltam apontando para as mesmas instâncias ao carregar.
+ **/
+public final class LibrarySnapshot implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final ArrayList<User> users;
+    private final ArrayList<Book> books;
+    private final ArrayList<Category> categories;
+
+    public LibrarySnapshot(List<User> users, List<Book> books, List<Category> categories) {
+        this.users = new ArrayList<>(users);
+        this.books = new ArrayList<>(books);
+        this.categories = new ArrayList<>(categories);
+    }
+
+    public ArrayList<User> getUsers() { return users; }
+    public ArrayList<Book> getBooks() { return books; }
+    public ArrayList<Category> getCategories() { return categories; }
+}
@@ -0,0 +1,414 @@
+package controller.persistence;
+
+import model.Book;
+import model.Category;
+import model.ChangeTracker;
+import model.CrudObjectInterface;
+import model.Review;
+import model.User;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * Snapshots incrementais do acervo: uma base completa mais deltas numerados
+ * (library.dat.delta.N) com apenas as entidades alteradas ou removidas desde o
+ * checkpoint anterior. A cada {@code consolidateEvery} deltas é gravada uma
+ * base nova, que registra a última sequência incorporada; deltas com sequência
+ * menor ou igual passam a ser ignorados e são apagados.
+ *
+ * Com {@code shardCount > 1} a base é fragmentada ({@link ShardedSnapshot}) e o
+ * arquivo da base passa a ser o manifesto dos shards.
+ *
+ * Um delta ilegível interrompe a aplicação dos seguintes (eles dependem dele)
+ * e suspende os checkpoints até a próxima carga: nenhuma base nova o apaga, e
+ * as alterações seguem cobertas pelo journal. Uma base carregada só em parte
+ * (shard ilegível) suspende apenas as bases novas: a próxima sairia sem as
+ * entidades perdidas e apagaria o arquivo danificado; os deltas, que só trazem
+ * alterações, continuam. Uma base ilegível (cabeçalho ou manifesto que não
+ * confere) não carrega nada e suspende todos os checkpoints, em vez de deixar
+ * o próximo gravar o grafo vazio por cima dela.
+ */
+public final class LibraryStore {
+    private final File baseFile;
+    private final String deltaPrefix;
+    private final int consolidateEvery;
+    private final int shardCount;
+
+    private long lastSequence;
+    private int deltasSinceBase;
+    private boolean baseOnDisk;
+    private boolean forceFull;
+    private boolean bookRecords = true;
+    private boolean reviewRecords = true;
+    private String suspended; // por que os checkpoints estão suspensos; null = normal
+    private String baseDamage; // partes da base que não foram lidas; null = base inteira
+
+    public LibraryStore(String baseFile, int consolidateEvery, int shardCount) {
+        this.baseFile = new File(baseFile);
+        this.deltaPrefix = this.baseFile.getName() + ".delta.";
+        this.consolidateEvery = consolidateEvery;
+        this.shardCount = Math.max(1, shardCount);
+    }
+
+    /** Livros persistidos fora dos snapshots (arquivo mapeado): bases e deltas omitem seus registros. **/
+    public void setBooksStoredExternally(boolean external) {
+        this.bookRecords = !external;
+    }
+
+    /** Reviews persistidas no {@link ReviewStore}: bases e deltas omitem seus registros. **/
+    public void setReviewsStoredExternally(boolean external) {
+        this.reviewRecords = !external;
+    }
+
+    /** Existe uma base no formato binário (e não um arquivo antigo de serialização Java)? **/
+    public boolean hasBase() {
+        return SnapshotCodec.isSnapshotFile(baseFile.getPath()) || ShardedSnapshot.isManifest(baseFile.getPath());
+    }
+
+    /** Sequência do último checkpoint carregado ou preparado. **/
+    public synchronized long lastSequence() {
+        return lastSequence;
+    }
+
+    /** Lê a base e os deltas posteriores a ela, em ordem, para dentro do grafo. **/
+    public synchronized void load(LibraryGraph graph) throws IOException {
+        apply(read(), graph);
+    }
+
+    /** Delta decodificado; {@code decoded} null quando o arquivo não pôde ser lido. **/
+    public record Delta(long sequence, SnapshotCodec.Decoded decoded) {}
+
+    /**
+     * Base e deltas já decodificados, ainda fora do grafo; {@code stale} já estão
+     * incorporados à base. {@code base} é null quando a base não pôde ser lida,
+     * com o motivo em {@code baseError}.
+     */
+    public record Loaded(SnapshotCodec.Decoded base, List<Delta> deltas, List<File> stale, String baseError) {}
+
+    /**
+     * Decodifica a base e os deltas posteriores a ela sem tocar no grafo nem no
+     * estado do store ({@link #apply}). Os deltas são decodificados no
+     * {@link Workers} enquanto esta thread lê a base.
+     */
+    public Loaded read() throws IOException {
+        String base = baseFile.getPath();
+        boolean sharded = ShardedSnapshot.isManifest(base);
+        long baseSequence;
+        try {
+            baseSequence = sharded ? ShardedSnapshot.coveredSequence(base) : SnapshotCodec.readHeader(base).sequence();
+        } catch (IOException | RuntimeException e) {
+            // sem a sequência da base nenhum delta pode ser dado como obsoleto: todos ficam
+            List<Delta> deltas = new ArrayList<>();
+            for (DeltaFile delta : listDeltas()) deltas.add(new Delta(delta.sequence(), null));
+            return new Loaded(null, deltas, List.of(), messageOf(e));
+        }
+
+        List<DeltaFile> pending = new ArrayList<>();
+        List<File> stale = new ArrayList<>();
+        for (DeltaFile delta : listDeltas()) {
+            if (delta.sequence() <= baseSequence) stale.add(delta.file());
+            else pending.add(delta);
+        }
+        List<Callable<SnapshotCodec.Decoded>> tasks = new ArrayList<>();
+        for (DeltaFile delta : pending) tasks.add(() -> SnapshotCodec.decode(delta.file().getPath()));
+        List<Future<SnapshotCodec.Decoded>> decoded = Workers.submitAll(tasks);
+
+        SnapshotCodec.Decoded baseRecords = null;
+        String baseError = null;
+        try {
+            baseRecords = sharded ? ShardedSnapshot.decode(base) : SnapshotCodec.decode(base);
+        } catch (IOException | RuntimeException e) {
+            baseError = messageOf(e);
+            stale = List.of();
+        }
+        List<Delta> deltas = new ArrayList<>(pending.size());
+        for (int i = 0; i < pending.size(); i++) {
+            SnapshotCodec.Decoded records = null;
+            try {
+                records = Workers.await(decoded.get(i));
+                if (!records.complete()) {
+                    // um delta aplicado pela metade deixaria o grafo num estado que nunca existiu
+                    System.err.println("[ERRO] Delta " + pending.get(i).file() + " com partes ilegíveis: "
+                            + String.join(", ", records.lost()));
+                    records = null;
+                }
+            } catch (Exception e) {
+                System.err.println("[ERRO] Falha ao carregar delta " + pending.get(i).file() + ": " + messageOf(e));
+            }
+            deltas.add(new Delta(pending.get(i).sequence(), records));
+        }
+        return new Loaded(baseRecords, deltas, stale, baseError);
+    }
+
+    private static String messageOf(Exception e) {
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+
+    /**
+     * Aplica ao grafo o que {@link #read} decodificou, em ordem, até o primeiro
+     * delta ilegível, e assume a sequência do último delta em disco (aplicado ou
+     * não), para que os próximos checkpoints nunca reusem um número.
+     */
+    public synchronized void apply(Loaded loaded, LibraryGraph graph) {
+        baseOnDisk = true;
+        if (loaded.base() == null) {
+            // nada aplicado: os deltas dependem da base; todos ficam em disco com ela
+            for (Delta delta : loaded.deltas()) lastSequence = Math.max(lastSequence, delta.sequence());
+            suspend("base " + baseFile + " ilegível (" + loaded.baseError() + ")");
+            return;
+        }
+        for (EntityRecord record : loaded.base().records()) graph.apply(record);
+        if (!loaded.base().complete()) {
+            baseDamage = "ilegível: " + String.join("; ", loaded.base().lost());
+            System.err.println("[ERRO] Base " + baseFile + " carregada em parte (" + baseDamage + "): os arquivos"
+                    + " ficam em disco e nenhuma base nova é gravada até a próxima carga; os deltas continuam.");
+        }
+        lastSequence = loaded.base().header().sequence();
+        deltasSinceBase = 0;
+
+        for (File stale : loaded.stale()) stale.delete();
+        for (Delta delta : loaded.deltas()) {
+            lastSequence = delta.sequence();
+            deltasSinceBase++;
+            if (suspended != null) continue;
+            if (delta.decoded() == null) {
+                suspend("delta " + deltaPath(delta.sequence()) + " ilegível; ele e os seguintes não foram aplicados");
+                continue;
+            }
+            for (EntityRecord record : delta.decoded().records()) graph.apply(record);
+        }
+    }
+
+    /**
+     * Suspende os checkpoints até a próxima carga: os arquivos em disco ficam
+     * como estão e as alterações seguem cobertas pelo journal. Para quando o
+     * que foi carregado não corresponde ao que está em disco.
+     */
+    public synchronized void suspend(String reason) {
+        if (suspended != null) return;
+        suspended = reason;
+        System.err.println("[ERRO] " + reason + ": snapshots mantidos em disco e checkpoints suspensos até a"
+                + " próxima carga; as alterações seguem no journal.");
+    }
+
+    /** Por que checkpoints ou bases novas estão suspensos, ou null se os snapshots estão inteiros. **/
+    public synchronized String damage() {
+        if (suspended != null) return "checkpoints suspensos: " + suspended;
+        if (baseDamage != null) return "bases novas suspensas (só deltas): " + baseDamage;
+        return null;
+    }
+
+    /**
+     * Estado atual de uma única entidade em disco, sem carregar o acervo: os
+     * registros dela na base (pelo índice do rodapé) com os deltas posteriores
+     * aplicados por cima, em ordem. Para um livro, vêm o registro do livro (se
+     * gravado nos snapshots) seguido das suas reviews.
+     *
+     * @return lista vazia se a entidade não existe; null se não há base binária
+     */
+    public synchronized List<EntityRecord> readEntity(EntityType type, int id) throws IOException {
+        if (!hasBase()) return null;
+        String base = baseFile.getPath();
+        boolean sharded = ShardedSnapshot.isManifest(base);
+        List<EntityRecord> records = sharded
+                ? ShardedSnapshot.readEntity(base, type, id)
+                : SnapshotCodec.readEntity(base, type, id);
+        if (records == null) records = scanEntity(base, type, id); // base sem índice (versão antiga)
+        long baseSequence = sharded ? ShardedSnapshot.coveredSequence(base) : SnapshotCodec.readHeader(base).sequence();
+
+        EntityRecord entity = null;
+        Map<Integer, EntityRecord> reviews = new LinkedHashMap<>();
+        for (EntityRecord record : records) entity = merge(entity, reviews, record);
+        for (DeltaFile delta : listDeltas()) {
+            if (delta.sequence() <= baseSequence) continue;
+            List<EntityRecord> changed = SnapshotCodec.readEntity(delta.file().getPath(), type, id);
+            if (changed == null) changed = scanEntity(delta.file().getPath(), type, id);
+            for (EntityRecord record : changed) entity = merge(entity, reviews, record);
+        }
+
+        List<EntityRecord> result = new ArrayList<>();
+        if (entity != null && !(entity instanceof EntityRecord.Deletion)) result.add(entity);
+        result.addAll(reviews.values());
+        return result;
+    }
+
+    /** Aplica um registro ao estado da entidade; devolve o novo registro da entidade. **/
+    private static EntityRecord merge(EntityRecord entity, Map<Integer, EntityRecord> reviews, EntityRecord record) {
+        if (record instanceof EntityRecord.ReviewRecord) {
+            reviews.put(record.id(), record);
+            return entity;
+        }
+        if (record instanceof EntityRecord.Deletion d && d.target() == EntityType.REVIEW) {
+            reviews.remove(d.id());
+            return entity;
+        }
+        if (record instanceof EntityRecord.Deletion) reviews.clear(); // livro removido leva as reviews
+        return record;
+    }
+
+    /** Leitura completa de um arquivo sem índice, filtrando os registros da entidade. **/
+    private static List<EntityRecord> scanEntity(String file, EntityType type, int id) throws IOException {
+        long wanted = SnapshotCodec.indexKey(type, id);
+        List<EntityRecord> records = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(BlockCompression.input(new FileInputStream(file)))) {
+            for (EntityRecord record : SnapshotCodec.readRecords(in).records()) {
+                if (SnapshotCodec.indexKeyOf(record) == wanted) records.add(record);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Prepara o próximo checkpoint: delta com as mudanças, ou base completa quando
+     * ainda não há base binária ou já se acumularam deltas demais (e a base
+     * carregada veio inteira; senão, segue em deltas).
+     *
+     * @return null se não houver nada para gravar ou se os checkpoints estão suspensos
+     */
+    public synchronized Checkpoint prepare(List<User> users, List<Book> books, List<Category> categories,
+                                           ChangeTracker.Changes changes) {
+        if (suspended != null) {
+            if (!changes.isEmpty()) {
+                System.err.println("[ERRO] Checkpoint não gravado (" + suspended + "); as alterações seguem no journal.");
+            }
+            return null;
+        }
+        boolean full = (forceFull || !baseOnDisk || deltasSinceBase >= consolidateEvery) && baseDamage == null;
+        if (!full && changes.isEmpty()) return null;
+        // o estado só avança com a imagem codificada: se a codificação falha, as mudanças
+        // drenadas voltam ao ChangeTracker e o próximo checkpoint as inclui
+        try {
+            return full ? prepareBase(users, books, categories) : prepareDelta(changes);
+        } catch (RuntimeException e) {
+            ChangeTracker.restore(changes);
+            throw e;
+        }
+    }
+
+    private Checkpoint prepareBase(List<User> users, List<Book> books, List<Category> categories) {
+        // acima de qualquer delta em disco (ex.: base ilegível, carga sem store.apply): a base nova os
+        // torna todos obsoletos, e nenhum sobrevive com sequência maior que a dela
+        long sequence = lastSequence;
+        for (DeltaFile delta : listDeltas()) sequence = Math.max(sequence, delta.sequence());
+        sequence++; // a base também ganha sequência própria: identifica a versão dos dados (DerivedIndexes)
+        Checkpoint checkpoint = shardCount > 1
+                ? ShardedSnapshot.prepare(baseFile.getPath(), shardCount, sequence,
+                        users, books, categories, bookRecords, reviewRecords)
+                : new Checkpoint(true, baseFile.getPath(),
+                        SnapshotCodec.encode(sequence, users, books, categories, bookRecords, reviewRecords), sequence);
+        forceFull = false;
+        baseOnDisk = true;
+        deltasSinceBase = 0;
+        lastSequence = sequence;
+        return checkpoint;
+    }
+
+    private Checkpoint prepareDelta(ChangeTracker.Changes changes) {
+        List<EntityRecord> records = new ArrayList<>();
+        for (Object entity : changes.dirty()) {
+            if (!bookRecords && entity instanceof Book) continue;
+            if (!reviewRecords && entity instanceof Review) continue;
+            EntityRecord record = toRecord(entity);
+            if (record != null) records.add(record);
+        }
+        // usuários, livros e categorias antes das reviews; remoções por último
+        records.sort(Comparator.comparingInt(r -> r.type().ordinal()));
+        for (Object entity : changes.removed()) {
+            if (!reviewRecords && entity instanceof Review) continue;
+            if (entity instanceof CrudObjectInterface crud) records.add(EntityRecord.deletionOf(crud));
+        }
+
+        long sequence = lastSequence + 1;
+        Checkpoint checkpoint = new Checkpoint(false, deltaPath(sequence), SnapshotCodec.encodeDelta(sequence, records), sequence);
+        lastSequence = sequence;
+        deltasSinceBase++;
+        return checkpoint;
+    }
+
+    public void write(Checkpoint checkpoint) throws IOException {
+        try {
+            writeShards(checkpoint.shards());
+            SnapshotCodec.saveImage(checkpoint.file(), checkpoint.image());
+        } catch (IOException e) {
+            requireFullBase();
+            throw e;
+        }
+        if (checkpoint.full()) {
+            ShardedSnapshot.deleteStaleShards(checkpoint.file(), checkpoint.shards());
+            for (DeltaFile delta : listDeltas()) {
+                if (delta.sequence() <= checkpoint.sequence()) delta.file().delete();
+            }
+        }
+    }
+
+    /** Grava os shards em paralelo; o manifesto só é gravado depois de todos. **/
+    private static void writeShards(List<ShardedSnapshot.Shard> shards) throws IOException {
+        if (shards.isEmpty()) return;
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (ShardedSnapshot.Shard shard : shards) {
+            tasks.add(() -> {
+                SnapshotCodec.saveImage(shard.file(), shard.image());
+                return null;
+            });
+        }
+        for (Future<Void> done : Workers.submitAll(tasks)) {
+            try {
+                Workers.await(done);
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException("Falha ao gravar shard: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /** Após uma falha de gravação o próximo checkpoint precisa ser completo. **/
+    public synchronized void requireFullBase() {
+        forceFull = true;
+    }
+
+    private static EntityRecord toRecord(Object entity) {
+        return switch (entity) {
+            case Review r -> r.getBookId() > 0 ? EntityRecord.of(r) : null;
+            case User u -> EntityRecord.of(u);
+            case Book b -> EntityRecord.of(b);
+            case Category c -> EntityRecord.of(c);
+            default -> null;
+        };
+    }
+
+    private String deltaPath(long sequence) {
+        return new File(baseFile.getAbsoluteFile().getParentFile(), deltaPrefix + sequence).getPath();
+    }
+
+    private record DeltaFile(File file, long sequence) {}
+
+    private List<DeltaFile> listDeltas() {
+        List<DeltaFile> deltas = new ArrayList<>();
+        File[] files = baseFile.getAbsoluteFile().getParentFile().listFiles();
+        if (files == null) return deltas;
+
+        for (File f : files) {
+            String name = f.getName();
+            if (!name.startsWith(deltaPrefix) || name.endsWith(".tmp")) continue;
+            try {
+                deltas.add(new DeltaFile(f, Long.parseLong(name.substring(deltaPrefix.length()))));
+            } catch (NumberFormatException ignored) {
+                // não é um delta nosso
+            }
+        }
+        deltas.sort(Comparator.comparingLong(DeltaFile::sequence));
+        return deltas;
+    }
+}
@@ -0,0 +1,247 @@
+package controller.persistence;
+
+import model.CrudObjectInterface;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Engine log-structured: cada put/delete vira uma entrada anexada ao arquivo
+ * (sem regravar os demais objetos) e a carga reexecuta o log. Quando as
+ * entradas obsoletas passam a dominar o arquivo, ele é compactado: regravado só
+ * com os objetos vivos, num temporário que substitui o original.
+ *
+ * Formato: cabeçalho (magic, versão) e entradas [tamanho][op][id][objeto serializado].
+ */
+public final class LogEngine<T extends CrudObjectInterface> extends MemoryEngine<T> {
+
+    private static final int MAGIC = 0x424C4F47; // "BLOG"
+    private static final short VERSION = 1;
+    private static final int HEADER_BYTES = 6;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+
+    // compacta quando há mais que (vivos * GARBAGE_RATIO + MIN_ENTRIES) entradas
+    private static final int GARBAGE_RATIO = 2;
+    private static final int MIN_ENTRIES = 1024;
+
+    private final File file;
+    private final GroupCommit.Syncable syncTarget = this::forceChannel;
+    private FileChannel channel;
+    private int entries;
+
+    public LogEngine(String logFile) {
+        this.file = new File(logFile);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public void put(T obj) {
+        if (obj == null) return;
+        super.put(obj);
+        if (append(PUT, obj.getId(), serialize(obj))) commit();
+    }
+
+    /** O lote inteiro é anexado antes de um único fsync. **/
+    @Override
+    public void putAll(Collection<? extends T> objects) {
+        super.putAll(objects);
+        boolean appended = false;
+        for (T obj : objects) appended |= append(PUT, obj.getId(), serialize(obj));
+        if (appended) commit();
+    }
+
+    @Override
+    public boolean delete(int id) {
+        boolean removed = super.delete(id);
+        if (removed && append(DELETE, id, new byte[0])) commit();
+        return removed;
+    }
+
+    /** A compactação regrava o log a partir da memória: um objeto solto sumiria do log. **/
+    @Override
+    public boolean evict(int id) {
+        return false;
+    }
+
+    @Override
+    public void replaceAll(Collection<? extends T> loaded) {
+        super.replaceAll(loaded);
+        rewrite();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public synchronized void load() {
+        closeChannel();
+        super.replaceAll(List.of());
+        entries = 0;
+        if (!file.exists()) return;
+
+        long validBytes = HEADER_BYTES;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+                System.err.println("[ERRO] Log " + file + " não reconhecido; ignorado.");
+                return;
+            }
+            while (true) {
+                byte[] entry;
+                try {
+                    entry = new byte[in.readInt()];
+                    in.readFully(entry);
+                } catch (EOFException e) {
+                    break; // fim do arquivo ou última entrada incompleta
+                }
+                DataInputStream fields = new DataInputStream(new ByteArrayInputStream(entry));
+                byte op = fields.readByte();
+                int id = fields.readInt();
+                if (op == PUT) {
+                    try (ObjectInputStream obj = new ObjectInputStream(fields)) {
+                        super.put((T) obj.readObject());
+                    }
+                } else {
+                    super.delete(id);
+                    highestId = Math.max(highestId, id);
+                }
+                entries++;
+                validBytes += Integer.BYTES + entry.length;
+            }
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            System.err.println("[ERRO] Falha ao carregar log " + file + ": " + e.getMessage());
+        }
+        truncateTo(validBytes);
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (entries > objects.size() * GARBAGE_RATIO + MIN_ENTRIES) {
+            rewrite();
+            return;
+        }
+        try {
+            if (channel != null) channel.force(false);
+        } catch (IOException e) {
+            System.err.println("[ERRO] Falha ao sincronizar log " + file + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        flush();
+        closeChannel();
+    }
+
+    /** Compacta se houver entradas obsoletas. **/
+    @Override
+    public synchronized void compact() {
+        if (entries > objects.size() || !file.exists()) rewrite();
+    }
+
+    /** Regrava o log só com os objetos vivos. **/
+    private synchronized void rewrite() {
+        closeChannel();
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null) parent.mkdirs();
+            try (FileChannel out = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                out.write(header());
+                for (T obj : objects.view()) out.write(entry(PUT, obj.getId(), serialize(obj)));
+                out.force(false);
+            }
+            Files.move(tmp.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            entries = objects.size();
+        } catch (IOException e) {
+            tmp.delete();
+            System.err.println("[ERRO] Falha ao compactar log " + file + ": " + e.getMessage());
+        }
+    }
+
+    private synchronized boolean append(byte op, int id, byte[] payload) {
+        try {
+            if (channel == null) openForAppend();
+            channel.write(entry(op, id, payload));
+            entries++;
+        } catch (IOException e) {
+            System.err.println("[ERRO] Falha ao gravar log " + file + ": " + e.getMessage());
+            return false;
+        }
+        if (entries > objects.size() * GARBAGE_RATIO + MIN_ENTRIES) rewrite();
+        return true;
+    }
+
+    /** fsync da entrada anexada, conforme o {@link GroupCommit}; chamado fora do monitor. **/
+    private void commit() {
+        GroupCommit.shared().commitOrReport(syncTarget, "log " + file);
+    }
+
+    private synchronized void forceChannel() throws IOException {
+        if (channel != null) channel.force(false);
+    }
+
+    private void openForAppend() throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) parent.mkdirs();
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (channel.size() == 0) channel.write(header());
+    }
+
+    private void truncateTo(long validBytes) {
+        if (file.length() <= validBytes) return;
+        try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            out.truncate(validBytes);
+        } catch (IOException e) {
+            System.err.println("[ERRO] Falha ao truncar log " + file + ": " + e.getMessage());
+        }
+    }
+
+    private void closeChannel() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        channel = null;
+    }
+
+    private static ByteBuffer header() {
+        return ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putShort(VERSION).flip();
+    }
+
+    private static ByteBuffer entry(byte op, int id, byte[] payload) {
+        int length = 1 + Integer.BYTES + payload.length;
+        return ByteBuffer.allocate(Integer.BYTES + length)
+                .putInt(length).put(op).putInt(id).put(payload).flip();
+    }
+
+    private static byte[] serialize(Object obj) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(buffer)) {
+            out.writeObject(obj);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,96 @@
+package controller.persistence;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executa periodicamente, numa thread de baixa prioridade, a manutenção da
+ * persistência: um checkpoint novo (que torna obsoletos o journal e os deltas)
+ * e a compactação de logs e segmentos. Mede cada execução pelo espaço ocupado
+ * no diretório de dados antes e depois.
+ */
+public final class MaintenanceScheduler implements AutoCloseable {
+
+    /** Resultado de uma execução. **/
+    public record Run(Instant startedAt, long durationMillis, long bytesBefore, long bytesAfter, String error) {
+        public long bytesReclaimed() {
+            return Math.max(0, bytesBefore - bytesAfter);
+        }
+    }
+
+    private final File dataDir;
+    private final Runnable maintenance;
+    private ScheduledExecutorService executor;
+
+    private Run last;
+    private int runs;
+    private long totalReclaimed;
+
+    /** {@code maintenance} faz o trabalho em si; aqui ficam agendamento e estatísticas. **/
+    public MaintenanceScheduler(String dataDir, Runnable maintenance) {
+        this.dataDir = new File(dataDir);
+        this.maintenance = maintenance;
+    }
+
+    /** Agenda execuções a cada {@code intervalSeconds}, a primeira após um intervalo. **/
+    public synchronized void start(long intervalSeconds) {
+        if (executor != null || intervalSeconds <= 0) return;
+        executor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread t = new Thread(task, "persistence-maintenance");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        executor.scheduleWithFixedDelay(this::runNow, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /** Executa a manutenção agora, na thread de quem chama. **/
+    public Run runNow() {
+        Instant startedAt = Instant.now();
+        long start = System.nanoTime();
+        long before = sizeOf(dataDir);
+        String error = null;
+        try {
+            maintenance.run();
+        } catch (RuntimeException e) {
+            error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            System.err.println("[ERRO] Falha na manutenção da persistência: " + error);
+        }
+        Run run = new Run(startedAt, (System.nanoTime() - start) / 1_000_000, before, sizeOf(dataDir), error);
+        synchronized (this) {
+            last = run;
+            runs++;
+            totalReclaimed += run.bytesReclaimed();
+        }
+        return run;
+    }
+
+    public synchronized Run lastRun() {
+        return last;
+    }
+
+    public synchronized String stats() {
+        if (last == null) return executor == null ? "desligada" : "nenhuma execução ainda";
+        return String.format("%d execuções; última em %s, %d ms, %,d bytes liberados (%,d -> %,d)%s; total liberado %,d bytes",
+                runs, last.startedAt(), last.durationMillis(), last.bytesReclaimed(), last.bytesBefore(),
+                last.bytesAfter(), last.error() == null ? "" : ", falhou: " + last.error(), totalReclaimed);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (executor == null) return;
+        executor.shutdownNow();
+        executor = null;
+    }
+
+    private static long sizeOf(File file) {
+        File[] children = file.listFiles();
+        if (children == null) return file.length();
+        long total = 0;
+        for (File child : children) total += sizeOf(child);
+        return total;
+    }
+}
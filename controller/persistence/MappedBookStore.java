@@ -0,0 +1,228 @@
+package controller.persistence;
+
+import model.Book;
+import model.ChangeTracker;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Campos escalares dos livros num arquivo mapeado em memória, com registros
+ * de tamanho fixo endereçados pelo id: o registro do livro N fica em
+ * {@code HEADER + (N - 1) * RECORD}, então ler ou gravar um livro é O(1) e não
+ * exige carregar a lista inteira. Nome, autor e editora ficam num segundo
+ * arquivo mapeado (heap de strings, só anexação); o registro guarda
+ * deslocamento e tamanho de cada um. O cache fica por conta do sistema operacional.
+ *
+ * Um {@link BloomFilter} dos ids vivos ({@code <arquivo>.bloom}) evita tocar nas
+ * páginas do arquivo ao procurar ids inexistentes. Ele é gravado no force() com
+ * o carimbo (maior id, fim do heap): todo livro novo ou regravado num slot vazio
+ * anexa strings ao heap, então um carimbo diferente na abertura significa que o
+ * filtro pode estar faltando ids, e ele é reconstruído.
+ */
+public final class MappedBookStore implements Closeable {
+    private static final int MAGIC = 0x424D4150; // "BMAP"
+    private static final short VERSION = 1;
+    private static final int HEADER = 64;
+    private static final int RECORD = 48;
+
+    // cabeçalho
+    private static final int H_MAX_ID = 8;
+    private static final int H_HEAP_END = 16;
+
+    // registro
+    private static final int R_LIVE = 0;
+    private static final int R_ID = 4;
+    private static final int R_PRICE = 8;
+    private static final int R_PAGES = 16;
+    private static final int R_NAME = 20;
+    private static final int R_AUTHOR = 28;
+    private static final int R_PUBLISHER = 36;
+
+    private final FileChannel recordChannel;
+    private final FileChannel heapChannel;
+    private MappedByteBuffer records;
+    private MappedByteBuffer heap;
+    private final File filterFile;
+    private BloomFilter ids;
+
+    public MappedBookStore(String recordFile, String heapFile) throws IOException {
+        File records = new File(recordFile);
+        File parent = records.getAbsoluteFile().getParentFile();
+        if (parent != null) parent.mkdirs();
+
+        this.recordChannel = new RandomAccessFile(records, "rw").getChannel();
+        this.heapChannel = new RandomAccessFile(heapFile, "rw").getChannel();
+
+        boolean fresh = recordChannel.size() < HEADER;
+        this.records = recordChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                Math.max(recordChannel.size(), HEADER + 1024L * RECORD));
+        this.heap = heapChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(heapChannel.size(), 64 * 1024));
+
+        if (fresh) {
+            this.records.putInt(0, MAGIC);
+            this.records.putShort(4, VERSION);
+            this.records.putShort(6, (short) RECORD);
+            this.records.putInt(H_MAX_ID, 0);
+            this.records.putLong(H_HEAP_END, 0);
+        } else if (this.records.getInt(0) != MAGIC || this.records.getShort(6) != RECORD) {
+            throw new IOException("Arquivo de livros mapeado inválido: " + recordFile);
+        }
+
+        this.filterFile = new File(recordFile + ".bloom");
+        this.ids = BloomFilter.load(filterFile, filterStamp());
+        if (ids == null || ids.isOverCapacity()) rebuildFilter();
+    }
+
+    /** Maior id já gravado (os slots até ele podem estar vazios). **/
+    public synchronized int maxId() {
+        return records.getInt(H_MAX_ID);
+    }
+
+    public synchronized boolean contains(int id) {
+        if (id < 1 || id > maxId() || !ids.mightContain(id)) return false;
+        boolean live = records.get(slot(id) + R_LIVE) == 1;
+        if (!live) ids.reportFalsePositive();
+        return live;
+    }
+
+    /** Monta o livro a partir do registro mapeado, ou null se não existir. **/
+    public synchronized Book read(int id) {
+        if (!contains(id)) return null;
+        int at = slot(id);
+
+        ChangeTracker.suspend(); // ler do disco não é uma alteração
+        try {
+            return new Book.Builder()
+                    .setId(id)
+                    .setName(readString(at + R_NAME))
+                    .setPrice(records.getDouble(at + R_PRICE))
+                    .setAuthor(readString(at + R_AUTHOR))
+                    .setPublisher(readString(at + R_PUBLISHER))
+                    .setPages(records.getInt(at + R_PAGES))
+                    .build();
+        } finally {
+            ChangeTracker.resume();
+        }
+    }
+
+    public synchronized void write(Book book) {
+        int id = book.getId();
+        ensureRecordCapacity(id);
+        int at = slot(id);
+
+        writeString(at, R_NAME, book.getName());
+        writeString(at, R_AUTHOR, book.getAuthor());
+        writeString(at, R_PUBLISHER, book.getPublisher());
+        records.putInt(at + R_ID, id);
+        records.putDouble(at + R_PRICE, book.getPrice());
+        records.putInt(at + R_PAGES, book.getPages());
+        records.put(at + R_LIVE, (byte) 1);
+
+        if (id > maxId()) records.putInt(H_MAX_ID, id);
+        ids.add(id);
+        if (ids.isOverCapacity()) rebuildFilter();
+    }
+
+    public synchronized boolean delete(int id) {
+        if (id < 1 || id > maxId() || records.get(slot(id) + R_LIVE) != 1) return false;
+        records.put(slot(id) + R_LIVE, (byte) 0);
+        return true;
+    }
+
+    /** Ids de todos os livros vivos, em ordem crescente. **/
+    public synchronized List<Integer> ids() {
+        List<Integer> ids = new ArrayList<>();
+        int max = maxId();
+        for (int id = 1; id <= max; id++) {
+            if (records.get(slot(id) + R_LIVE) == 1) ids.add(id);
+        }
+        return ids;
+    }
+
+    /** Força as páginas sujas para o disco e grava o filtro de ids. **/
+    public synchronized void force() {
+        records.force();
+        heap.force();
+        try {
+            ids.save(filterFile, filterStamp());
+        } catch (IOException e) {
+            System.err.println("[ERRO] Falha ao gravar " + filterFile + ": " + e.getMessage());
+        }
+    }
+
+    public synchronized String filterStats() {
+        return ids.stats();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        force();
+        recordChannel.close();
+        heapChannel.close();
+    }
+
+    private long filterStamp() {
+        return BloomFilter.stampOf(new long[] { maxId(), records.getLong(H_HEAP_END) });
+    }
+
+    private void rebuildFilter() {
+        List<Integer> live = ids();
+        BloomFilter fresh = BloomFilter.withCapacity(Math.max(1024, live.size() * 2),
+                PersistenceConfig.bloomFalsePositiveRate());
+        for (int id : live) fresh.add(id);
+        ids = fresh;
+    }
+
+    private static int slot(int id) {
+        return HEADER + (id - 1) * RECORD;
+    }
+
+    private String readString(int refAt) {
+        int offset = records.getInt(refAt);
+        int length = records.getInt(refAt + 4);
+        byte[] bytes = new byte[length];
+        heap.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Anexa a string ao heap, a menos que o registro (vivo) já aponte para o mesmo valor. **/
+    private void writeString(int at, int ref, String value) {
+        if (records.get(at + R_LIVE) == 1 && readString(at + ref).equals(value)) return;
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        long end = records.getLong(H_HEAP_END);
+        ensureHeapCapacity(end + bytes.length);
+        heap.put((int) end, bytes);
+        records.putInt(at + ref, (int) end);
+        records.putInt(at + ref + 4, bytes.length);
+        records.putLong(H_HEAP_END, end + bytes.length);
+    }
+
+    private void ensureRecordCapacity(int id) {
+        long needed = (long) slot(id) + RECORD;
+        if (needed <= records.capacity()) return;
+        records = remap(recordChannel, Math.max(needed, records.capacity() * 2L));
+    }
+
+    private void ensureHeapCapacity(long needed) {
+        if (needed <= heap.capacity()) return;
+        if (needed > Integer.MAX_VALUE) throw new IllegalStateException("Heap de strings excedeu 2 GB");
+        heap = remap(heapChannel, Math.min(Integer.MAX_VALUE, Math.max(needed, heap.capacity() * 2L)));
+    }
+
+    private static MappedByteBuffer remap(FileChannel channel, long size) {
+        try {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new IllegalStateException("Falha ao ampliar arquivo mapeado: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package controller.persistence;
+
+import controller.CrudObjectAux;
+import model.CrudObjectInterface;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Engine só em memória, sobre o {@link CrudObjectAux}: load e flush não fazem
+ * nada. É a base dos engines persistentes, que acrescentam o meio de gravação.
+ */
+public class MemoryEngine<T extends CrudObjectInterface> implements StorageEngine<T> {
+    protected final CrudObjectAux<T> objects = new CrudObjectAux<>();
+    // maior id já incluído; remoções não o baixam
+    protected int highestId;
+
+    @Override
+    public void put(T obj) {
+        if (obj == null) return;
+        highestId = Math.max(highestId, obj.getId());
+        objects.addObject(obj);
+    }
+
+    @Override
+    public void putAll(Collection<? extends T> batch) {
+        for (T obj : batch) highestId = Math.max(highestId, obj.getId());
+        objects.addObjects(batch);
+    }
+
+    @Override
+    public T get(int id) {
+        return objects.findById(id);
+    }
+
+    @Override
+    public boolean delete(int id) {
+        T obj = objects.findById(id);
+        return obj != null && objects.delete(obj);
+    }
+
+    @Override
+    public boolean evict(int id) {
+        T obj = objects.findById(id);
+        return obj != null && objects.evict(obj);
+    }
+
+    @Override
+    public List<T> scan() {
+        return objects.getAllObjects();
+    }
+
+    @Override
+    public void forEach(Consumer<? super T> action) {
+        for (T obj : objects.view()) action.accept(obj);
+    }
+
+    @Override
+    public void replaceAll(Collection<? extends T> loaded) {
+        int highest = 0;
+        for (T obj : loaded) highest = Math.max(highest, obj.getId());
+        objects.setObjects(loaded);
+        highestId = highest;
+    }
+
+    @Override
+    public int highestId() {
+        return highestId;
+    }
+
+    @Override
+    public void load() {}
+
+    @Override
+    public void flush() {}
+}
@@ -0,0 +1,250 @@
+package controller.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Journal de mutações (write-ahead log) somente-anexação.
+ * Cada create/update/delete vira uma entrada pequena no fim do arquivo, em vez
+ * de regravar o acervo inteiro. Na carga, as entradas são reaplicadas sobre o
+ * último snapshot; depois de um snapshot novo o journal é truncado.
+ *
+ * Formato: cabeçalho (magic, versão) e entradas [tamanho][op][registro].
+ *
+ * Cada lote anexado só é dado como gravado depois do fsync pedido ao
+ * {@link GroupCommit} (conforme o modo de durabilidade).
+ */
+public final class MutationJournal implements Closeable {
+
+    public enum Op { CREATE, UPDATE, DELETE }
+
+    private static final int MAGIC = 0x424A4E4C; // "BJNL"
+    private static final short VERSION = 2;
+    private static final int HEADER_BYTES = Integer.BYTES + Short.BYTES;
+
+    private final File file;
+    private final GroupCommit groupCommit;
+    private final GroupCommit.Syncable syncTarget = this::forceStream;
+    private volatile FileOutputStream fileOut;
+    private DataOutputStream out;
+    private PersistenceService writeBehind;
+
+    public MutationJournal(String filename) {
+        this(filename, GroupCommit.shared());
+    }
+
+    public MutationJournal(String filename, GroupCommit groupCommit) {
+        this.file = new File(filename);
+        this.groupCommit = groupCommit;
+    }
+
+    /** Entrega as entradas a um {@link PersistenceService} em vez de gravar na hora. **/
+    public void setWriteBehind(PersistenceService writeBehind) {
+        this.writeBehind = writeBehind;
+    }
+
+    public void append(Op op, EntityRecord record) {
+        byte[] entry = encode(op, record);
+        if (writeBehind != null) writeBehind.submit(entry);
+        else writeEntries(List.of(entry));
+    }
+
+    /** Anexa vários registros com a mesma operação (ex.: importação em lote) numa escrita e um fsync. **/
+    public void appendAll(Op op, List<EntityRecord> records) {
+        if (records.isEmpty()) return;
+        List<byte[]> entries = new ArrayList<>(records.size());
+        for (EntityRecord record : records) entries.add(encode(op, record));
+        if (writeBehind != null) entries.forEach(writeBehind::submit);
+        else writeEntries(entries);
+    }
+
+    /** Codifica uma entrada (op + registro), sem o prefixo de tamanho. **/
+    public static byte[] encode(Op op, EntityRecord record) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64);
+        try (DataOutputStream entry = new DataOutputStream(buffer)) {
+            entry.writeByte(op.ordinal());
+            RecordCodec.write(entry, record);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // ByteArrayOutputStream não falha
+        }
+        return buffer.toByteArray();
+    }
+
+    /** Anexa as entradas ao arquivo numa única escrita sequencial e espera o fsync do lote. **/
+    public void writeEntries(List<byte[]> entries) {
+        // o fsync é pedido fora do monitor: outras threads anexam enquanto esta espera
+        if (appendEntries(entries)) groupCommit.commitOrReport(syncTarget, "journal " + file);
+    }
+
+    private synchronized boolean appendEntries(List<byte[]> entries) {
+        try {
+            ByteArrayOutputStream batch = new ByteArrayOutputStream();
+            DataOutputStream batchOut = new DataOutputStream(batch);
+            for (byte[] entry : entries) {
+                batchOut.writeInt(entry.length);
+                batchOut.write(entry);
+            }
+
+            DataOutputStream stream = openForAppend();
+            batch.writeTo(stream);
+            stream.flush();
+            return true;
+        } catch (IOException e) {
+            System.err.println("[ERRO] Falha ao gravar journal " + file + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Sem o monitor: quem faz checkpoint segura o journal enquanto espera o
+     * group commit, que pode incluir este alvo.
+     */
+    private void forceStream() throws IOException {
+        FileOutputStream current = fileOut;
+        if (current == null) return;
+        try {
+            current.getChannel().force(false);
+        } catch (ClosedChannelException e) {
+            // trocado por reset ou close: as entradas já estão num checkpoint ou foram sincronizadas no fechamento
+        }
+    }
+
+    /**
+     * Reaplica todas as entradas no grafo, em ordem.
+     * Uma entrada inválida (queda durante a escrita) encerra a leitura.
+     *
+     * @return quantidade de entradas aplicadas
+     */
+    public int replay(LibraryGraph graph) {
+        List<EntityRecord> records = readRecords();
+        for (EntityRecord record : records) graph.apply(record);
+        return records.size();
+    }
+
+    /**
+     * Decodifica as entradas, em ordem, sem aplicar: a leitura pode correr junto
+     * com a dos snapshots, e a aplicação vem depois da deles.
+     * A primeira entrada que não se sustenta (queda no meio da escrita, cauda
+     * zerada ou lixo: tamanho fora do que resta do arquivo ou bytes que não
+     * decodificam) encerra a leitura, e o arquivo é truncado no fim da última
+     * entrada válida para as próximas não ficarem atrás dela.
+     */
+    public synchronized List<EntityRecord> readRecords() {
+        List<EntityRecord> records = new ArrayList<>();
+        if (!file.exists() || file.length() == 0) return records;
+
+        long size = file.length();
+        long valid = HEADER_BYTES;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (size < HEADER_BYTES || in.readInt() != MAGIC || in.readShort() != VERSION) {
+                System.err.println("[ERRO] Journal " + file + " com cabeçalho inválido; ignorado.");
+                valid = 0;
+            } else {
+                while (valid + Integer.BYTES <= size) {
+                    int length = in.readInt();
+                    if (length <= 0 || length > size - valid - Integer.BYTES) break;
+                    byte[] entry = new byte[length];
+                    in.readFully(entry);
+
+                    EntityRecord record;
+                    try {
+                        DataInputStream entryIn = new DataInputStream(new ByteArrayInputStream(entry));
+                        if (entryIn.readUnsignedByte() >= Op.values().length) break;
+                        // op: create e update são ambos "upsert" na reaplicação
+                        record = RecordCodec.read(entryIn);
+                        if (entryIn.available() != 0) break;
+                    } catch (IOException | RuntimeException e) {
+                        break;
+                    }
+                    records.add(record);
+                    valid += Integer.BYTES + length;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("[ERRO] Falha ao reaplicar journal " + file + ": " + e.getMessage());
+            return records;
+        }
+        if (size > valid) truncate(valid, size, records.size());
+        return records;
+    }
+
+    /** Corta a cauda inválida; o próximo anexo recomeça no fim da última entrada válida. **/
+    private void truncate(long valid, long size, int entries) {
+        if (valid > 0) System.err.println("[ERRO] Journal " + file + " termina com entrada inválida; "
+                + entries + " entradas reaplicadas, " + (size - valid) + " bytes descartados.");
+        try {
+            closeStream(); // o anexo reabre depois do corte (e regrava o cabeçalho se o arquivo ficou vazio)
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+                channel.force(true);
+            }
+        } catch (IOException e) {
+            System.err.println("[ERRO] Falha ao truncar journal " + file + ": " + e.getMessage());
+        }
+    }
+
+    /** Descarta as entradas, já cobertas por um snapshot recém-gravado. **/
+    public void reset() {
+        synchronized (this) {
+            try {
+                closeStream();
+                try (DataOutputStream fresh = new DataOutputStream(new FileOutputStream(file, false))) {
+                    writeHeader(fresh);
+                }
+            } catch (IOException e) {
+                System.err.println("[ERRO] Falha ao truncar journal " + file + ": " + e.getMessage());
+                return;
+            }
+        }
+        groupCommit.commitOrReport(GroupCommit.file(file.toPath()), "journal " + file);
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            closeStream();
+        } catch (IOException e) {
+            System.err.println("[ERRO] Falha ao fechar journal " + file + ": " + e.getMessage());
+        }
+    }
+
+    private DataOutputStream openForAppend() throws IOException {
+        if (out == null) {
+            File parent = file.getParentFile();
+            if (parent != null) parent.mkdirs();
+            boolean fresh = !file.exists() || file.length() == 0;
+            fileOut = new FileOutputStream(file, true);
+            out = new DataOutputStream(fileOut);
+            if (fresh) writeHeader(out);
+        }
+        return out;
+    }
+
+    private void closeStream() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+            fileOut = null;
+        }
+    }
+
+    private static void writeHeader(DataOutputStream stream) throws IOException {
+        stream.writeInt(MAGIC);
+        stream.writeShort(VERSION);
+        stream.flush();
+    }
+}
@@ -0,0 +1,200 @@
+package controller.persistence;
+
+import java.util.Locale;
+
+/**
+ * Parâmetros de persistência, lidos das propriedades de sistema na partida
+ * (ex.: {@code java -Dbiblioteca.writeBehind.delayMs=500 Main}).
+ */
+public final class PersistenceConfig {
+    private PersistenceConfig() {}
+
+    /** Liga a gravação em segundo plano (write-behind). **/
+    public static boolean writeBehindEnabled() {
+        return Boolean.parseBoolean(System.getProperty("biblioteca.writeBehind.enabled", "true"));
+    }
+
+    /** Quanto tempo acumular mudanças antes de gravar. **/
+    public static long writeBehindDelayMillis() {
+        return Long.getLong("biblioteca.writeBehind.delayMs", 200L);
+    }
+
+    /** Volume pendente que força a gravação antes do prazo. **/
+    public static int writeBehindMaxPendingBytes() {
+        return Integer.getInteger("biblioteca.writeBehind.maxPendingBytes", 64 * 1024);
+    }
+
+    /** Guarda os campos escalares dos livros num arquivo mapeado ({@link MappedBookStore}). **/
+    public static boolean booksMapped() {
+        return Boolean.getBoolean("biblioteca.books.mapped");
+    }
+
+    /**
+     * Modo em camadas: orçamento de heap (estimado) dos livros materializados do
+     * arquivo mapeado; os de uso mais antigo saem da memória. Liga o modo mapeado.
+     * 0 desliga o limite.
+     */
+    public static long booksHeapBudgetBytes() {
+        return Long.getLong("biblioteca.books.heapBudgetKB", 0) * 1024;
+    }
+
+    /**
+     * Processo somente leitura: livros, categorias e notas vêm da imagem do catálogo
+     * ({@link CatalogImage}) mapeada e compartilhada com outros processos; nada é
+     * carregado no heap nem gravado.
+     */
+    public static boolean catalogReadOnly() {
+        return Boolean.getBoolean("biblioteca.catalog.readOnly");
+    }
+
+    /** Regrava a imagem do catálogo a cada manutenção, para os processos somente leitura. **/
+    public static boolean catalogPublish() {
+        return Boolean.getBoolean("biblioteca.catalog.publish");
+    }
+
+    /** Intervalo mínimo entre as conferências, no modo somente leitura, de uma imagem nova. **/
+    public static long catalogRefreshMillis() {
+        return Long.getLong("biblioteca.catalog.refreshMs", 5000L);
+    }
+
+    /** Guarda as reviews no {@link ReviewStore} (LSM) em vez de dentro dos snapshots. **/
+    public static boolean reviewsLsm() {
+        return Boolean.getBoolean("biblioteca.reviews.lsm");
+    }
+
+    /**
+     * Reviews carregadas sob demanda, livro a livro, no primeiro acesso. Usa o
+     * {@link ReviewStore} mesmo sem {@code biblioteca.reviews.lsm}.
+     */
+    public static boolean reviewsLazy() {
+        return Boolean.getBoolean("biblioteca.reviews.lazy");
+    }
+
+    /** No modo lazy, quantos livros mantêm as reviews em memória ao mesmo tempo. **/
+    public static int reviewCacheBooks() {
+        return Integer.getInteger("biblioteca.reviews.cacheBooks", 1024);
+    }
+
+    /** Tamanho do memtable de reviews antes de virar segmento. **/
+    public static int reviewMemtableBytes() {
+        return Integer.getInteger("biblioteca.reviews.memtableBytes", 256 * 1024);
+    }
+
+    /** Quantos segmentos de reviews acumular antes da compactação em segundo plano. **/
+    public static int reviewCompactAfter() {
+        return Integer.getInteger("biblioteca.reviews.compactAfter", 4);
+    }
+
+    /**
+     * Engine de armazenamento do controlador com a chave informada
+     * (users, books, category): {@code -Dbiblioteca.engine.books=log}.
+     * Sem valor próprio, vale {@code biblioteca.engine} (padrão snapshot).
+     */
+    public static String storageEngine(String key) {
+        return System.getProperty("biblioteca.engine." + key, System.getProperty("biblioteca.engine", "snapshot"));
+    }
+
+    /** Taxa de falso positivo alvo dos filtros de Bloom de ids e nomes. **/
+    public static double bloomFalsePositiveRate() {
+        return Double.parseDouble(System.getProperty("biblioteca.bloom.fpp", "0.01"));
+    }
+
+    /** Em quantos shards (por hash do id) dividir a base do snapshot; 1 = arquivo único. **/
+    public static int snapshotShards() {
+        return Integer.getInteger("biblioteca.snapshot.shards", 1);
+    }
+
+    /** Quando forçar as escritas para o disco: none, batched (padrão, group commit) ou perop ({@link GroupCommit}). **/
+    public static GroupCommit.Durability durability() {
+        String mode = System.getProperty("biblioteca.durability", "batched").toLowerCase(Locale.ROOT);
+        return switch (mode) {
+            case "none" -> GroupCommit.Durability.NONE;
+            case "perop", "per_op" -> GroupCommit.Durability.PER_OP;
+            default -> GroupCommit.Durability.BATCHED;
+        };
+    }
+
+    /** Prazo máximo de um lote do group commit, contado da primeira operação. **/
+    public static long durabilityIntervalMillis() {
+        return Long.getLong("biblioteca.durability.intervalMs", 10L);
+    }
+
+    /** Operações que fecham um lote do group commit antes do prazo. **/
+    public static int durabilityMaxOps() {
+        return Integer.getInteger("biblioteca.durability.maxOps", 64);
+    }
+
+    /** Intervalo entre as manutenções em segundo plano (checkpoint + compactação); 0 desliga. **/
+    public static long maintenanceIntervalSeconds() {
+        return Long.getLong("biblioteca.maintenance.intervalSec", 300L);
+    }
+
+    /** Vazão máxima de gravação das compactações em segundo plano; 0 = sem limite. **/
+    public static long maintenanceIoBytesPerSecond() {
+        return Long.getLong("biblioteca.maintenance.ioKBps", 8 * 1024L) * 1024;
+    }
+
+    /** Compressão dos arquivos de dados: none (padrão) ou deflate ({@link BlockCompression}). **/
+    public static BlockCompression.Codec compressionCodec() {
+        String codec = System.getProperty("biblioteca.compression", "none").toLowerCase(Locale.ROOT);
+        return switch (codec) {
+            case "deflate" -> BlockCompression.Codec.DEFLATE;
+            default -> BlockCompression.Codec.NONE;
+        };
+    }
+
+    /** Tamanho de cada bloco comprimido de forma independente. **/
+    public static int compressionBlockBytes() {
+        return Integer.getInteger("biblioteca.compression.blockKB", 256) * 1024;
+    }
+
+    /** Nível do Deflater: 1 (mais rápido) a 9 (menor arquivo). **/
+    public static int compressionLevel() {
+        return Integer.getInteger("biblioteca.compression.level", 1);
+    }
+
+    /** Objetos por segmento nas listas gravadas pelo DataManager ({@link SegmentedFile}). **/
+    public static int segmentObjects() {
+        return Integer.getInteger("biblioteca.segment.objects", 512);
+    }
+
+    /** Etapas independentes da carga e da gravação em paralelo ({@link TaskGraph}); false: uma após a outra. **/
+    public static boolean parallelPhases() {
+        return Boolean.parseBoolean(System.getProperty("biblioteca.phases.parallel", "true"));
+    }
+
+    /** Linhas por lote na importação em lote: unidade de parse, de reserva de ids e de fsync. **/
+    public static int importBatchRows() {
+        return Math.max(1, Integer.getInteger("biblioteca.import.batchRows", 2000));
+    }
+
+    /** Lotes que cabem em cada fila da importação; a leitura espera quando a fila enche. **/
+    public static int importQueueBatches() {
+        return Math.max(1, Integer.getInteger("biblioteca.import.queueBatches", 4));
+    }
+
+    /** Threads de parse e validação da importação (padrão: uma por processador). **/
+    public static int importParsers() {
+        return Math.max(1, Integer.getInteger("biblioteca.import.parsers", Runtime.getRuntime().availableProcessors()));
+    }
+
+    /** Buffer da exportação entre as linhas geradas e o canal do arquivo. **/
+    public static int exportBufferBytes() {
+        return Math.max(4, Integer.getInteger("biblioteca.export.bufferKB", 64)) * 1024;
+    }
+
+    /** Linhas por bloco no retrato colunar das reviews; cada bloco guarda o mínimo e o máximo das colunas. **/
+    public static int columnBlockRows() {
+        return Math.max(1, Integer.getInteger("biblioteca.columns.blockRows", 64 * 1024));
+    }
+
+    /** Tamanho dos segmentos com CRC32C das imagens do snapshot; um segmento corrompido custa só os registros dele. **/
+    public static int snapshotSegmentBytes() {
+        return Math.max(1, Integer.getInteger("biblioteca.snapshot.segmentKB", 64)) * 1024;
+    }
+
+    /** Quantos deltas acumular antes de consolidar numa base completa. **/
+    public static int snapshotConsolidateEvery() {
+        return Integer.getInteger("biblioteca.snapshot.consolidateEvery", 8);
+    }
+}
@@ -0,0 +1,198 @@
+package controller.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Persistência write-behind: as mutações só marcam o estado como sujo
+ * (entregando a entrada de journal já codificada) e uma thread própria grava
+ * em lote, depois de {@code delayMillis} ou quando o volume pendente passa de
+ * {@code maxPendingBytes}. Assim quem chama (a EDT do Swing, por exemplo) não
+ * espera pelo disco.
+ *
+ * Checkpoints (base ou delta do {@link LibraryStore}) descartam as entradas de
+ * journal que já cobrem; uma base pendente substitui também os checkpoints
+ * anteriores. Entradas posteriores são gravadas depois deles. Antes de truncar
+ * o journal roda {@code beforeReset}: o que o checkpoint não grava mas o journal
+ * cobre (ex.: o arquivo mapeado dos livros) precisa estar no disco até lá.
+ */
+public final class PersistenceService implements Closeable {
+
+    private final MutationJournal journal;
+    private final LibraryStore store;
+    private final Runnable beforeReset;
+    private final long delayMillis;
+    private final int maxPendingBytes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Condition written = lock.newCondition();
+
+    private List<byte[]> pendingEntries = new ArrayList<>();
+    private List<byte[]> coveredEntries = new ArrayList<>();
+    private int pendingBytes;
+    private List<Checkpoint> pendingCheckpoints = new ArrayList<>();
+    private long submittedSeq;
+    private long writtenSeq;
+    private boolean flushRequested;
+    private boolean closed;
+    private final Thread worker;
+
+    public PersistenceService(MutationJournal journal, LibraryStore store, Runnable beforeReset,
+                              long delayMillis, int maxPendingBytes) {
+        this.journal = journal;
+        this.store = store;
+        this.beforeReset = beforeReset;
+        this.delayMillis = delayMillis;
+        this.maxPendingBytes = maxPendingBytes;
+
+        this.worker = new Thread(this::run, "persistence-writer");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /** Marca o estado como sujo com uma entrada de journal já codificada. **/
+    public void submit(byte[] journalEntry) {
+        lock.lock();
+        try {
+            pendingEntries.add(journalEntry);
+            pendingBytes += journalEntry.length;
+            submittedSeq++;
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Agenda um checkpoint. A imagem é gerada sob o lock, então nenhuma mutação
+     * concorrente fica entre a captura e o descarte das entradas antigas.
+     */
+    public void submitCheckpoint(Supplier<Checkpoint> image) {
+        lock.lock();
+        try {
+            Checkpoint checkpoint = image.get();
+            if (checkpoint == null) return;
+
+            if (checkpoint.full()) pendingCheckpoints.clear();
+            pendingCheckpoints.add(checkpoint);
+            // só viram lixo se o checkpoint for gravado; senão ainda vão para o journal
+            coveredEntries.addAll(pendingEntries);
+            pendingEntries = new ArrayList<>();
+            pendingBytes += checkpoint.image().length;
+            submittedSeq++;
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Pede a gravação imediata do que estiver pendente, sem esperar. **/
+    public void flush() {
+        lock.lock();
+        try {
+            flushRequested = true;
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Bloqueia até que tudo o que foi submetido antes desta chamada esteja em disco. **/
+    public void awaitDurable() {
+        lock.lock();
+        try {
+            long target = submittedSeq;
+            flushRequested = true;
+            changed.signal();
+            while (writtenSeq < target && worker.isAlive()) {
+                written.await(100, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        awaitDurable();
+        lock.lock();
+        try {
+            closed = true;
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+        journal.close();
+    }
+
+    private void run() {
+        while (true) {
+            List<Checkpoint> checkpoints;
+            List<byte[]> covered;
+            List<byte[]> entries;
+            long batchSeq;
+
+            lock.lock();
+            try {
+                while (pendingCheckpoints.isEmpty() && pendingEntries.isEmpty()) {
+                    if (closed) return;
+                    changed.await();
+                }
+                // janela de coalescência: espera mais mudanças até o prazo ou o limite de volume
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+                long remaining;
+                while (!flushRequested && !closed && pendingBytes < maxPendingBytes
+                        && (remaining = deadline - System.nanoTime()) > 0) {
+                    changed.awaitNanos(remaining);
+                }
+
+                checkpoints = pendingCheckpoints;
+                covered = coveredEntries;
+                entries = pendingEntries;
+                batchSeq = submittedSeq;
+                pendingCheckpoints = new ArrayList<>();
+                coveredEntries = new ArrayList<>();
+                pendingEntries = new ArrayList<>();
+                pendingBytes = 0;
+                flushRequested = false;
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            write(checkpoints, covered, entries);
+
+            lock.lock();
+            try {
+                writtenSeq = batchSeq;
+                written.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void write(List<Checkpoint> checkpoints, List<byte[]> covered, List<byte[]> entries) {
+        if (!checkpoints.isEmpty()) {
+            try {
+                for (Checkpoint checkpoint : checkpoints) store.write(checkpoint);
+                beforeReset.run();
+                journal.reset();
+            } catch (IOException e) {
+                System.err.println("[ERRO] Falha ao salvar snapshot: " + e.getMessage());
+                if (!covered.isEmpty()) journal.writeEntries(covered);
+            }
+        }
+        if (!entries.isEmpty()) journal.writeEntries(entries);
+    }
+}
@@ -0,0 +1,147 @@
+package controller.persistence;
+
+import controller.persistence.EntityRecord.BookRecord;
+import controller.persistence.EntityRecord.CategoryRecord;
+import controller.persistence.EntityRecord.Deletion;
+import controller.persistence.EntityRecord.ReviewRecord;
+import controller.persistence.EntityRecord.ShelfRecord;
+import controller.persistence.EntityRecord.UserRecord;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Codificação binária dos {@link EntityRecord}: uma tag de tipo seguida de
+ * primitivos, strings UTF-8 prefixadas pelo tamanho e ids inteiros.
+ * Ids e tamanhos usam inteiros de tamanho variável (7 bits por byte), já que
+ * quase sempre são pequenos.
+ */
+public final class RecordCodec {
+    private static final int TAG_DELETION = 0x7F;
+
+    private RecordCodec() {}
+
+    public static void write(DataOutput out, EntityRecord record) throws IOException {
+        if (record instanceof Deletion d) {
+            out.writeByte(TAG_DELETION);
+            out.writeByte(d.target().getTag());
+            writeVarInt(out, d.id());
+            writeVarInt(out, d.ownerId());
+            return;
+        }
+
+        out.writeByte(record.type().getTag());
+        switch (record) {
+            case UserRecord u -> {
+                writeVarInt(out, u.id());
+                writeString(out, u.username());
+                writeString(out, u.password());
+                writeVarInt(out, u.shelves().size());
+                for (ShelfRecord s : u.shelves()) {
+                    writeVarInt(out, s.id());
+                    writeString(out, s.name());
+                    writeIds(out, s.bookIds());
+                }
+            }
+            case BookRecord b -> {
+                writeVarInt(out, b.id());
+                writeString(out, b.name());
+                out.writeDouble(b.price());
+                writeString(out, b.author());
+                writeString(out, b.publisher());
+                writeVarInt(out, b.pages());
+            }
+            case CategoryRecord c -> {
+                writeVarInt(out, c.id());
+                writeString(out, c.name());
+                writeIds(out, c.subCategoryIds());
+                writeIds(out, c.bookIds());
+            }
+            case ReviewRecord r -> {
+                writeVarInt(out, r.id());
+                writeVarInt(out, r.bookId());
+                writeVarInt(out, r.authorId());
+                writeString(out, r.comment());
+                out.writeDouble(r.score());
+            }
+            case Deletion d -> throw new IllegalStateException("inalcançável");
+        }
+    }
+
+    public static EntityRecord read(DataInput in) throws IOException {
+        int tag = in.readUnsignedByte();
+        if (tag == TAG_DELETION) {
+            EntityType target = EntityType.fromTag(in.readUnsignedByte());
+            return new Deletion(target, readVarInt(in), readVarInt(in));
+        }
+
+        return switch (EntityType.fromTag(tag)) {
+            case USER -> {
+                int id = readVarInt(in);
+                String username = readString(in);
+                String password = readString(in);
+                int count = checkedLength(readVarInt(in));
+                List<ShelfRecord> shelves = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    shelves.add(new ShelfRecord(readVarInt(in), readString(in), readIds(in)));
+                }
+                yield new UserRecord(id, username, password, shelves);
+            }
+            case BOOK -> new BookRecord(readVarInt(in), readString(in), in.readDouble(),
+                    readString(in), readString(in), readVarInt(in));
+            case CATEGORY -> new CategoryRecord(readVarInt(in), readString(in), readIds(in), readIds(in));
+            case REVIEW -> new ReviewRecord(readVarInt(in), readVarInt(in), readVarInt(in),
+                    readString(in), in.readDouble());
+        };
+    }
+
+    public static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[checkedLength(readVarInt(in))];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeIds(DataOutput out, int[] ids) throws IOException {
+        writeVarInt(out, ids.length);
+        for (int id : ids) writeVarInt(out, id);
+    }
+
+    private static int[] readIds(DataInput in) throws IOException {
+        int[] ids = new int[checkedLength(readVarInt(in))];
+        for (int i = 0; i < ids.length; i++) ids[i] = readVarInt(in);
+        return ids;
+    }
+
+    private static int checkedLength(int length) throws IOException {
+        if (length < 0) throw new IOException("Tamanho inválido no registro: " + length);
+        return length;
+    }
+
+    public static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    public static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Inteiro variável mal formado");
+    }
+}
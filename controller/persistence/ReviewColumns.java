@@ -0,0 +1,587 @@
+package controller.persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Retrato colunar das reviews para análise fora da aplicação: médias por livro,
+ * por autor e por categoria e distribuição das notas, sem desserializar o grafo
+ * de livros e reviews.
+ *
+ * Um diretório com duas tabelas. "reviews": bookId, authorId (int), score
+ * (double) e commentOffset (long, início do comentário em comments.dat, UTF-8);
+ * "bookCategories": pares categoryId, bookId. Cada coluna é um arquivo
+ * &lt;tabela&gt;.&lt;coluna&gt;.col só com os valores, em little-endian; o esquema
+ * fica em &lt;tabela&gt;.schema: magic, versão, linhas, linhas por bloco, nome e
+ * tipo das colunas, mínimo e máximo de cada coluna em cada bloco e o CRC32C
+ * do que veio antes.
+ *
+ * O {@link Reader} mapeia só as colunas que a consulta usa, na primeira vez em
+ * que ela as pede, e usa o mínimo e o máximo dos blocos para dimensionar os
+ * acumuladores e pular blocos que não podem conter o valor procurado.
+ */
+public final class ReviewColumns {
+
+    private static final int MAGIC = 0x42434f4c; // "BCOL"
+    private static final short VERSION = 1;
+
+    public static final String REVIEWS = "reviews";
+    public static final String BOOK_CATEGORIES = "bookCategories";
+    private static final String COMMENTS = "comments.dat";
+    /** Faixa das notas (Review.Builder): a distribuição divide [0, 5] em faixas iguais. **/
+    private static final double MAX_SCORE = 5d;
+    /** Acima de max(DENSE_MIN_SLOTS, linhas × DENSE_SLOTS_PER_ROW) ids na faixa, o agrupamento usa um mapa. **/
+    private static final long DENSE_MIN_SLOTS = 1 << 16;
+    private static final long DENSE_SLOTS_PER_ROW = 4;
+
+    public enum Type {
+        INT(Integer.BYTES), DOUBLE(Double.BYTES), LONG(Long.BYTES);
+
+        final int bytes;
+
+        Type(int bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    /** Coluna do esquema com o mínimo e o máximo de cada bloco. **/
+    public record Column(String name, Type type, double[] blockMin, double[] blockMax) {
+        public double min() {
+            double value = Double.POSITIVE_INFINITY;
+            for (double m : blockMin) value = Math.min(value, m);
+            return value;
+        }
+
+        public double max() {
+            double value = Double.NEGATIVE_INFINITY;
+            for (double m : blockMax) value = Math.max(value, m);
+            return value;
+        }
+    }
+
+    /** Esquema de uma tabela: linhas, tamanho dos blocos e colunas. **/
+    public record Schema(String table, long rows, int blockRows, List<Column> columns) {
+        public int blocks() {
+            return (int) ((rows + blockRows - 1) / blockRows);
+        }
+
+        public Column column(String name) {
+            for (Column column : columns) if (column.name().equals(name)) return column;
+            throw new IllegalArgumentException("coluna inexistente em " + table + ": " + name);
+        }
+    }
+
+    private ReviewColumns() {}
+
+    private static Path columnFile(Path dir, String table, String column) {
+        return dir.resolve(table + "." + column + ".col");
+    }
+
+    private static Path schemaFile(Path dir, String table) {
+        return dir.resolve(table + ".schema");
+    }
+
+    // --- gravação ---
+
+    /**
+     * Grava o retrato num diretório temporário ao lado do destino e o põe no
+     * lugar no {@link #close}: quem lê o diretório nunca vê tabelas de retratos
+     * diferentes misturadas. Cada coluna tem o seu buffer fixo; a memória não
+     * depende da quantidade de reviews.
+     */
+    public static final class Writer implements Closeable {
+        private final Path target;
+        private final Path dir;
+        private final TableOut reviews;
+        private final TableOut bookCategories;
+        private final FileChannel comments;
+        private final ByteBuffer commentBuffer;
+        private long commentBytes;
+
+        public Writer(Path target, int blockRows, int bufferBytes) throws IOException {
+            this.target = target;
+            this.dir = target.resolveSibling(target.getFileName() + ".tmp");
+            deleteTree(dir);
+            Files.createDirectories(dir);
+            int rowsPerBlock = Math.max(1, blockRows);
+            this.reviews = new TableOut(dir, REVIEWS, rowsPerBlock, bufferBytes,
+                    "bookId", Type.INT, "authorId", Type.INT, "score", Type.DOUBLE, "commentOffset", Type.LONG);
+            this.bookCategories = new TableOut(dir, BOOK_CATEGORIES, rowsPerBlock, bufferBytes,
+                    "categoryId", Type.INT, "bookId", Type.INT);
+            this.comments = open(dir.resolve(COMMENTS));
+            this.commentBuffer = ByteBuffer.allocateDirect(bufferBytes);
+        }
+
+        public void review(int bookId, int authorId, double score, String comment) throws IOException {
+            reviews.putInt(0, bookId);
+            reviews.putInt(1, authorId);
+            reviews.putDouble(2, score);
+            reviews.putLong(3, commentBytes);
+            reviews.endRow();
+
+            byte[] bytes = (comment == null ? "" : comment).getBytes(StandardCharsets.UTF_8);
+            for (int at = 0; at < bytes.length; ) {
+                if (!commentBuffer.hasRemaining()) drain(comments, commentBuffer);
+                int n = Math.min(commentBuffer.remaining(), bytes.length - at);
+                commentBuffer.put(bytes, at, n);
+                at += n;
+            }
+            commentBytes += bytes.length;
+        }
+
+        public void bookCategory(int categoryId, int bookId) throws IOException {
+            bookCategories.putInt(0, categoryId);
+            bookCategories.putInt(1, bookId);
+            bookCategories.endRow();
+        }
+
+        public long reviewCount() {
+            return reviews.rows;
+        }
+
+        /** Bytes escritos até aqui, em todas as colunas e nos comentários. **/
+        public long bytes() {
+            return reviews.bytes() + bookCategories.bytes() + commentBytes;
+        }
+
+        /** Fecha as colunas, grava os esquemas e troca o diretório de destino pelo novo. **/
+        @Override
+        public void close() throws IOException {
+            try (comments) {
+                reviews.finish();
+                bookCategories.finish();
+                drain(comments, commentBuffer);
+                comments.force(false);
+            }
+            Path old = target.resolveSibling(target.getFileName() + ".old");
+            deleteTree(old);
+            if (Files.exists(target)) Files.move(target, old, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(dir, target, StandardCopyOption.ATOMIC_MOVE);
+            deleteTree(old);
+        }
+
+        /** Descarta o que foi gravado (ex.: falha no meio da exportação); o destino fica como estava. **/
+        public void abort() {
+            try {
+                reviews.closeQuietly();
+                bookCategories.closeQuietly();
+                comments.close();
+                deleteTree(dir);
+            } catch (IOException e) {
+                System.err.println("[ERRO] Falha ao apagar " + dir + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /** Colunas de uma tabela em gravação, com as estatísticas do bloco corrente. **/
+    private static final class TableOut {
+        private final Path dir;
+        private final String table;
+        private final int blockRows;
+        private final String[] names;
+        private final Type[] types;
+        private final FileChannel[] channels;
+        private final ByteBuffer[] buffers;
+        private final long[] written;
+        private final double[] blockMin;
+        private final double[] blockMax;
+        private final List<double[]> mins = new ArrayList<>();
+        private final List<double[]> maxs = new ArrayList<>();
+        private long rows;
+
+        TableOut(Path dir, String table, int blockRows, int bufferBytes, Object... columns) throws IOException {
+            this.dir = dir;
+            this.table = table;
+            this.blockRows = blockRows;
+            int count = columns.length / 2;
+            this.names = new String[count];
+            this.types = new Type[count];
+            this.channels = new FileChannel[count];
+            this.buffers = new ByteBuffer[count];
+            this.written = new long[count];
+            this.blockMin = new double[count];
+            this.blockMax = new double[count];
+            for (int i = 0; i < count; i++) {
+                names[i] = (String) columns[2 * i];
+                types[i] = (Type) columns[2 * i + 1];
+                channels[i] = open(columnFile(dir, table, names[i]));
+                buffers[i] = ByteBuffer.allocateDirect(Math.max(Long.BYTES, bufferBytes / count))
+                        .order(ByteOrder.LITTLE_ENDIAN);
+            }
+            resetBlock();
+        }
+
+        void putInt(int column, int value) throws IOException {
+            room(column).putInt(value);
+            track(column, value);
+        }
+
+        void putDouble(int column, double value) throws IOException {
+            room(column).putDouble(value);
+            track(column, value);
+        }
+
+        void putLong(int column, long value) throws IOException {
+            room(column).putLong(value);
+            track(column, value);
+        }
+
+        void endRow() {
+            rows++;
+            if (rows % blockRows == 0) closeBlock();
+        }
+
+        long bytes() {
+            long total = 0;
+            for (int i = 0; i < names.length; i++) total += written[i] + buffers[i].position();
+            return total;
+        }
+
+        private ByteBuffer room(int column) throws IOException {
+            ByteBuffer buffer = buffers[column];
+            if (buffer.remaining() < Long.BYTES) written[column] += drain(channels[column], buffer);
+            return buffer;
+        }
+
+        private void track(int column, double value) {
+            blockMin[column] = Math.min(blockMin[column], value);
+            blockMax[column] = Math.max(blockMax[column], value);
+        }
+
+        private void closeBlock() {
+            mins.add(blockMin.clone());
+            maxs.add(blockMax.clone());
+            resetBlock();
+        }
+
+        private void resetBlock() {
+            Arrays.fill(blockMin, Double.POSITIVE_INFINITY);
+            Arrays.fill(blockMax, Double.NEGATIVE_INFINITY);
+        }
+
+        void finish() throws IOException {
+            if (rows % blockRows != 0) closeBlock();
+            for (int i = 0; i < names.length; i++) {
+                try (FileChannel channel = channels[i]) {
+                    written[i] += drain(channel, buffers[i]);
+                    channel.force(false);
+                }
+            }
+            writeSchema();
+        }
+
+        void closeQuietly() {
+            for (FileChannel channel : channels) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // o diretório temporário vai ser apagado
+                }
+            }
+        }
+
+        private void writeSchema() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+                out.writeUTF(table);
+                out.writeLong(rows);
+                out.writeInt(blockRows);
+                out.writeInt(names.length);
+                for (int i = 0; i < names.length; i++) {
+                    out.writeUTF(names[i]);
+                    out.writeByte(types[i].ordinal());
+                }
+                out.writeInt(mins.size());
+                for (int b = 0; b < mins.size(); b++) {
+                    for (int i = 0; i < names.length; i++) {
+                        out.writeDouble(mins.get(b)[i]);
+                        out.writeDouble(maxs.get(b)[i]);
+                    }
+                }
+            }
+            byte[] schema = bytes.toByteArray();
+            ByteBuffer out = ByteBuffer.allocate(schema.length + Integer.BYTES);
+            out.put(schema).putInt(crcOf(schema, schema.length)).flip();
+            try (FileChannel channel = open(schemaFile(dir, table))) {
+                while (out.hasRemaining()) channel.write(out);
+                channel.force(false);
+            }
+        }
+    }
+
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private static long drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        long written = 0;
+        while (buffer.hasRemaining()) written += channel.write(buffer);
+        buffer.clear();
+        return written;
+    }
+
+    private static void deleteTree(Path dir) throws IOException {
+        if (!Files.exists(dir)) return;
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) Files.delete(path);
+        }
+    }
+
+    private static int crcOf(byte[] bytes, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+
+    // --- leitura ---
+
+    /**
+     * Consultas sobre um retrato gravado. Os esquemas são lidos na abertura; cada
+     * coluna é mapeada só quando uma consulta precisa dela ({@link #mappedColumns}).
+     */
+    public static final class Reader implements Closeable {
+        private final Path dir;
+        private final Schema reviews;
+        private final Schema bookCategories;
+        private final Map<String, ByteBuffer> mapped = new LinkedHashMap<>();
+
+        private Reader(Path dir, Schema reviews, Schema bookCategories) {
+            this.dir = dir;
+            this.reviews = reviews;
+            this.bookCategories = bookCategories;
+        }
+
+        public static Reader open(Path dir) throws IOException {
+            return new Reader(dir, readSchema(schemaFile(dir, REVIEWS)), readSchema(schemaFile(dir, BOOK_CATEGORIES)));
+        }
+
+        public Schema reviews() {
+            return reviews;
+        }
+
+        public Schema bookCategories() {
+            return bookCategories;
+        }
+
+        /** Colunas mapeadas até aqui, como tabela.coluna. **/
+        public synchronized Set<String> mappedColumns() {
+            return new LinkedHashSet<>(mapped.keySet());
+        }
+
+        /** Média das notas por livro; lê bookId e score. **/
+        public Map<Integer, DerivedIndexes.Score> averageByBook() throws IOException {
+            return groupScores("bookId");
+        }
+
+        /** Média das notas por autor das reviews; lê authorId e score. **/
+        public Map<Integer, DerivedIndexes.Score> averageByAuthor() throws IOException {
+            return groupScores("authorId");
+        }
+
+        /**
+         * Média das notas por categoria, de todas as reviews dos livros dela (sem
+         * somar as subcategorias). Lê bookId e score e a tabela bookCategories.
+         */
+        public Map<Integer, DerivedIndexes.Score> averageByCategory() throws IOException {
+            Map<Integer, DerivedIndexes.Score> byBook = averageByBook();
+            ByteBuffer categories = column(bookCategories, "categoryId");
+            ByteBuffer books = column(bookCategories, "bookId");
+            Map<Integer, DerivedIndexes.Score> byCategory = new HashMap<>();
+            for (int row = 0; row < bookCategories.rows(); row++) {
+                DerivedIndexes.Score book = byBook.get(books.getInt(row * Integer.BYTES));
+                if (book == null) continue;
+                byCategory.merge(categories.getInt(row * Integer.BYTES), book,
+                        (a, b) -> new DerivedIndexes.Score(a.count() + b.count(), a.sum() + b.sum()));
+            }
+            return byCategory;
+        }
+
+        /** Quantidade de notas em cada uma de {@code bins} faixas iguais de [0, 5]; lê só score. **/
+        public long[] scoreDistribution(int bins) throws IOException {
+            long[] counts = new long[Math.max(1, bins)];
+            ByteBuffer scores = column(reviews, "score");
+            for (long row = 0; row < reviews.rows(); row++) {
+                counts[bin(scores.getDouble((int) (row * Double.BYTES)), counts.length)]++;
+            }
+            return counts;
+        }
+
+        /**
+         * Distribuição das notas de um livro. Os blocos cujo mínimo e máximo de
+         * bookId não incluem o livro são pulados sem ler as colunas.
+         */
+        public long[] scoreDistribution(int bookId, int bins) throws IOException {
+            long[] counts = new long[Math.max(1, bins)];
+            Column books = reviews.column("bookId");
+            ByteBuffer ids = null;
+            ByteBuffer scores = null;
+            for (int block = 0; block < reviews.blocks(); block++) {
+                if (bookId < books.blockMin()[block] || bookId > books.blockMax()[block]) continue;
+                if (ids == null) {
+                    ids = column(reviews, "bookId");
+                    scores = column(reviews, "score");
+                }
+                long end = Math.min(reviews.rows(), (long) (block + 1) * reviews.blockRows());
+                for (long row = (long) block * reviews.blockRows(); row < end; row++) {
+                    if (ids.getInt((int) (row * Integer.BYTES)) != bookId) continue;
+                    counts[bin(scores.getDouble((int) (row * Double.BYTES)), counts.length)]++;
+                }
+            }
+            return counts;
+        }
+
+        /** Comentário da review na linha {@code row}; lê commentOffset e o trecho de comments.dat. **/
+        public String comment(long row) throws IOException {
+            if (row < 0 || row >= reviews.rows()) throw new IndexOutOfBoundsException("linha " + row);
+            ByteBuffer offsets = column(reviews, "commentOffset");
+            ByteBuffer text = mapped(COMMENTS, dir.resolve(COMMENTS));
+            long start = offsets.getLong((int) (row * Long.BYTES));
+            long end = row + 1 < reviews.rows() ? offsets.getLong((int) ((row + 1) * Long.BYTES)) : text.limit();
+            byte[] bytes = new byte[(int) (end - start)];
+            text.get((int) start, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Agrupa as notas pela coluna inteira {@code key}. Os acumuladores são
+         * vetores indexados pelo valor, do tamanho do máximo que o esquema registra.
+         */
+        /**
+         * Soma as notas por chave. Com ids densos usa dois vetores indexados por
+         * id - mínimo; quando a faixa de ids é muito maior que o número de linhas
+         * (ids esparsos) os vetores seriam quase vazios, e a soma vai direto para
+         * um mapa.
+         */
+        private Map<Integer, DerivedIndexes.Score> groupScores(String key) throws IOException {
+            Map<Integer, DerivedIndexes.Score> result = new HashMap<>();
+            if (reviews.rows() == 0) return result;
+            Column column = reviews.column(key);
+            long min = (long) column.min();
+            long range = (long) column.max() - min + 1;
+            ByteBuffer keys = column(reviews, key);
+            ByteBuffer scores = column(reviews, "score");
+
+            if (range > Math.max(DENSE_MIN_SLOTS, reviews.rows() * DENSE_SLOTS_PER_ROW)) {
+                for (long row = 0; row < reviews.rows(); row++) {
+                    double score = scores.getDouble((int) (row * Double.BYTES));
+                    result.merge(keys.getInt((int) (row * Integer.BYTES)), new DerivedIndexes.Score(1, score),
+                            (a, b) -> new DerivedIndexes.Score(a.count() + b.count(), a.sum() + b.sum()));
+                }
+                return result;
+            }
+
+            int size = (int) range;
+            int[] counts = new int[size];
+            double[] sums = new double[size];
+            for (long row = 0; row < reviews.rows(); row++) {
+                int slot = (int) (keys.getInt((int) (row * Integer.BYTES)) - min);
+                counts[slot]++;
+                sums[slot] += scores.getDouble((int) (row * Double.BYTES));
+            }
+            for (int slot = 0; slot < size; slot++) {
+                if (counts[slot] > 0) result.put((int) (slot + min), new DerivedIndexes.Score(counts[slot], sums[slot]));
+            }
+            return result;
+        }
+
+        private static int bin(double score, int bins) {
+            return Math.max(0, Math.min(bins - 1, (int) (score / MAX_SCORE * bins)));
+        }
+
+        private ByteBuffer column(Schema schema, String name) throws IOException {
+            Column column = schema.column(name);
+            ByteBuffer buffer = mapped(schema.table() + "." + name, columnFile(dir, schema.table(), name));
+            if (buffer.limit() != schema.rows() * column.type().bytes) {
+                throw new IOException(schema.table() + "." + name + ": tamanho não confere com o esquema");
+            }
+            return buffer;
+        }
+
+        private synchronized ByteBuffer mapped(String key, Path file) throws IOException {
+            ByteBuffer buffer = mapped.get(key);
+            if (buffer != null) return buffer;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (channel.size() > Integer.MAX_VALUE) throw new IOException(file + " tem mais de 2 GB");
+                MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                buffer = map.order(ByteOrder.LITTLE_ENDIAN);
+            }
+            mapped.put(key, buffer);
+            return buffer;
+        }
+
+        /** Solta as referências aos mapeamentos; o sistema os desfaz quando o coletor passar. **/
+        @Override
+        public synchronized void close() {
+            mapped.clear();
+        }
+
+        private static Schema readSchema(Path file) throws IOException {
+            ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (in.limit() < 10 || in.getInt() != MAGIC || in.getShort() != VERSION) {
+                throw new IOException(file + ": formato não reconhecido");
+            }
+            if (in.getInt(in.limit() - Integer.BYTES) != crcOf(in.array(), in.limit() - Integer.BYTES)) {
+                throw new IOException(file + ": CRC32C não confere");
+            }
+            try {
+                String table = readUtf(in);
+                long rows = in.getLong();
+                int blockRows = in.getInt();
+                int count = in.getInt();
+                String[] names = new String[count];
+                Type[] types = new Type[count];
+                for (int i = 0; i < count; i++) {
+                    names[i] = readUtf(in);
+                    types[i] = Type.values()[in.get()];
+                }
+                int blocks = in.getInt();
+                double[][] min = new double[count][blocks];
+                double[][] max = new double[count][blocks];
+                for (int b = 0; b < blocks; b++) {
+                    for (int i = 0; i < count; i++) {
+                        min[i][b] = in.getDouble();
+                        max[i][b] = in.getDouble();
+                    }
+                }
+                List<Column> columns = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) columns.add(new Column(names[i], types[i], min[i], max[i]));
+                return new Schema(table, rows, blockRows, List.copyOf(columns));
+            } catch (RuntimeException e) {
+                throw new IOException(file + ": esquema inválido", e);
+            }
+        }
+
+        /** Lê uma string no formato de DataOutput.writeUTF (só ASCII nos nomes do esquema). **/
+        private static String readUtf(ByteBuffer in) {
+            byte[] bytes = new byte[in.getShort() & 0xffff];
+            in.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package controller.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/**
+ * Segmento imutável do {@link ReviewStore}: entradas ordenadas por chave
+ * (bookId, reviewId), com um índice esparso no fim do arquivo. Só o índice fica
+ * em memória; uma busca lê um único bloco de até {@link #INDEX_INTERVAL} entradas.
+ * Um {@link BloomFilter} das chaves, gravado ao lado ({@code seg-N.bloom}), evita
+ * até essa leitura quando a chave não está no segmento.
+ *
+ * Formato: cabeçalho (magic, versão, quantidade), entradas, índice
+ * [chave][offset] a cada INDEX_INTERVAL entradas e rodapé [offset do índice][tamanho do índice][magic].
+ */
+final class ReviewSegment implements Closeable {
+
+    private static final int MAGIC = 0x42535354; // "BSST"
+    private static final short VERSION = 1;
+    private static final int HEADER_BYTES = 10;
+    private static final int FOOTER_BYTES = 16;
+    static final int INDEX_INTERVAL = 16;
+    private static final int THROTTLE_CHUNK = 64 * 1024;
+
+    private final File file;
+    private final FileChannel channel;
+    private final int count;
+    private final long[] indexKeys;
+    private final long[] indexOffsets;
+    private final long dataEnd;
+    private BloomFilter keys;
+
+    private ReviewSegment(File file, FileChannel channel, int count, long[] indexKeys, long[] indexOffsets, long dataEnd) {
+        this.file = file;
+        this.channel = channel;
+        this.count = count;
+        this.indexKeys = indexKeys;
+        this.indexOffsets = indexOffsets;
+        this.dataEnd = dataEnd;
+    }
+
+    File file() {
+        return file;
+    }
+
+    int count() {
+        return count;
+    }
+
+    BloomFilter keyFilter() {
+        return keys;
+    }
+
+    static File filterFileOf(File segment) {
+        String name = segment.getName();
+        return new File(segment.getParentFile(), name.substring(0, name.lastIndexOf('.')) + ".bloom");
+    }
+
+    /** Grava as entradas (já em ordem de chave) num temporário e o renomeia para {@code file}. **/
+    static ReviewSegment write(File file, Iterator<ReviewStore.Entry> sorted, int expectedEntries) throws IOException {
+        return write(file, sorted, expectedEntries, IoThrottle.UNLIMITED);
+    }
+
+    /** Como {@link #write(File, Iterator, int)}, limitando a vazão de gravação (compactação em segundo plano). **/
+    static ReviewSegment write(File file, Iterator<ReviewStore.Entry> sorted, int expectedEntries,
+                               IoThrottle throttle) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        BloomFilter filter = BloomFilter.withCapacity(expectedEntries, PersistenceConfig.bloomFalsePositiveRate());
+        try (FileOutputStream fileOut = new FileOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeInt(0); // quantidade, preenchida abaixo
+
+            LongList keys = new LongList();
+            LongList offsets = new LongList();
+            int count = 0;
+            int throttled = out.size();
+            while (sorted.hasNext()) {
+                ReviewStore.Entry entry = sorted.next();
+                if (count % INDEX_INTERVAL == 0) {
+                    keys.add(entry.key());
+                    offsets.add(out.size());
+                }
+                writeEntry(out, entry);
+                filter.add(entry.key());
+                count++;
+                if (out.size() - throttled >= THROTTLE_CHUNK) {
+                    throttle.acquire(out.size() - throttled);
+                    throttled = out.size();
+                }
+            }
+
+            long indexOffset = out.size();
+            for (int i = 0; i < keys.size(); i++) {
+                out.writeLong(keys.get(i));
+                out.writeLong(offsets.get(i));
+            }
+            out.writeLong(indexOffset);
+            out.writeInt(keys.size());
+            out.writeInt(MAGIC);
+            out.flush();
+
+            try (FileChannel patch = FileChannel.open(tmp.toPath(), StandardOpenOption.WRITE)) {
+                patch.write(ByteBuffer.allocate(Integer.BYTES).putInt(count).flip(), 6);
+            }
+            fileOut.getFD().sync();
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        ReviewSegment segment = openWithoutFilter(file);
+        segment.keys = filter;
+        filter.save(filterFileOf(file), segment.filterStamp());
+        return segment;
+    }
+
+    /** Abre o segmento e o filtro ao lado dele (reconstruído se faltar ou não conferir). **/
+    static ReviewSegment open(File file) throws IOException {
+        ReviewSegment segment = openWithoutFilter(file);
+        segment.keys = BloomFilter.load(filterFileOf(file), segment.filterStamp());
+        if (segment.keys == null) {
+            BloomFilter filter = BloomFilter.withCapacity(segment.count, PersistenceConfig.bloomFalsePositiveRate());
+            for (Iterator<ReviewStore.Entry> it = segment.iterator(); it.hasNext(); ) filter.add(it.next().key());
+            segment.keys = filter;
+            filter.save(filterFileOf(file), segment.filterStamp());
+        }
+        return segment;
+    }
+
+    private long filterStamp() {
+        return BloomFilter.stampOf(new long[] { count, dataEnd, indexKeys.length == 0 ? 0 : indexKeys[0] });
+    }
+
+    private static ReviewSegment openWithoutFilter(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < HEADER_BYTES + FOOTER_BYTES) throw new IOException("Segmento truncado: " + file);
+
+            ByteBuffer header = read(channel, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC || header.getShort() != VERSION)
+                throw new IOException("Segmento não reconhecido: " + file);
+            int count = header.getInt();
+
+            ByteBuffer footer = read(channel, size - FOOTER_BYTES, FOOTER_BYTES);
+            long indexOffset = footer.getLong();
+            int indexSize = footer.getInt();
+            if (footer.getInt() != MAGIC || indexOffset < HEADER_BYTES || indexSize < 0
+                    || indexOffset + (long) indexSize * 16 != size - FOOTER_BYTES)
+                throw new IOException("Rodapé do segmento inválido: " + file);
+
+            ByteBuffer index = read(channel, indexOffset, indexSize * 16);
+            long[] keys = new long[indexSize];
+            long[] offsets = new long[indexSize];
+            for (int i = 0; i < indexSize; i++) {
+                keys[i] = index.getLong();
+                offsets[i] = index.getLong();
+            }
+            return new ReviewSegment(file, channel, count, keys, offsets, indexOffset);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /** Entrada com a chave, inclusive tombstones; null se a chave não está no segmento. **/
+    ReviewStore.Entry get(long key) throws IOException {
+        if (!keys.mightContain(key)) return null;
+        int block = blockFor(key);
+        if (block >= 0) {
+            DataInputStream in = readBlock(block);
+            for (int i = 0; i < INDEX_INTERVAL; i++) {
+                ReviewStore.Entry entry = readEntryOrNull(in);
+                if (entry == null || entry.key() > key) break;
+                if (entry.key() == key) return entry;
+            }
+        }
+        keys.reportFalsePositive();
+        return null;
+    }
+
+    /** Entradas com chave em [from, to), em ordem. **/
+    void scan(long from, long to, Consumer<ReviewStore.Entry> sink) throws IOException {
+        for (int block = Math.max(0, blockFor(from)); block < indexKeys.length; block++) {
+            if (indexKeys[block] >= to) return;
+            DataInputStream in = readBlock(block);
+            ReviewStore.Entry entry;
+            while ((entry = readEntryOrNull(in)) != null) {
+                if (entry.key() >= to) return;
+                if (entry.key() >= from) sink.accept(entry);
+            }
+        }
+    }
+
+    /** Leitura sequencial de todas as entradas, para a compactação. **/
+    Iterator<ReviewStore.Entry> iterator() throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+        in.skipNBytes(HEADER_BYTES);
+        return new Iterator<>() {
+            private int remaining = count;
+
+            @Override
+            public boolean hasNext() {
+                if (remaining > 0) return true;
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                }
+                return false;
+            }
+
+            @Override
+            public ReviewStore.Entry next() {
+                try {
+                    remaining--;
+                    return readEntry(in);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /** Último bloco cuja primeira chave é <= key; -1 se key vem antes de tudo. **/
+    private int blockFor(long key) {
+        int low = 0, high = indexKeys.length - 1, found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (indexKeys[mid] <= key) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private DataInputStream readBlock(int block) throws IOException {
+        long start = indexOffsets[block];
+        long end = block + 1 < indexOffsets.length ? indexOffsets[block + 1] : dataEnd;
+        ByteBuffer bytes = read(channel, start, (int) (end - start));
+        return new DataInputStream(new ByteArrayInputStream(bytes.array()));
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new EOFException("Segmento truncado");
+        }
+        return buffer.flip();
+    }
+
+    static void writeEntry(DataOutput out, ReviewStore.Entry entry) throws IOException {
+        out.writeLong(entry.key());
+        out.writeBoolean(entry.deleted());
+        if (entry.deleted()) return;
+        RecordCodec.writeVarInt(out, entry.authorId());
+        out.writeDouble(entry.score());
+        RecordCodec.writeString(out, entry.comment());
+    }
+
+    static ReviewStore.Entry readEntry(DataInput in) throws IOException {
+        long key = in.readLong();
+        if (in.readBoolean()) return ReviewStore.Entry.tombstone(key);
+        int authorId = RecordCodec.readVarInt(in);
+        double score = in.readDouble();
+        return ReviewStore.Entry.of(key, authorId, RecordCodec.readString(in), score);
+    }
+
+    private static ReviewStore.Entry readEntryOrNull(DataInputStream in) throws IOException {
+        return in.available() > 0 ? readEntry(in) : null;
+    }
+
+    /** Lista de longs sem boxing, para montar o índice. **/
+    private static final class LongList {
+        private long[] values = new long[64];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        long get(int i) {
+            return values[i];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,522 @@
+package controller.persistence;
+
+import model.Book;
+import model.Review;
+import model.User;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+
+/**
+ * Armazenamento log-structured (LSM) das reviews, com chave (bookId, reviewId):
+ * <ul>
+ *   <li>cada escrita vai para o memtable (ordenado, em memória) e é anexada ao
+ *       {@code wal.log}, de modo que gravar uma review é uma escrita sequencial;</li>
+ *   <li>quando o memtable passa do limite, vira um {@link ReviewSegment} imutável
+ *       e o WAL é truncado;</li>
+ *   <li>leituras consultam o memtable e depois os segmentos, do mais novo ao mais
+ *       antigo; remoções são tombstones;</li>
+ *   <li>acumulados {@code compactAfter} segmentos, uma thread de fundo os funde
+ *       num só, descartando versões antigas e tombstones.</li>
+ * </ul>
+ * O {@code MANIFEST} lista os segmentos vivos e é gravado por último (arquivo
+ * temporário + rename); segmentos fora dele são restos de uma gravação interrompida.
+ */
+public final class ReviewStore implements Closeable {
+
+    private static final int MANIFEST_MAGIC = 0x4252564D; // "BRVM"
+    private static final int WAL_MAGIC = 0x4252574C;      // "BRWL"
+    private static final short VERSION = 1;
+    private static final short MANIFEST_VERSION = 2;
+    private static final int WAL_HEADER_BYTES = 6;
+
+    /** Uma versão de review; {@code deleted} marca um tombstone. **/
+    public record Entry(long key, int authorId, String comment, double score, boolean deleted) {
+        public static Entry of(long key, int authorId, String comment, double score) {
+            return new Entry(key, authorId, comment, score, false);
+        }
+
+        public static Entry tombstone(long key) {
+            return new Entry(key, 0, "", 0d, true);
+        }
+
+        public int bookId() {
+            return (int) (key >>> 32);
+        }
+
+        public int reviewId() {
+            return (int) key;
+        }
+    }
+
+    private final File dir;
+    private final File manifestFile;
+    private final File walFile;
+    private final int memtableLimitBytes;
+    private final int compactAfter;
+
+    private TreeMap<Long, Entry> memtable = new TreeMap<>();
+    private int memtableBytes;
+    // do mais antigo ao mais novo
+    private final List<ReviewSegment> segments = new ArrayList<>();
+    private FileChannel wal;
+    private final GroupCommit.Syncable walTarget = this::forceWal;
+    private int nextGeneration = 1;
+    private int maxReviewId;
+    // escritas já feitas (inclusive as do WAL): muda a cada put/delete, não com flush ou compactação
+    private long writes;
+    private int walEntries;
+    private boolean fresh;
+    private boolean compacting;
+    private IoThrottle compactionThrottle = IoThrottle.UNLIMITED;
+
+    public ReviewStore(String dir, int memtableLimitBytes, int compactAfter) {
+        this.dir = new File(dir);
+        this.manifestFile = new File(this.dir, "MANIFEST");
+        this.walFile = new File(this.dir, "wal.log");
+        this.memtableLimitBytes = memtableLimitBytes;
+        this.compactAfter = Math.max(2, compactAfter);
+    }
+
+    public static long keyOf(int bookId, int reviewId) {
+        return ((long) bookId << 32) | (reviewId & 0xFFFFFFFFL);
+    }
+
+    /** Lê o manifesto, abre os segmentos e reaplica o WAL ao memtable. **/
+    public synchronized void open() throws IOException {
+        dir.mkdirs();
+        fresh = !manifestFile.exists();
+        if (!fresh) readManifest();
+        deleteOrphans();
+        replayWal();
+        wal = FileChannel.open(walFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        if (wal.size() == 0) wal.write(ByteBuffer.allocate(WAL_HEADER_BYTES).putInt(WAL_MAGIC).putShort(VERSION).flip());
+    }
+
+    /** O store acabou de ser criado (não havia manifesto ao abrir)? **/
+    public synchronized boolean isFresh() {
+        return fresh;
+    }
+
+    public synchronized int maxReviewId() {
+        return maxReviewId;
+    }
+
+    /** Versão lógica do conteúdo: o número de escritas feitas desde a criação do store. **/
+    public synchronized long version() {
+        return writes;
+    }
+
+    public void put(int bookId, Review review) {
+        if (write(Entry.of(keyOf(bookId, review.getId()), review.getAuthorId(),
+                review.getComment(), review.getScore()))) commit();
+    }
+
+    /** Grava as reviews de vários livros (ex.: importação em lote) com um único fsync do WAL. **/
+    public void putAll(Map<Integer, ? extends Collection<Review>> reviewsByBook) {
+        boolean written = false;
+        for (Map.Entry<Integer, ? extends Collection<Review>> book : reviewsByBook.entrySet()) {
+            for (Review review : book.getValue()) {
+                written |= write(Entry.of(keyOf(book.getKey(), review.getId()), review.getAuthorId(),
+                        review.getComment(), review.getScore()));
+            }
+        }
+        if (written) commit();
+    }
+
+    public void delete(int bookId, int reviewId) {
+        if (write(Entry.tombstone(keyOf(bookId, reviewId)))) commit();
+    }
+
+    /**
+     * Carga inicial: grava as reviews dos livros e já as transforma em segmento,
+     * que é sincronizado ao ser gravado, sem esperar um fsync do WAL por review.
+     */
+    public synchronized void importAll(List<Book> books) {
+        for (Book book : books) {
+            for (Review review : book.getReviews()) {
+                write(Entry.of(keyOf(book.getId(), review.getId()), review.getAuthorId(),
+                        review.getComment(), review.getScore()));
+            }
+        }
+        flush();
+    }
+
+    /** Remove todas as reviews de um livro. **/
+    public void deleteBook(int bookId) {
+        synchronized (this) {
+            for (Entry entry : scan(bookId)) write(Entry.tombstone(entry.key()));
+        }
+        commit();
+    }
+
+    /** fsync do WAL conforme o {@link GroupCommit}; chamado fora do monitor. **/
+    private void commit() {
+        GroupCommit.shared().commitOrReport(walTarget, walFile.toString());
+    }
+
+    private synchronized void forceWal() throws IOException {
+        if (wal != null) wal.force(false);
+    }
+
+    public synchronized Entry get(int bookId, int reviewId) {
+        long key = keyOf(bookId, reviewId);
+        Entry entry = memtable.get(key);
+        try {
+            for (int i = segments.size() - 1; entry == null && i >= 0; i--) entry = segments.get(i).get(key);
+        } catch (IOException e) {
+            System.err.println("[ERRO] Falha ao ler segmento de reviews: " + e.getMessage());
+        }
+        return entry == null || entry.deleted() ? null : entry;
+    }
+
+    /** Reviews vivas de um livro, em ordem de id, já mescladas entre segmentos e memtable. **/
+    public synchronized List<Entry> scan(int bookId) {
+        return scanRange(keyOf(bookId, 0), keyOf(bookId + 1, 0));
+    }
+
+    /** Todas as reviews vivas, em ordem de chave (reconstrução de índices derivados). **/
+    public synchronized List<Entry> scanAll() {
+        return scanRange(0, Long.MAX_VALUE);
+    }
+
+    private List<Entry> scanRange(long from, long to) {
+        TreeMap<Long, Entry> merged = new TreeMap<>();
+        try {
+            for (ReviewSegment segment : segments) segment.scan(from, to, e -> merged.put(e.key(), e));
+        } catch (IOException e) {
+            System.err.println("[ERRO] Falha ao ler segmento de reviews: " + e.getMessage());
+        }
+        merged.putAll(memtable.subMap(from, to));
+
+        List<Entry> live = new ArrayList<>();
+        for (Entry entry : merged.values()) if (!entry.deleted()) live.add(entry);
+        return live;
+    }
+
+    /** Força o WAL para o disco. **/
+    public synchronized void sync() {
+        try {
+            if (wal != null) wal.force(false);
+        } catch (IOException e) {
+            System.err.println("[ERRO] Falha ao sincronizar " + walFile + ": " + e.getMessage());
+        }
+    }
+
+    /** Grava o memtable como segmento e trunca o WAL. **/
+    public synchronized void flush() {
+        if (memtable.isEmpty()) {
+            if (fresh) writeManifestOrReport(); // registra que o store já foi inicializado
+            return;
+        }
+        File file = segmentFile(nextGeneration++);
+        int pending = walEntries;
+        try {
+            segments.add(ReviewSegment.write(file, memtable.values().iterator(), memtable.size()));
+            walEntries = 0; // passam a contar no manifesto
+            writeManifest();
+            memtable = new TreeMap<>();
+            memtableBytes = 0;
+            wal.truncate(WAL_HEADER_BYTES);
+        } catch (IOException e) {
+            walEntries = pending;
+            file.delete();
+            ReviewSegment.filterFileOf(file).delete();
+            System.err.println("[ERRO] Falha ao gravar segmento de reviews " + file + ": " + e.getMessage());
+            return;
+        }
+        if (segments.size() >= compactAfter && !compacting) {
+            compacting = true;
+            Workers.pool().submit(this::compact);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        sync();
+        if (wal != null) wal.close();
+        wal = null;
+        for (ReviewSegment segment : segments) segment.close();
+    }
+
+    /** Segmentos, memtable e filtros de Bloom dos segmentos (diagnóstico). **/
+    public synchronized String stats() {
+        int entries = 0;
+        long filterBytes = 0;
+        double expectedFp = 0;
+        for (ReviewSegment segment : segments) {
+            entries += segment.count();
+            filterBytes += segment.keyFilter().memoryBytes();
+            expectedFp = Math.max(expectedFp, segment.keyFilter().expectedFalsePositiveRate());
+        }
+        StringBuilder stats = new StringBuilder()
+                .append(segments.size()).append(" segmentos (").append(entries).append(" entradas), memtable com ")
+                .append(memtable.size())
+                .append(String.format("%nfiltros: %.1f KB, FP estimada até %.3f%%", filterBytes / 1024.0, expectedFp * 100));
+        for (ReviewSegment segment : segments) {
+            stats.append(String.format("%n  %s: %s", segment.file().getName(), segment.keyFilter().stats()));
+        }
+        return stats.toString();
+    }
+
+    /** Converte uma entrada em Review; o autor é buscado pelo id. **/
+    public static Review toReview(Entry entry, IntFunction<User> authors) {
+        User author = authors.apply(entry.authorId());
+        if (author == null) return null;
+        return new Review.Builder()
+                .setId(entry.reviewId())
+                .setAuthor(author)
+                .setComment(entry.comment())
+                .setScore(entry.score())
+                .build();
+    }
+
+    private synchronized boolean write(Entry entry) {
+        try {
+            byte[] bytes = encode(entry);
+            wal.write(ByteBuffer.allocate(Integer.BYTES + bytes.length).putInt(bytes.length).put(bytes).flip());
+            memtable.put(entry.key(), entry);
+            memtableBytes += bytes.length;
+            maxReviewId = Math.max(maxReviewId, entry.reviewId());
+            writes++;
+            walEntries++;
+        } catch (IOException e) {
+            System.err.println("[ERRO] Falha ao gravar review em " + walFile + ": " + e.getMessage());
+            return false;
+        }
+        if (memtableBytes >= memtableLimitBytes) flush();
+        return true;
+    }
+
+    /** Limita a vazão de gravação das compactações, que rodam em segundo plano. **/
+    public synchronized void setCompactionThrottle(IoThrottle throttle) {
+        this.compactionThrottle = throttle;
+    }
+
+    /** Compacta agora, na thread de quem chama, se houver mais de um segmento e nenhuma compactação em curso. **/
+    public void compactNow() {
+        synchronized (this) {
+            if (segments.size() < 2 || compacting) return;
+            compacting = true;
+        }
+        compact();
+    }
+
+    /**
+     * Funde todos os segmentos existentes num só. Roda fora do lock: segmentos
+     * são imutáveis, e os gravados nesse meio-tempo entram depois do resultado.
+     */
+    private void compact() {
+        List<ReviewSegment> inputs;
+        File output;
+        IoThrottle throttle;
+        synchronized (this) {
+            inputs = new ArrayList<>(segments);
+            output = segmentFile(nextGeneration++);
+            throttle = compactionThrottle;
+        }
+        int expected = 0;
+        for (ReviewSegment segment : inputs) expected += segment.count();
+        try {
+            // o resultado substitui os segmentos mais antigos: tombstones podem ser descartados
+            ReviewSegment merged = ReviewSegment.write(output, new MergingIterator(inputs), expected, throttle);
+            synchronized (this) {
+                segments.subList(0, inputs.size()).clear();
+                segments.addFirst(merged);
+                writeManifest();
+            }
+            for (ReviewSegment old : inputs) {
+                old.close();
+                old.file().delete();
+                ReviewSegment.filterFileOf(old.file()).delete();
+            }
+        } catch (IOException | UncheckedIOException e) {
+            output.delete();
+            ReviewSegment.filterFileOf(output).delete();
+            System.err.println("[ERRO] Falha ao compactar segmentos de reviews: " + e.getMessage());
+        } finally {
+            synchronized (this) {
+                compacting = false;
+            }
+        }
+    }
+
+    private File segmentFile(int generation) {
+        return new File(dir, String.format("seg-%06d.sst", generation));
+    }
+
+    private void writeManifestOrReport() {
+        try {
+            writeManifest();
+        } catch (IOException e) {
+            System.err.println("[ERRO] Falha ao gravar " + manifestFile + ": " + e.getMessage());
+        }
+    }
+
+    private void writeManifest() throws IOException {
+        File tmp = new File(manifestFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tmp.toPath()))) {
+            out.writeInt(MANIFEST_MAGIC);
+            out.writeShort(MANIFEST_VERSION);
+            out.writeInt(nextGeneration);
+            out.writeInt(maxReviewId);
+            out.writeLong(writes - walEntries); // as do WAL são recontadas ao reaplicá-lo
+            out.writeInt(segments.size());
+            for (ReviewSegment segment : segments) out.writeUTF(segment.file().getName());
+        }
+        Files.move(tmp.toPath(), manifestFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        fresh = false;
+    }
+
+    private void readManifest() throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(manifestFile))) {
+            short version = in.readInt() == MANIFEST_MAGIC ? in.readShort() : -1;
+            if (version != 1 && version != MANIFEST_VERSION)
+                throw new IOException("Manifesto de reviews não reconhecido: " + manifestFile);
+            nextGeneration = in.readInt();
+            maxReviewId = in.readInt();
+            writes = version == 1 ? 0 : in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) segments.add(ReviewSegment.open(new File(dir, in.readUTF())));
+        }
+    }
+
+    /** Segmentos que não entraram no manifesto (gravação ou compactação interrompida). **/
+    private void deleteOrphans() {
+        File[] files = dir.listFiles((d, name) -> name.startsWith("seg-"));
+        if (files == null) return;
+        for (File f : files) {
+            boolean live = segments.stream().anyMatch(s -> s.file().getName().equals(f.getName())
+                    || ReviewSegment.filterFileOf(s.file()).getName().equals(f.getName()));
+            if (!live) f.delete();
+        }
+    }
+
+    /**
+     * Reaplica o WAL na memtable. A primeira entrada que não se sustenta (queda
+     * no meio da escrita, cauda zerada ou lixo: tamanho fora do que resta do
+     * arquivo ou bytes que não decodificam) encerra a leitura, e o arquivo é
+     * truncado no fim da última entrada válida para as próximas não ficarem
+     * atrás dela.
+     */
+    private void replayWal() throws IOException {
+        if (!walFile.exists()) return;
+        long valid = WAL_HEADER_BYTES;
+        long size = walFile.length();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(walFile)))) {
+            if (size < WAL_HEADER_BYTES || in.readInt() != WAL_MAGIC || in.readShort() != VERSION) {
+                System.err.println("[ERRO] WAL de reviews não reconhecido; ignorado: " + walFile);
+                valid = 0;
+            } else {
+                while (valid + Integer.BYTES <= size) {
+                    int length = in.readInt();
+                    if (length <= 0 || length > size - valid - Integer.BYTES) break;
+                    byte[] bytes = new byte[length];
+                    in.readFully(bytes);
+                    Entry entry;
+                    try {
+                        DataInputStream entryIn = new DataInputStream(new ByteArrayInputStream(bytes));
+                        entry = ReviewSegment.readEntry(entryIn);
+                        if (entryIn.available() != 0) break;
+                    } catch (IOException | RuntimeException e) {
+                        break;
+                    }
+                    memtable.put(entry.key(), entry);
+                    memtableBytes += bytes.length;
+                    maxReviewId = Math.max(maxReviewId, entry.reviewId());
+                    writes++;
+                    walEntries++;
+                    valid += Integer.BYTES + bytes.length;
+                }
+            }
+        }
+        if (size > valid) {
+            if (valid > 0) System.err.println("[ERRO] WAL de reviews " + walFile + " termina com entrada inválida; "
+                    + walEntries + " entradas reaplicadas, " + (size - valid) + " bytes descartados.");
+            try (FileChannel channel = FileChannel.open(walFile.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+            }
+        }
+    }
+
+    private static byte[] encode(Entry entry) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            ReviewSegment.writeEntry(out, entry);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // ByteArrayOutputStream não falha
+        }
+        return buffer.toByteArray();
+    }
+
+    /** Intercala segmentos ordenados; na mesma chave vence o mais novo. Omite tombstones. **/
+    private static final class MergingIterator implements Iterator<Entry> {
+        private record Head(Entry entry, int age, Iterator<Entry> rest) {}
+
+        private final PriorityQueue<Head> heads = new PriorityQueue<>((a, b) -> {
+            int byKey = Long.compare(a.entry().key(), b.entry().key());
+            return byKey != 0 ? byKey : Integer.compare(b.age(), a.age()); // mais novo primeiro
+        });
+        private Entry next;
+
+        MergingIterator(List<ReviewSegment> oldestFirst) throws IOException {
+            for (int age = 0; age < oldestFirst.size(); age++) {
+                Iterator<Entry> it = oldestFirst.get(age).iterator();
+                if (it.hasNext()) heads.add(new Head(it.next(), age, it));
+            }
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry next() {
+            if (next == null) throw new NoSuchElementException();
+            Entry current = next;
+            advance();
+            return current;
+        }
+
+        private void advance() {
+            next = null;
+            while (next == null && !heads.isEmpty()) {
+                Head newest = pop();
+                while (!heads.isEmpty() && heads.peek().entry().key() == newest.entry().key()) pop();
+                if (!newest.entry().deleted()) next = newest.entry();
+            }
+        }
+
+        private Head pop() {
+            Head head = heads.poll();
+            if (head.rest().hasNext()) heads.add(new Head(head.rest().next(), head.age(), head.rest()));
+            return head;
+        }
+    }
+}
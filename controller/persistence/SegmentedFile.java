@@ -0,0 +1,221 @@
+package controller.persistence;
+
+import model.CrudObjectInterface;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32C;
+
+/**
+ * Lista de entidades gravada em segmentos independentes, cada um com CRC32C,
+ * para que um trecho corrompido custe só os objetos dele e não o arquivo todo.
+ * Os objetos vão ordenados por id, então cada segmento cobre uma faixa de ids.
+ *
+ * Formato: cabeçalho [magic][versão][quantidade de segmentos]; cada segmento
+ * [magic do segmento][número][primeiro id][último id][objetos][tamanho]
+ * [CRC dos bytes][CRC do cabeçalho] e os bytes: a sublista com serialização
+ * Java, passando pela {@link BlockCompression} configurada. O magic e o CRC do
+ * cabeçalho permitem reencontrar o próximo segmento depois de bytes estragados.
+ *
+ * Na leitura, os segmentos são conferidos e desserializados em paralelo no
+ * {@link Workers}; os que não conferem são pulados e entram no relatório com a
+ * faixa de ids perdida. Cada segmento é serializado à parte; como as
+ * entidades gravam as referências a outras entidades só pelos ids (ligados na
+ * carga, {@link LibraryGraph#finish}), nenhum objeto volta duplicado.
+ */
+public final class SegmentedFile {
+
+    public static final int MAGIC = 0x42534547; // "BSEG"
+    private static final short VERSION = 1;
+    private static final int FILE_HEADER = 10;
+    private static final int SEGMENT_MAGIC = 0x42534731; // "BSG1"
+    private static final int SEGMENT_HEADER = 32;
+
+    private SegmentedFile() {}
+
+    /**
+     * Faixa de ids que não pôde ser lida. Sem o cabeçalho do segmento, a faixa é
+     * deduzida dos vizinhos ({@code lastId == Integer.MAX_VALUE}: até o fim) e a
+     * quantidade de objetos fica desconhecida (-1).
+     */
+    public record LostRange(int segment, int firstId, int lastId, int objects, String reason) {
+        @Override
+        public String toString() {
+            return String.format("segmento %d (%s): ids %d a %s, %s", segment, reason, firstId,
+                    lastId == Integer.MAX_VALUE ? "o fim" : String.valueOf(lastId),
+                    objects < 0 ? "quantidade desconhecida" : objects + " objetos");
+        }
+    }
+
+    /** Objetos recuperados e o que se perdeu; {@code lost} vazio quando o arquivo está íntegro. **/
+    public record Result<T>(List<T> objects, int segments, List<LostRange> lost) {}
+
+    private record Segment(int number, int firstId, int lastId, int objects, int payloadAt, int length, int crc,
+                           boolean truncated) {}
+
+    /** O arquivo começa com o magic deste formato (e não é, por exemplo, serialização Java pura). **/
+    public static boolean isSegmented(byte[] bytes) {
+        return bytes.length >= FILE_HEADER && ByteBuffer.wrap(bytes).getInt(0) == MAGIC;
+    }
+
+    // --- gravação ---
+
+    /** Grava os objetos, ordenados por id, em segmentos de até {@code objectsPerSegment} codificados em paralelo. **/
+    public static <T extends CrudObjectInterface> void write(OutputStream out, List<T> objects, int objectsPerSegment,
+                                                             BlockCompression.Settings settings) throws IOException {
+        List<T> sorted = new ArrayList<>(objects);
+        sorted.sort(Comparator.comparingInt(CrudObjectInterface::getId));
+        int perSegment = Math.max(1, objectsPerSegment);
+        int segmentCount = (sorted.size() + perSegment - 1) / perSegment;
+
+        List<Callable<byte[]>> tasks = new ArrayList<>(segmentCount);
+        for (int s = 0; s < segmentCount; s++) {
+            List<T> slice = new ArrayList<>(sorted.subList(s * perSegment, Math.min(sorted.size(), (s + 1) * perSegment)));
+            int number = s;
+            tasks.add(() -> encodeSegment(number, slice, settings));
+        }
+        List<Future<byte[]>> encoded = Workers.submitAll(tasks);
+
+        out.write(ByteBuffer.allocate(FILE_HEADER).putInt(MAGIC).putShort(VERSION).putInt(segmentCount).array());
+        for (Future<byte[]> segment : encoded) {
+            try {
+                out.write(Workers.await(segment));
+            } catch (IOException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    private static <T extends CrudObjectInterface> byte[] encodeSegment(int number, List<T> slice,
+                                                                        BlockCompression.Settings settings) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(BlockCompression.output(payload, settings))) {
+            out.writeObject(slice);
+        }
+        byte[] bytes = payload.toByteArray();
+
+        ByteBuffer segment = ByteBuffer.allocate(SEGMENT_HEADER + bytes.length);
+        segment.putInt(SEGMENT_MAGIC)
+                .putInt(number)
+                .putInt(slice.get(0).getId())
+                .putInt(slice.get(slice.size() - 1).getId())
+                .putInt(slice.size())
+                .putInt(bytes.length)
+                .putInt(crcOf(bytes, 0, bytes.length));
+        segment.putInt(crcOf(segment.array(), 0, SEGMENT_HEADER - Integer.BYTES));
+        segment.put(bytes);
+        return segment.array();
+    }
+
+    // --- leitura ---
+
+    /** Lê todos os segmentos que conferem; os demais vão para {@link Result#lost}. **/
+    @SuppressWarnings("unchecked")
+    public static <T> Result<T> read(byte[] bytes) {
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        if (!isSegmented(bytes)) throw new IllegalArgumentException("não é um arquivo segmentado");
+        short version = in.getShort(4);
+        if (version != VERSION) throw new IllegalArgumentException("versão não suportada: " + version);
+        int declared = in.getInt(6);
+
+        List<Segment> segments = scan(in);
+        List<LostRange> lost = new ArrayList<>(missing(segments, declared));
+
+        List<Callable<List<T>>> tasks = new ArrayList<>(segments.size());
+        for (Segment segment : segments) tasks.add(() -> (List<T>) decodeSegment(bytes, segment));
+        List<Future<List<T>>> decoded = Workers.submitAll(tasks);
+
+        List<T> objects = new ArrayList<>();
+        for (int i = 0; i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            try {
+                objects.addAll(Workers.await(decoded.get(i)));
+            } catch (Exception e) {
+                String reason = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+                lost.add(new LostRange(segment.number(), segment.firstId(), segment.lastId(), segment.objects(), reason));
+            }
+        }
+        lost.sort(Comparator.comparingInt(LostRange::segment));
+        return new Result<>(objects, declared, lost);
+    }
+
+    /** Percorre os cabeçalhos; depois de bytes que não formam um cabeçalho válido, procura o próximo magic. **/
+    private static List<Segment> scan(ByteBuffer in) {
+        List<Segment> segments = new ArrayList<>();
+        int pos = FILE_HEADER;
+        while (pos + SEGMENT_HEADER <= in.limit()) {
+            Segment segment = headerAt(in, pos);
+            if (segment == null) {
+                pos++;
+                continue;
+            }
+            segments.add(segment);
+            pos = segment.payloadAt() + segment.length();
+        }
+        return segments;
+    }
+
+    private static Segment headerAt(ByteBuffer in, int pos) {
+        if (in.getInt(pos) != SEGMENT_MAGIC) return null;
+        if (in.getInt(pos + SEGMENT_HEADER - Integer.BYTES) != crcOf(in.array(), pos, SEGMENT_HEADER - Integer.BYTES)) {
+            return null;
+        }
+        int length = in.getInt(pos + 20);
+        int payloadAt = pos + SEGMENT_HEADER;
+        // cabeçalho íntegro, mas o arquivo acaba antes dos bytes: o segmento entra no relatório
+        boolean truncated = length < 0 || length > in.limit() - payloadAt;
+        return new Segment(in.getInt(pos + 4), in.getInt(pos + 8), in.getInt(pos + 12), in.getInt(pos + 16),
+                payloadAt, truncated ? in.limit() - payloadAt : length, in.getInt(pos + 24), truncated);
+    }
+
+    private static List<?> decodeSegment(byte[] bytes, Segment segment) throws IOException, ClassNotFoundException {
+        if (segment.truncated()) throw new IOException("truncado");
+        if (crcOf(bytes, segment.payloadAt(), segment.length()) != segment.crc()) throw new IOException("CRC32C não confere");
+        InputStream payload = new ByteArrayInputStream(bytes, segment.payloadAt(), segment.length());
+        try (ObjectInputStream in = new ObjectInputStream(BlockCompression.input(payload))) {
+            return (List<?>) in.readObject();
+        }
+    }
+
+    /**
+     * Segmentos declarados que não foram encontrados, uma faixa por lacuna: os ids
+     * vão do fim do segmento anterior encontrado ao começo do seguinte.
+     */
+    private static List<LostRange> missing(List<Segment> found, int declared) {
+        List<LostRange> lost = new ArrayList<>();
+        int next = 0;
+        int previousLast = 0;
+        for (int i = 0; i <= found.size(); i++) {
+            Segment segment = i < found.size() ? found.get(i) : null;
+            int upTo = segment == null ? declared : segment.number();
+            if (upTo > next) {
+                int lastId = segment == null ? Integer.MAX_VALUE : segment.firstId() - 1;
+                lost.add(new LostRange(next, previousLast + 1, lastId, -1,
+                        upTo - next == 1 ? "cabeçalho ilegível" : (upTo - next) + " segmentos com cabeçalho ilegível"));
+            }
+            if (segment == null) break;
+            next = Math.max(next, segment.number() + 1);
+            previousLast = segment.lastId();
+        }
+        return lost;
+    }
+
+    private static int crcOf(byte[] bytes, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+}
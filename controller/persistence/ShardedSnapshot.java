@@ -0,0 +1,263 @@
+package controller.persistence;
+
+import model.Book;
+import model.Category;
+import model.Review;
+import model.User;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+/**
+ * Base do snapshot dividida em N shards por hash do id ({@code id % N}).
+ * Cada shard é um snapshot binário comum, codificado, gravado e lido numa
+ * thread própria do {@link Workers}; um manifesto (no caminho da base) liga
+ * os shards de uma mesma geração. O manifesto é gravado por último, então uma
+ * geração só passa a valer quando todos os seus shards estão em disco. Um
+ * shard corrompido custa apenas os ids dele: os demais são carregados.
+ *
+ * Reviews vão para o shard do livro, logo depois dele, para que o índice de
+ * cada shard localize um livro e suas reviews de uma vez ({@link #readEntity}).
+ */
+public final class ShardedSnapshot {
+    public static final int MAGIC = 0x424D414E; // "BMAN"
+    private static final short VERSION = 2;
+    private static final String SHARD_MARK = ".shard";
+    private static final AtomicLong generations = new AtomicLong();
+
+    private ShardedSnapshot() {}
+
+    public record Shard(String file, byte[] image) {}
+
+    private record ShardInfo(String name, int records, long length) {}
+
+    /** Separa a base em shards e codifica cada um em paralelo. **/
+    public static Checkpoint prepare(String manifestFile, int shardCount, long coveredSequence,
+                                     List<User> users, List<Book> books, List<Category> categories,
+                                     boolean bookRecords, boolean reviewRecords) {
+        List<List<EntityRecord>> parts = new ArrayList<>(shardCount);
+        for (int k = 0; k < shardCount; k++) parts.add(new ArrayList<>());
+
+        for (User u : users) parts.get(shardOf(u.getId(), shardCount)).add(EntityRecord.of(u));
+        for (Book b : books) {
+            List<EntityRecord> part = parts.get(shardOf(b.getId(), shardCount));
+            if (bookRecords) part.add(EntityRecord.of(b));
+            if (reviewRecords) {
+                for (Review r : b.getReviews()) part.add(EntityRecord.of(b, r));
+            }
+        }
+        for (Category c : categories) parts.get(shardOf(c.getId(), shardCount)).add(EntityRecord.of(c));
+
+        List<Callable<byte[]>> tasks = new ArrayList<>();
+        for (List<EntityRecord> part : parts) {
+            tasks.add(() -> SnapshotCodec.encodeRecords(SnapshotCodec.Kind.BASE, coveredSequence, part));
+        }
+        List<Future<byte[]>> encoded = Workers.submitAll(tasks);
+
+        File manifest = new File(manifestFile).getAbsoluteFile();
+        String generation = Long.toHexString(System.currentTimeMillis()) + "-" + generations.incrementAndGet();
+        List<Shard> shards = new ArrayList<>(shardCount);
+        List<ShardInfo> infos = new ArrayList<>(shardCount);
+        for (int k = 0; k < shardCount; k++) {
+            byte[] image;
+            try {
+                image = Workers.await(encoded.get(k));
+            } catch (Exception e) {
+                throw new IllegalStateException("Falha ao codificar shard " + k, e);
+            }
+            String name = manifest.getName() + "." + generation + SHARD_MARK + k;
+            shards.add(new Shard(new File(manifest.getParentFile(), name).getPath(), image));
+            infos.add(new ShardInfo(name, parts.get(k).size(), image.length));
+        }
+
+        return new Checkpoint(true, manifestFile, encodeManifest(coveredSequence, infos), coveredSequence, shards);
+    }
+
+    public static int shardOf(int id, int shardCount) {
+        return Math.floorMod(id, shardCount);
+    }
+
+    public static boolean isManifest(String filename) {
+        File file = new File(filename);
+        if (file.length() < 4) return false;
+        try (DataInputStream in = new DataInputStream(BlockCompression.input(new FileInputStream(file)))) {
+            return in.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Decodifica todos os shards em paralelo e aplica os registros ao grafo.
+     * Shards ilegíveis são relatados e pulados.
+     *
+     * @return a sequência de delta coberta por esta base
+     */
+    public static long load(String manifestFile, LibraryGraph graph) throws IOException {
+        SnapshotCodec.Decoded decoded = decode(manifestFile);
+        for (EntityRecord record : decoded.records()) graph.apply(record);
+        return decoded.header().sequence();
+    }
+
+    /**
+     * Decodifica todos os shards em paralelo, sem aplicar: os registros vêm na
+     * ordem de aplicação e o cabeçalho traz a sequência coberta pela base. Shards
+     * ilegíveis são relatados e listados em {@link SnapshotCodec.Decoded#lost}.
+     */
+    public static SnapshotCodec.Decoded decode(String manifestFile) throws IOException {
+        File manifest = new File(manifestFile).getAbsoluteFile();
+        List<ShardInfo> infos = new ArrayList<>();
+        long sequence = readManifest(manifest, infos);
+
+        List<Callable<SnapshotCodec.Decoded>> tasks = new ArrayList<>();
+        for (ShardInfo info : infos) {
+            File file = new File(manifest.getParentFile(), info.name());
+            tasks.add(() -> decodeShard(file, info));
+        }
+        List<Future<SnapshotCodec.Decoded>> decoded = Workers.submitAll(tasks);
+
+        List<EntityRecord> records = new ArrayList<>();
+        List<String> lost = new ArrayList<>();
+        for (int k = 0; k < infos.size(); k++) {
+            try {
+                SnapshotCodec.Decoded shard = Workers.await(decoded.get(k));
+                records.addAll(shard.records());
+                for (String part : shard.lost()) {
+                    lost.add("shard " + infos.get(k).name() + ": " + part);
+                    System.err.println("[ERRO] Shard " + infos.get(k).name() + " com parte ilegível (" + part
+                            + "); o restante do shard foi carregado.");
+                }
+            } catch (Exception e) {
+                lost.add("shard " + infos.get(k).name() + " inteiro");
+                System.err.println("[ERRO] Shard " + infos.get(k).name() + " ilegível (" + (e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName())
+                        + "); entidades com id % " + infos.size() + " == " + k
+                        + " (e as reviews desses livros) não foram carregadas.");
+            }
+        }
+
+        // usuários, livros e categorias antes das reviews, que precisam de autor e livro
+        records.sort(Comparator.comparingInt(r -> r.type().ordinal()));
+        return new SnapshotCodec.Decoded(
+                new SnapshotCodec.Header(SnapshotCodec.VERSION, SnapshotCodec.Kind.BASE, sequence), records, lost);
+    }
+
+    /**
+     * Registros de uma entidade, lidos pelo índice do único shard que pode
+     * contê-la ({@link SnapshotCodec#readEntity}).
+     */
+    public static List<EntityRecord> readEntity(String manifestFile, EntityType type, int id) throws IOException {
+        File manifest = new File(manifestFile).getAbsoluteFile();
+        List<ShardInfo> infos = new ArrayList<>();
+        readManifest(manifest, infos);
+        if (infos.isEmpty()) return List.of();
+        ShardInfo info = infos.get(shardOf(id, infos.size()));
+        return SnapshotCodec.readEntity(new File(manifest.getParentFile(), info.name()).getPath(), type, id);
+    }
+
+    /** Sequência de delta coberta pela geração do manifesto. **/
+    public static long coveredSequence(String manifestFile) throws IOException {
+        return readManifest(new File(manifestFile).getAbsoluteFile(), new ArrayList<>());
+    }
+
+    /**
+     * Lê o manifesto, preenchendo {@code infos}; devolve a sequência coberta. A
+     * partir da versão 2 o manifesto termina com o CRC32C do que veio antes.
+     */
+    private static long readManifest(File manifest, List<ShardInfo> infos) throws IOException {
+        byte[] bytes;
+        try (InputStream in = BlockCompression.input(new FileInputStream(manifest))) {
+            bytes = in.readAllBytes();
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (bytes.length < 6 || in.readInt() != MAGIC) throw new IOException("Manifesto inválido: " + manifest);
+        short version = in.readShort();
+        if (version != 1 && version != VERSION) throw new IOException("Versão de manifesto não suportada: " + version);
+        if (version >= 2 && (bytes.length < 10 || ByteBuffer.wrap(bytes).getInt(bytes.length - Integer.BYTES)
+                != crcOf(bytes, bytes.length - Integer.BYTES))) {
+            throw new IOException("Manifesto não confere (CRC32C): " + manifest);
+        }
+        long sequence = in.readLong();
+        int count = in.readInt();
+        for (int k = 0; k < count; k++) {
+            infos.add(new ShardInfo(RecordCodec.readString(in), in.readInt(), in.readLong()));
+        }
+        return sequence;
+    }
+
+    /** Apaga shards de gerações que não são mais referenciadas pelo manifesto atual. **/
+    public static void deleteStaleShards(String manifestFile, List<Shard> current) {
+        File manifest = new File(manifestFile).getAbsoluteFile();
+        Set<String> keep = new HashSet<>();
+        for (Shard shard : current) keep.add(new File(shard.file()).getName());
+
+        File[] files = manifest.getParentFile().listFiles();
+        if (files == null) return;
+        String prefix = manifest.getName() + ".";
+        for (File f : files) {
+            String name = f.getName();
+            if (name.startsWith(prefix) && name.contains(SHARD_MARK) && !keep.contains(name)) f.delete();
+        }
+    }
+
+    /**
+     * Decodifica um shard conferindo-o contra o manifesto. Segmentos ilegíveis
+     * (e a divergência de tamanho que costuma vir com eles) vão em
+     * {@link SnapshotCodec.Decoded#lost}; só um cabeçalho ilegível perde o shard todo.
+     */
+    private static SnapshotCodec.Decoded decodeShard(File file, ShardInfo info) throws IOException {
+        byte[] bytes;
+        try (InputStream in = BlockCompression.input(new FileInputStream(file))) {
+            bytes = in.readAllBytes();
+        }
+        SnapshotCodec.Decoded decoded = SnapshotCodec.decode(bytes);
+        List<String> lost = new ArrayList<>(decoded.lost());
+        if (bytes.length != info.length()) lost.add("tamanho " + bytes.length + ", esperado " + info.length());
+        if (lost.isEmpty() && decoded.records().size() != info.records()) {
+            throw new IOException(decoded.records().size() + " registros, esperado " + info.records());
+        }
+        if (decoded.header().version() < 4 && !lost.isEmpty()) throw new IOException(String.join(", ", lost));
+        return new SnapshotCodec.Decoded(decoded.header(), decoded.records(), lost);
+    }
+
+    private static byte[] encodeManifest(long sequence, List<ShardInfo> infos) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(sequence);
+            out.writeInt(infos.size());
+            for (ShardInfo info : infos) {
+                RecordCodec.writeString(out, info.name());
+                out.writeInt(info.records());
+                out.writeLong(info.length());
+            }
+            out.writeInt(crcOf(buffer.toByteArray(), buffer.size()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static int crcOf(byte[] bytes, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,80 @@
+package controller.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A {@link CatalogImage} em uso por um processo somente leitura. Como a imagem é
+ * substituída por renomeação, de tempos em tempos (no máximo a cada
+ * {@code refreshMillis}, no acesso) confere se o arquivo no caminho ainda é o
+ * mapeado e, se não for, mapeia o novo. Sem arquivo, o catálogo fica vazio.
+ */
+public final class SharedCatalog {
+
+    private final File file;
+    private final long refreshNanos;
+    private volatile CatalogImage image;
+    private volatile long checkedAt;
+    private Object mappedKey;
+    private int reloads;
+    private String lastError;
+
+    public SharedCatalog(String file, long refreshMillis) {
+        this.file = new File(file);
+        this.refreshNanos = Math.max(0, refreshMillis) * 1_000_000;
+        reopenIfReplaced(System.nanoTime());
+    }
+
+    /** A imagem atual; quem faz várias leituras seguidas deve usar a mesma instância. **/
+    public CatalogImage current() {
+        long now = System.nanoTime();
+        if (now - checkedAt >= refreshNanos) reopenIfReplaced(now);
+        return image;
+    }
+
+    private synchronized void reopenIfReplaced(long now) {
+        if (image != null && now - checkedAt < refreshNanos) return; // outra thread acabou de conferir
+        checkedAt = now;
+        Object key = keyOf(file);
+        if (image != null && Objects.equals(key, mappedKey)) return;
+        if (key == null) {
+            if (image == null) image = CatalogImage.EMPTY;
+            return;
+        }
+        try {
+            image = CatalogImage.open(file);
+            mappedKey = key;
+            reloads++;
+            lastError = null;
+        } catch (IOException e) {
+            // mantém a imagem anterior; tenta de novo na próxima conferência
+            if (image == null) image = CatalogImage.EMPTY;
+            if (!Objects.equals(e.getMessage(), lastError)) {
+                System.err.println("[ERRO] Falha ao mapear " + file + ": " + e.getMessage());
+            }
+            lastError = e.getMessage();
+        }
+    }
+
+    /** Identidade do arquivo (inode e data de modificação), ou null se não existir. **/
+    private static Object keyOf(File file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            return List.of(Objects.requireNonNullElse(attributes.fileKey(), ""),
+                    attributes.lastModifiedTime(), attributes.size());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public synchronized String stats() {
+        CatalogImage current = image;
+        return String.format("%s: %d livros, %d categorias, %,d KB mapeados (sequência %d); %d mapeamentos%s",
+                file, current.bookCount(), current.categoryCount(), current.sizeBytes() / 1024,
+                current.sequence(), reloads, lastError == null ? "" : ", último erro: " + lastError);
+    }
+}
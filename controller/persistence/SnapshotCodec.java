@@ -0,0 +1,623 @@
+package controller.persistence;
+
+import model.Book;
+import model.Category;
+import model.Review;
+import model.User;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Formato binário próprio do snapshot do acervo, no lugar do ObjectOutputStream.
+ * Sem descritores de classe nem reflexão: cabeçalho com magic, versão, tipo
+ * (base completa ou delta) e número de sequência, depois os registros e uma
+ * tag final. Na base os registros vêm na ordem usuários, livros (cada um seguido
+ * das suas reviews) e categorias, para que autores e livros já existam quando as
+ * reviews forem lidas.
+ *
+ * Numa base, a sequência é a do último delta que ela já incorpora; num delta,
+ * é a sequência do próprio delta.
+ *
+ * A partir da versão 3, depois da tag final vem um índice para acesso direto:
+ * entradas de tamanho fixo [tipo][id][offset][tamanho], ordenadas por (tipo, id),
+ * e um rodapé [quantidade][offset do índice][magic]. Reviews entram no índice
+ * sob o livro dono, de modo que a entrada de um livro cobre o livro e as suas
+ * reviews. {@link #readEntity} localiza a entrada por busca binária no arquivo
+ * e lê só os bytes dela. A leitura sequencial para na tag final e ignora o índice.
+ *
+ * Na versão 4 o cabeçalho termina com o CRC32C dos campos anteriores e os
+ * registros vão em segmentos de até {@code biblioteca.snapshot.segmentKB}, cada
+ * um [magic][número][registros][tamanho][CRC dos bytes][primeira chave]
+ * [última chave][CRC do cabeçalho] e os bytes, como no {@link SegmentedFile};
+ * as chaves são (tipo, id) no critério do índice. As entradas do índice levam
+ * também o offset do segmento, e o rodapé [quantidade][offset do índice]
+ * [segmentos][CRC do índice][magic]. Um segmento que não confere custa só os
+ * registros dele: os demais são lidos e a perda, com a faixa de chaves, vai em
+ * {@link Decoded#lost}. Cabeçalho do arquivo ilegível torna o arquivo todo ilegível.
+ */
+public final class SnapshotCodec {
+    public static final int MAGIC = 0x424C4942; // "BLIB"
+    public static final short VERSION = 4;
+    private static final int END = 0;
+    private static final int FOOTER_MAGIC = 0x42494458; // "BIDX"
+    private static final int V3_INDEX_ENTRY_BYTES = 13;
+    private static final int V3_FOOTER_BYTES = 12;
+    private static final int HEADER_BYTES = 19;
+    private static final int SEGMENT_MAGIC = 0x42534E31; // "BSN1"
+    private static final int SEGMENT_HEADER = 34;
+    private static final int INDEX_ENTRY_BYTES = 17;
+    private static final int FOOTER_BYTES = 20;
+
+    public enum Kind { BASE, DELTA }
+
+    public record Header(short version, Kind kind, long sequence) {}
+
+    /**
+     * Registros decodificados mas ainda não aplicados a um grafo. {@code lost}
+     * descreve as partes que não puderam ser lidas (ex.: um shard); vazia quando
+     * o arquivo veio inteiro.
+     */
+    public record Decoded(Header header, List<EntityRecord> records, List<String> lost) {
+        public Decoded(Header header, List<EntityRecord> records) {
+            this(header, records, List.of());
+        }
+
+        public boolean complete() {
+            return lost.isEmpty();
+        }
+    }
+
+    private SnapshotCodec() {}
+
+    public static void write(DataOutputStream out, long coveredSequence, List<User> users,
+                             List<Book> books, List<Category> categories) throws IOException {
+        write(out, coveredSequence, users, books, categories, true, true);
+    }
+
+    /**
+     * @param bookRecords false quando os livros já vivem em outro lugar
+     *                    (ex.: {@link MappedBookStore}); as reviews continuam indo
+     * @param reviewRecords false quando as reviews vivem no {@link ReviewStore}
+     */
+    public static void write(DataOutputStream out, long coveredSequence, List<User> users, List<Book> books,
+                             List<Category> categories, boolean bookRecords, boolean reviewRecords) throws IOException {
+        writeHeader(out, Kind.BASE, coveredSequence);
+        IndexWriter index = new IndexWriter(out);
+
+        for (User u : users) index.write(EntityRecord.of(u));
+        for (Book b : books) {
+            if (bookRecords) index.write(EntityRecord.of(b));
+            if (reviewRecords) {
+                for (Review r : b.getReviews()) index.write(EntityRecord.of(b, r));
+            }
+        }
+        for (Category c : categories) index.write(EntityRecord.of(c));
+        index.finish();
+    }
+
+    public static void writeDelta(DataOutputStream out, long sequence,
+                                  Collection<EntityRecord> records) throws IOException {
+        writeHeader(out, Kind.DELTA, sequence);
+        IndexWriter index = new IndexWriter(out);
+        for (EntityRecord record : records) index.write(record);
+        index.finish();
+    }
+
+    /**
+     * Lê os registros para dentro do grafo; {@link LibraryGraph#finish()} fica a
+     * cargo de quem chama. Falha se alguma parte do arquivo estiver ilegível.
+     */
+    public static Header read(DataInputStream in, LibraryGraph graph) throws IOException {
+        Decoded decoded = readRecords(in);
+        if (!decoded.complete()) throw new IOException("snapshot com partes ilegíveis: " + decoded.lost());
+        for (EntityRecord record : decoded.records()) graph.apply(record);
+        return decoded.header();
+    }
+
+    /**
+     * Só decodifica, sem aplicar: pode rodar em paralelo com a leitura de outros
+     * arquivos. Segmentos que não conferem são pulados e relatados em
+     * {@link Decoded#lost}.
+     */
+    public static Decoded readRecords(DataInputStream in) throws IOException {
+        return decode(in.readAllBytes());
+    }
+
+    /** Decodifica uma imagem inteira (já descomprimida), de qualquer versão. **/
+    public static Decoded decode(byte[] image) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(image));
+        Header header = readHeader(in);
+        if (header.version() >= 4) return decodeSegments(header, ByteBuffer.wrap(image));
+
+        List<EntityRecord> records = new ArrayList<>();
+        while (true) {
+            in.mark(1);
+            if (in.readUnsignedByte() == END) return new Decoded(header, records);
+            in.reset();
+            records.add(RecordCodec.read(in));
+        }
+    }
+
+    private record Segment(int number, int records, int payloadAt, int length, int crc, long firstKey, long lastKey) {
+        int headerAt() {
+            return payloadAt - SEGMENT_HEADER;
+        }
+    }
+
+    /**
+     * Percorre os segmentos até a tag final (apontada pelo rodapé, ou até o fim
+     * do arquivo se o rodapé não confere). Depois de bytes que não formam um
+     * cabeçalho de segmento procura o próximo magic; números de segmento que
+     * faltam entram como perdidos.
+     */
+    private static Decoded decodeSegments(Header header, ByteBuffer in) {
+        List<String> lost = new ArrayList<>();
+        int indexOffset = indexOffsetOf(in);
+        int end = indexOffset > 0 ? indexOffset - 1 : in.limit();
+        if (indexOffset < 0) lost.add("rodapé ilegível");
+
+        List<EntityRecord> records = new ArrayList<>();
+        List<Segment> found = new ArrayList<>();
+        int pos = HEADER_BYTES;
+        while (pos + SEGMENT_HEADER <= end) {
+            Segment segment = segmentAt(in, pos);
+            if (segment == null) {
+                pos++;
+                continue;
+            }
+            found.add(segment);
+            pos = segment.payloadAt() + Math.min(segment.length(), end - segment.payloadAt());
+            try {
+                records.addAll(decodeSegment(in, segment, end));
+            } catch (IOException | RuntimeException e) {
+                lost.add("segmento " + segment.number() + " (" + (e.getMessage() != null ? e.getMessage()
+                        : e.getClass().getSimpleName()) + "): " + describeKeys(segment.firstKey(), segment.lastKey())
+                        + ", " + segment.records() + " registros");
+            }
+        }
+        int declared = indexOffset > 0 ? in.getInt(in.limit() - FOOTER_BYTES + 2 * Integer.BYTES) : -1;
+        lost.addAll(missing(in, indexOffset, found, declared, end));
+        return new Decoded(header, records, lost);
+    }
+
+    /**
+     * Segmentos que faltam, um relato por lacuna. A faixa de chaves vem das
+     * entradas do índice que apontam para a lacuna; sem índice, dos vizinhos
+     * (do fim do segmento anterior encontrado ao começo do seguinte).
+     */
+    private static List<String> missing(ByteBuffer in, int indexOffset, List<Segment> found, int declared, int end) {
+        List<String> lost = new ArrayList<>();
+        int next = 0;
+        Segment previous = null;
+        for (int i = 0; i <= found.size(); i++) {
+            Segment segment = i < found.size() ? found.get(i) : null;
+            int upTo = segment == null ? Math.max(declared, next) : segment.number();
+            if (upTo > next) {
+                int from = previous == null ? HEADER_BYTES : previous.payloadAt() + previous.length();
+                int to = segment == null ? end : segment.headerAt();
+                String keys = indexOffset > 0 ? indexedKeys(in, indexOffset, from, to)
+                        : describeKeys(previous == null ? -1 : previous.lastKey(), segment == null ? -1 : segment.firstKey());
+                lost.add((upTo - next == 1 ? "segmento " + next : "segmentos " + next + " a " + (upTo - 1))
+                        + " (cabeçalho ilegível): " + keys);
+            }
+            if (segment == null) break;
+            next = Math.max(next, segment.number() + 1);
+            previous = segment;
+        }
+        return lost;
+    }
+
+    /** Faixa de chaves das entradas do índice cujo segmento começa em [from, to). **/
+    private static String indexedKeys(ByteBuffer in, int indexOffset, int from, int to) {
+        int count = in.getInt(in.limit() - FOOTER_BYTES);
+        long first = -1;
+        long last = -1;
+        int entries = 0;
+        for (int i = 0; i < count; i++) {
+            int at = indexOffset + i * INDEX_ENTRY_BYTES;
+            int segmentAt = in.getInt(at + 13);
+            if (segmentAt < from || segmentAt >= to) continue;
+            long key = indexKey(in.get(at), in.getInt(at + 1));
+            if (first < 0) first = key; // o índice é ordenado por chave
+            last = key;
+            entries++;
+        }
+        return entries == 0 ? "nenhuma entrada no índice" : describeKeys(first, last) + ", " + entries + " entradas";
+    }
+
+    /** "livro 12 a livro 40"; chave negativa é uma ponta desconhecida. **/
+    private static String describeKeys(long first, long last) {
+        return (first < 0 ? "o começo" : describeKey(first)) + " a " + (last < 0 ? "o fim" : describeKey(last));
+    }
+
+    private static String describeKey(long key) {
+        int tag = (int) (key >>> 32);
+        String type = switch (tag) {
+            case 1 -> "usuário";
+            case 2 -> "livro";
+            case 3 -> "categoria";
+            case 4 -> "review";
+            default -> "tipo " + tag;
+        };
+        return type + " " + (int) key;
+    }
+
+    /** Segmento cujo cabeçalho começa em {@code pos} e confere, ou null. **/
+    private static Segment segmentAt(ByteBuffer in, int pos) {
+        if (in.getInt(pos) != SEGMENT_MAGIC) return null;
+        if (in.getInt(pos + SEGMENT_HEADER - Integer.BYTES) != crcOf(in, pos, SEGMENT_HEADER - Integer.BYTES)) return null;
+        return new Segment(in.getInt(pos + 4), in.getInt(pos + 8), pos + SEGMENT_HEADER,
+                in.getInt(pos + 12), in.getInt(pos + 16),
+                indexKey(in.get(pos + 20), in.getInt(pos + 21)), indexKey(in.get(pos + 25), in.getInt(pos + 26)));
+    }
+
+    private static List<EntityRecord> decodeSegment(ByteBuffer in, Segment segment, int end) throws IOException {
+        if (segment.length() < 0 || segment.length() > end - segment.payloadAt()) throw new IOException("truncado");
+        if (crcOf(in, segment.payloadAt(), segment.length()) != segment.crc()) throw new IOException("CRC32C não confere");
+        DataInputStream payload = new DataInputStream(
+                new ByteArrayInputStream(in.array(), segment.payloadAt(), segment.length()));
+        List<EntityRecord> records = new ArrayList<>(segment.records());
+        while (payload.available() > 0) records.add(RecordCodec.read(payload));
+        if (records.size() != segment.records()) {
+            throw new IOException(records.size() + " registros, esperado " + segment.records());
+        }
+        return records;
+    }
+
+    /** Offset do índice segundo o rodapé da versão 4, ou -1 se o rodapé ou o índice não conferem. **/
+    private static int indexOffsetOf(ByteBuffer in) {
+        int size = in.limit();
+        if (size < HEADER_BYTES + 1 + FOOTER_BYTES) return -1;
+        int footer = size - FOOTER_BYTES;
+        int count = in.getInt(footer);
+        int indexOffset = in.getInt(footer + 4);
+        if (in.getInt(footer + 16) != FOOTER_MAGIC || count < 0 || indexOffset <= HEADER_BYTES
+                || (long) indexOffset + (long) count * INDEX_ENTRY_BYTES != footer
+                || in.get(indexOffset - 1) != END
+                || in.getInt(footer + 12) != crcOf(in, indexOffset, count * INDEX_ENTRY_BYTES)) return -1;
+        return indexOffset;
+    }
+
+    private static int crcOf(ByteBuffer in, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(in.slice(offset, length));
+        return (int) crc.getValue();
+    }
+
+    private static Header readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) throw new IOException("Arquivo não é um snapshot binário");
+        short version = in.readShort();
+        if (version == 1) return new Header(version, Kind.BASE, 0);
+        if (version < 1 || version > VERSION) throw new IOException("Versão de snapshot não suportada: " + version);
+        int kind = in.readUnsignedByte();
+        long sequence = in.readLong();
+        if (version >= 4 && in.readInt() != headerCrc(version, kind, sequence)) {
+            throw new IOException("cabeçalho do snapshot não confere (CRC32C)");
+        }
+        if (kind >= Kind.values().length) throw new IOException("Tipo de snapshot desconhecido: " + kind);
+        return new Header(version, Kind.values()[kind], sequence);
+    }
+
+    private static int headerCrc(short version, int kind, long sequence) {
+        ByteBuffer fields = ByteBuffer.allocate(HEADER_BYTES - Integer.BYTES)
+                .putInt(MAGIC).putShort(version).put((byte) kind).putLong(sequence);
+        return crcOf(fields, 0, fields.capacity());
+    }
+
+    /** Codifica uma lista pronta de registros (ex.: a parte de uma base que cabe num shard). **/
+    public static byte[] encodeRecords(Kind kind, long sequence, List<EntityRecord> records) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(1 << 16);
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            writeHeader(out, kind, sequence);
+            IndexWriter index = new IndexWriter(out);
+            for (EntityRecord record : records) index.write(record);
+            index.finish();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    /** Grava uma base completa via arquivo temporário + rename. **/
+    public static void save(String filename, List<User> users, List<Book> books,
+                            List<Category> categories) throws IOException {
+        saveImage(filename, encode(0, users, books, categories, true, true));
+    }
+
+    /** Codifica a base em memória (trabalho só de CPU, sem tocar no disco). **/
+    public static byte[] encode(long coveredSequence, List<User> users, List<Book> books,
+                                List<Category> categories, boolean bookRecords, boolean reviewRecords) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(1 << 16);
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            write(out, coveredSequence, users, books, categories, bookRecords, reviewRecords);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // ByteArrayOutputStream não falha
+        }
+        return buffer.toByteArray();
+    }
+
+    public static byte[] encodeDelta(long sequence, Collection<EntityRecord> records) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            writeDelta(out, sequence, records);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    /** Grava uma imagem já codificada num arquivo temporário e troca de nome, para nunca deixar um snapshot pela metade. **/
+    public static void saveImage(String filename, byte[] image) throws IOException {
+        saveImage(filename, image, BlockCompression.Settings.fromConfig());
+    }
+
+    /** Como {@link #saveImage(String, byte[])}, comprimindo em blocos conforme {@code compression}. **/
+    public static void saveImage(String filename, byte[] image, BlockCompression.Settings compression) throws IOException {
+        File file = new File(filename);
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) parent.mkdirs();
+
+        File tmp = new File(filename + ".tmp");
+        try (OutputStream out = BlockCompression.output(new FileOutputStream(tmp), compression)) {
+            out.write(image);
+        }
+        GroupCommit.shared().commit(GroupCommit.file(tmp.toPath())); // conteúdo no disco antes de trocar o nome
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // o novo nome no disco antes de quem depende dele (ex.: truncar o journal)
+        GroupCommit.shared().commit(GroupCommit.directory(file.getAbsoluteFile().getParentFile().toPath()));
+    }
+
+    public static LibraryGraph load(String filename) throws IOException {
+        LibraryGraph graph = new LibraryGraph();
+        load(filename, graph);
+        return graph;
+    }
+
+    public static Header load(String filename, LibraryGraph graph) throws IOException {
+        try (DataInputStream in = new DataInputStream(BlockCompression.input(new FileInputStream(filename)))) {
+            return read(in, graph);
+        }
+    }
+
+    /** Decodifica o arquivo todo sem aplicar ({@link #readRecords}). **/
+    public static Decoded decode(String filename) throws IOException {
+        try (InputStream in = BlockCompression.input(new FileInputStream(filename))) {
+            return decode(in.readAllBytes());
+        }
+    }
+
+    /** Só o cabeçalho do arquivo (tipo e sequência), sem ler os registros. **/
+    public static Header readHeader(String filename) throws IOException {
+        try (DataInputStream in = new DataInputStream(BlockCompression.input(new FileInputStream(filename)))) {
+            return readHeader(in);
+        }
+    }
+
+    /**
+     * Lê só os registros de uma entidade, pelo índice do rodapé, sem percorrer o
+     * resto do arquivo. Para um livro, vêm o registro dele e os das suas reviews
+     * (num delta, também as remoções). Lista vazia se a entidade não está no
+     * arquivo; null se o arquivo não tem índice (versão anterior à 3).
+     */
+    public static List<EntityRecord> readEntity(String filename, EntityType type, int id) throws IOException {
+        try (BlockCompression.RandomAccess file = BlockCompression.RandomAccess.open(Path.of(filename))) {
+            long size = file.size();
+            if (size < HEADER_BYTES + FOOTER_BYTES) return size < V3_FOOTER_BYTES ? null : readEntityV3(file, type, id);
+            ByteBuffer start = file.read(0, Integer.BYTES + Short.BYTES);
+            if (start.getInt() != MAGIC) throw new IOException("Arquivo não é um snapshot binário");
+            if (start.getShort() < 4) return readEntityV3(file, type, id);
+
+            ByteBuffer footer = file.read(size - FOOTER_BYTES, FOOTER_BYTES);
+            int count = footer.getInt();
+            int indexOffset = footer.getInt();
+            footer.getInt(); // segmentos
+            int indexCrc = footer.getInt();
+            if (footer.getInt() != FOOTER_MAGIC || count < 0
+                    || (long) indexOffset + (long) count * INDEX_ENTRY_BYTES != size - FOOTER_BYTES) {
+                throw new IOException("rodapé do snapshot ilegível");
+            }
+            ByteBuffer index = file.read(indexOffset, count * INDEX_ENTRY_BYTES);
+            if (crcOf(index, 0, index.limit()) != indexCrc) throw new IOException("índice do snapshot não confere (CRC32C)");
+
+            long wanted = indexKey(type, id);
+            int low = 0, high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                int at = mid * INDEX_ENTRY_BYTES;
+                if (indexKey(index.get(at), index.getInt(at + 1)) < wanted) low = mid + 1;
+                else high = mid;
+            }
+
+            List<EntityRecord> records = new ArrayList<>();
+            for (int i = low; i < count; i++) {
+                int at = i * INDEX_ENTRY_BYTES;
+                if (indexKey(index.get(at), index.getInt(at + 1)) != wanted) break;
+                int offset = index.getInt(at + 5);
+                int length = index.getInt(at + 9);
+                int segmentAt = index.getInt(at + 13);
+                // confere o segmento inteiro antes de confiar nos bytes da entidade
+                ByteBuffer header = file.read(segmentAt, SEGMENT_HEADER);
+                Segment segment = segmentAt(header, 0);
+                if (segment == null) throw new IOException("cabeçalho de segmento ilegível em " + segmentAt);
+                ByteBuffer payload = file.read(segmentAt + SEGMENT_HEADER, segment.length());
+                if (crcOf(payload, 0, payload.limit()) != segment.crc()) {
+                    throw new IOException("segmento " + segment.number() + " não confere (CRC32C)");
+                }
+                int from = offset - segmentAt - SEGMENT_HEADER;
+                if (from < 0 || length < 0 || from + length > payload.limit()) throw new IOException("entrada de índice inválida");
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload.array(), from, length));
+                while (in.available() > 0) records.add(RecordCodec.read(in));
+            }
+            return records;
+        }
+    }
+
+    /** {@link #readEntity} nas versões sem CRC (índice de 13 bytes por entrada); null se não houver índice. **/
+    private static List<EntityRecord> readEntityV3(BlockCompression.RandomAccess file, EntityType type, int id)
+            throws IOException {
+        long size = file.size();
+        ByteBuffer footer = file.read(size - V3_FOOTER_BYTES, V3_FOOTER_BYTES);
+        int count = footer.getInt();
+        int indexOffset = footer.getInt();
+        if (footer.getInt() != FOOTER_MAGIC
+                || (long) indexOffset + (long) count * V3_INDEX_ENTRY_BYTES != size - V3_FOOTER_BYTES) return null;
+
+        // primeira entrada com chave >= (tipo, id)
+        long wanted = indexKey(type, id);
+        int low = 0, high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            ByteBuffer entry = file.read(indexOffset + (long) mid * V3_INDEX_ENTRY_BYTES, 5);
+            if (indexKey(entry.get(), entry.getInt()) < wanted) low = mid + 1;
+            else high = mid;
+        }
+
+        List<EntityRecord> records = new ArrayList<>();
+        for (int i = low; i < count; i++) {
+            ByteBuffer entry = file.read(indexOffset + (long) i * V3_INDEX_ENTRY_BYTES, V3_INDEX_ENTRY_BYTES);
+            if (indexKey(entry.get(), entry.getInt()) != wanted) break;
+            int offset = entry.getInt();
+            int length = entry.getInt();
+            ByteBuffer bytes = file.read(offset, length);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.array()));
+            while (in.available() > 0) records.add(RecordCodec.read(in));
+        }
+        return records;
+    }
+
+    static long indexKey(EntityType type, int id) {
+        return indexKey(type.getTag(), id);
+    }
+
+    private static long indexKey(int tag, int id) {
+        return ((long) (tag & 0xFF) << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    /** Chave do registro no índice: reviews (e remoções de reviews) ficam sob o livro dono. **/
+    static long indexKeyOf(EntityRecord record) {
+        if (record instanceof EntityRecord.ReviewRecord r) return indexKey(EntityType.BOOK, r.bookId());
+        if (record instanceof EntityRecord.Deletion d && d.target() == EntityType.REVIEW)
+            return indexKey(EntityType.BOOK, d.ownerId());
+        return indexKey(record.type(), record.id());
+    }
+
+    /**
+     * Grava registros anotando onde começa cada entidade; registros seguidos da
+     * mesma entidade (um livro e suas reviews) viram uma só entrada do índice.
+     */
+    private static final class IndexWriter {
+        private record Entry(long key, int offset, int length, int segmentAt) {}
+
+        private final DataOutputStream out;
+        private final int segmentBytes = PersistenceConfig.snapshotSegmentBytes();
+        private final ByteArrayOutputStream segment = new ByteArrayOutputStream();
+        private final DataOutputStream segmentOut = new DataOutputStream(segment);
+        private final List<Entry> open = new ArrayList<>(); // do segmento em formação, offsets relativos a ele
+        private final List<Entry> entries = new ArrayList<>();
+        private int segmentRecords;
+        private long firstKey;
+        private long lastKey;
+        private int segments;
+
+        IndexWriter(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void write(EntityRecord record) throws IOException {
+            long key = indexKeyOf(record);
+            int offset = segment.size();
+            RecordCodec.write(segmentOut, record);
+            int length = segment.size() - offset;
+            if (segmentRecords++ == 0) firstKey = key;
+            lastKey = key;
+
+            Entry last = open.isEmpty() ? null : open.getLast();
+            if (last != null && last.key() == key && last.offset() + last.length() == offset) {
+                open.set(open.size() - 1, new Entry(key, last.offset(), last.length() + length, 0));
+            } else {
+                open.add(new Entry(key, offset, length, 0));
+            }
+            if (segment.size() >= segmentBytes) flushSegment();
+        }
+
+        /** Grava o segmento em formação com cabeçalho e CRCs e fixa os offsets das entradas dele. **/
+        private void flushSegment() throws IOException {
+            if (segmentRecords == 0) return;
+            byte[] payload = segment.toByteArray();
+            ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER)
+                    .putInt(SEGMENT_MAGIC).putInt(segments).putInt(segmentRecords).putInt(payload.length)
+                    .putInt(crcOf(ByteBuffer.wrap(payload), 0, payload.length))
+                    .put((byte) (firstKey >>> 32)).putInt((int) firstKey)
+                    .put((byte) (lastKey >>> 32)).putInt((int) lastKey);
+            header.putInt(crcOf(header, 0, SEGMENT_HEADER - Integer.BYTES));
+
+            int segmentAt = out.size();
+            out.write(header.array());
+            out.write(payload);
+            for (Entry e : open) {
+                entries.add(new Entry(e.key(), segmentAt + SEGMENT_HEADER + e.offset(), e.length(), segmentAt));
+            }
+            open.clear();
+            segment.reset();
+            segmentRecords = 0;
+            segments++;
+        }
+
+        /** Último segmento, tag final, índice ordenado e rodapé. **/
+        void finish() throws IOException {
+            flushSegment();
+            out.writeByte(END);
+            int indexOffset = out.size();
+            entries.sort(Comparator.comparingLong(Entry::key).thenComparingInt(Entry::offset));
+            ByteBuffer index = ByteBuffer.allocate(entries.size() * INDEX_ENTRY_BYTES);
+            for (Entry e : entries) {
+                index.put((byte) (e.key() >>> 32)).putInt((int) e.key())
+                        .putInt(e.offset()).putInt(e.length()).putInt(e.segmentAt());
+            }
+            out.write(index.array());
+            out.writeInt(entries.size());
+            out.writeInt(indexOffset);
+            out.writeInt(segments);
+            out.writeInt(crcOf(index, 0, index.capacity()));
+            out.writeInt(FOOTER_MAGIC);
+        }
+    }
+
+    /** Diz se o arquivo começa com o magic do formato binário (e não de serialização Java). **/
+    public static boolean isSnapshotFile(String filename) {
+        File file = new File(filename);
+        if (file.length() < 4) return false;
+        try (DataInputStream in = new DataInputStream(BlockCompression.input(new FileInputStream(file)))) {
+            return in.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void writeHeader(DataOutputStream out, Kind kind, long sequence) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeByte(kind.ordinal());
+        out.writeLong(sequence);
+        out.writeInt(headerCrc(VERSION, kind.ordinal(), sequence));
+    }
+}
@@ -0,0 +1,30 @@
+package controller.persistence;
+
+import controller.DataManager;
+import model.CrudObjectInterface;
+
+import java.util.List;
+
+/**
+ * Engine de snapshot: mantém tudo em memória e, no flush, regrava a lista
+ * inteira com serialização Java ({@link DataManager}) — o comportamento
+ * original dos controladores.
+ */
+public final class SnapshotEngine<T extends CrudObjectInterface> extends MemoryEngine<T> {
+    private final String dataFile;
+
+    public SnapshotEngine(String dataFile) {
+        this.dataFile = dataFile;
+    }
+
+    @Override
+    public void load() {
+        List<T> loaded = DataManager.load(dataFile);
+        replaceAll(loaded == null ? List.of() : loaded);
+    }
+
+    @Override
+    public void flush() {
+        DataManager.save(scan(), dataFile);
+    }
+}
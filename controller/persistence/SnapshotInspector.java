@@ -0,0 +1,73 @@
+package controller.persistence;
+
+import controller.persistence.EntityRecord.BookRecord;
+import controller.persistence.EntityRecord.CategoryRecord;
+import controller.persistence.EntityRecord.Deletion;
+import controller.persistence.EntityRecord.ReviewRecord;
+import controller.persistence.EntityRecord.ShelfRecord;
+import controller.persistence.EntityRecord.UserRecord;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Mostra uma única entidade gravada nos snapshots, lida pelo índice do rodapé
+ * (base e deltas posteriores), sem carregar o acervo.
+ *
+ * Uso: java controller.persistence.SnapshotInspector [arquivo da base] user|book|category id
+ */
+public final class SnapshotInspector {
+
+    private SnapshotInspector() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Uso: SnapshotInspector [arquivo da base] user|book|category id");
+            System.exit(2);
+        }
+        String file = args.length > 2 ? args[0] : "data/library.dat";
+        String kind = args[args.length - 2].toLowerCase(Locale.ROOT);
+        int id = Integer.parseInt(args[args.length - 1]);
+        EntityType type = switch (kind) {
+            case "user" -> EntityType.USER;
+            case "book" -> EntityType.BOOK;
+            case "category" -> EntityType.CATEGORY;
+            default -> throw new IllegalArgumentException("Tipo desconhecido: " + kind);
+        };
+
+        LibraryStore store = new LibraryStore(file, Integer.MAX_VALUE, 1);
+        List<EntityRecord> records = store.readEntity(type, id);
+        if (records == null) {
+            System.err.println(file + " não é uma base binária.");
+            System.exit(1);
+        }
+        if (records.isEmpty()) {
+            System.out.println(kind + " " + id + " não encontrado.");
+            return;
+        }
+        for (EntityRecord record : records) System.out.println(describe(record));
+    }
+
+    private static String describe(EntityRecord record) {
+        return switch (record) {
+            case UserRecord u -> {
+                StringBuilder text = new StringBuilder("Usuário " + u.id() + ": " + u.username());
+                for (ShelfRecord s : u.shelves()) {
+                    text.append("\n  Estante ").append(s.id()).append(" \"").append(s.name()).append("\": livros ")
+                            .append(Arrays.toString(s.bookIds()));
+                }
+                yield text.toString();
+            }
+            case BookRecord b -> String.format(Locale.ROOT, "Livro %d: %s, %s, %s, %d páginas, R$ %.2f",
+                    b.id(), b.name(), b.author(), b.publisher(), b.pages(), b.price());
+            case CategoryRecord c -> "Categoria " + c.id() + ": " + c.name()
+                    + "\n  subcategorias " + Arrays.toString(c.subCategoryIds())
+                    + "\n  livros " + Arrays.toString(c.bookIds());
+            case ReviewRecord r -> String.format(Locale.ROOT, "  Review %d (autor %d, nota %.1f): %s",
+                    r.id(), r.authorId(), r.score(), r.comment());
+            case Deletion d -> "Removido: " + d.target() + " " + d.id();
+        };
+    }
+}
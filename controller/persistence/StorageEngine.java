@@ -0,0 +1,71 @@
+package controller.persistence;
+
+import model.CrudObjectInterface;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Armazenamento dos objetos de um controlador, por id.
+ * O controlador só fala com esta interface; o engine decide como (e se) os
+ * objetos são persistidos — ver {@link StorageEngines} para os disponíveis.
+ */
+public interface StorageEngine<T extends CrudObjectInterface> {
+
+    /** Inclui o objeto ou substitui o de mesmo id. **/
+    void put(T obj);
+
+    /** Inclui vários objetos de uma vez (ex.: importação em lote); engines com meio próprio gravam o lote junto. **/
+    default void putAll(Collection<? extends T> objects) {
+        for (T obj : objects) put(obj);
+    }
+
+    T get(int id);
+
+    boolean delete(int id);
+
+    /** Cópia dos objetos, na ordem de inclusão. **/
+    List<T> scan();
+
+    /** Percorre os objetos sem copiá-los (ex.: exportação); o engine não pode ser alterado durante a passada. **/
+    default void forEach(Consumer<? super T> action) {
+        for (T obj : scan()) action.accept(obj);
+    }
+
+    /** Substitui todo o conteúdo (ex.: objetos vindos do snapshot unificado). **/
+    void replaceAll(Collection<? extends T> objects);
+
+    /** Recarrega o conteúdo do meio persistente do engine. **/
+    void load();
+
+    /** Torna duráveis as escritas feitas até aqui. **/
+    void flush();
+
+    /**
+     * Tira o objeto da memória sem removê-lo (não é uma remoção: nada vai para
+     * checkpoint ou journal). Só serve quando a fonte do objeto é outra, ex.: o
+     * arquivo mapeado dos livros; engines que regravam o próprio meio a partir
+     * da memória recusam.
+     *
+     * @return false se o engine não solta objetos
+     */
+    default boolean evict(int id) {
+        return false;
+    }
+
+    /**
+     * Maior id que o engine já guardou (0 se nenhum), sem percorrer os objetos
+     * quando o engine o acompanha; pode incluir objetos já removidos.
+     */
+    default int highestId() {
+        return scan().stream().mapToInt(CrudObjectInterface::getId).max().orElse(0);
+    }
+
+    /** Descarta o espaço ocupado por versões antigas, se o engine acumular esse lixo. **/
+    default void compact() {}
+
+    default void close() {
+        flush();
+    }
+}
@@ -0,0 +1,47 @@
+package controller.persistence;
+
+import model.CrudObjectInterface;
+
+import java.io.File;
+
+/**
+ * Cria o {@link StorageEngine} de um controlador pelo nome configurado
+ * ({@link PersistenceConfig#storageEngine(String)}):
+ * <ul>
+ *   <li>{@code memory} — só em memória;</li>
+ *   <li>{@code snapshot} — lista inteira serializada no flush (padrão);</li>
+ *   <li>{@code log} — log de puts/deletes com compactação.</li>
+ * </ul>
+ */
+public final class StorageEngines {
+    private StorageEngines() {}
+
+    /** Engine configurado para o arquivo de dados (a chave é o nome do arquivo sem extensão). **/
+    public static <T extends CrudObjectInterface> StorageEngine<T> forDataFile(String dataFile) {
+        return open(PersistenceConfig.storageEngine(keyOf(dataFile)), dataFile);
+    }
+
+    public static <T extends CrudObjectInterface> StorageEngine<T> open(String kind, String dataFile) {
+        return switch (kind) {
+            case "memory" -> new MemoryEngine<>();
+            case "snapshot" -> new SnapshotEngine<>(dataFile);
+            case "log" -> new LogEngine<>(withExtension(dataFile, ".log"));
+            default -> {
+                System.err.println("[ERRO] Engine desconhecido '" + kind + "' para " + dataFile + "; usando snapshot.");
+                yield new SnapshotEngine<>(dataFile);
+            }
+        };
+    }
+
+    static String keyOf(String dataFile) {
+        String name = new File(dataFile).getName();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    private static String withExtension(String dataFile, String extension) {
+        int dot = dataFile.lastIndexOf('.');
+        int slash = Math.max(dataFile.lastIndexOf('/'), dataFile.lastIndexOf(File.separatorChar));
+        return (dot > slash ? dataFile.substring(0, dot) : dataFile) + extension;
+    }
+}
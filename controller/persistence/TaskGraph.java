@@ -0,0 +1,126 @@
+package controller.persistence;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Etapas de uma carga ou gravação com as dependências entre elas: cada etapa
+ * começa assim que as anteriores de que depende terminam, ao mesmo tempo que
+ * as independentes. Mede quando cada uma começou e quanto durou.
+ *
+ * As etapas rodam num pool próprio, não no {@link Workers}: elas mesmas
+ * repartem o trabalho pesado no Workers e esperam o resultado, e ocupar as
+ * threads dele com essa espera poderia travar o pool.
+ *
+ * Uma etapa que falha é relatada e as que dependem dela rodam mesmo assim,
+ * como no código sequencial, que segue com o que conseguiu ler.
+ */
+public final class TaskGraph {
+
+    private static final AtomicInteger counter = new AtomicInteger();
+    private static final ExecutorService phases = Executors.newCachedThreadPool(task -> {
+        Thread t = new Thread(task, "persistence-phase-" + counter.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Corpo de uma etapa. **/
+    @FunctionalInterface
+    public interface Step {
+        void run() throws Exception;
+    }
+
+    /** Etapa registrada; serve de dependência para as seguintes. **/
+    public static final class Task {
+        private final String name;
+        private final Step step;
+        private final Task[] after;
+        private CompletableFuture<Void> done;
+        private long startedAt;
+        private long endedAt;
+        private String error;
+
+        private Task(String name, Step step, Task[] after) {
+            this.name = name;
+            this.step = step;
+            this.after = after;
+        }
+    }
+
+    /** Início (relativo ao começo do grafo) e duração de uma etapa. **/
+    public record Phase(String name, double startMs, double durationMs, String error) {}
+
+    /** Resultado de uma execução: tempo de relógio e o de cada etapa. **/
+    public record Timings(String name, boolean parallel, double wallMs, List<Phase> phases) {
+        public double totalMs() {
+            return phases.stream().mapToDouble(Phase::durationMs).sum();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(String.format("%s %s: %.1f ms de relógio, %.1f ms somando as etapas",
+                    name, parallel ? "em paralelo" : "sequencial", wallMs, totalMs()));
+            for (Phase phase : phases) {
+                sb.append(String.format("%n  %-28s início %7.1f ms, %7.1f ms%s", phase.name(), phase.startMs(),
+                        phase.durationMs(), phase.error() == null ? "" : " (falhou: " + phase.error() + ")"));
+            }
+            return sb.toString();
+        }
+    }
+
+    private final String name;
+    private final List<Task> tasks = new ArrayList<>();
+
+    public TaskGraph(String name) {
+        this.name = name;
+    }
+
+    /** Registra uma etapa que só começa depois de {@code after}, já registradas. **/
+    public Task add(String name, Step step, Task... after) {
+        Task task = new Task(name, step, after);
+        tasks.add(task);
+        return task;
+    }
+
+    /**
+     * Executa todas as etapas e espera o fim. Sequencial: na ordem de registro,
+     * na thread de quem chama (as dependências vêm sempre antes).
+     */
+    public Timings run(boolean parallel) {
+        long start = System.nanoTime();
+        if (parallel) {
+            for (Task task : tasks) {
+                CompletableFuture<?>[] dependencies = new CompletableFuture<?>[task.after.length];
+                for (int i = 0; i < dependencies.length; i++) dependencies[i] = task.after[i].done;
+                task.done = CompletableFuture.allOf(dependencies).thenRunAsync(() -> execute(task), phases);
+            }
+            for (Task task : tasks) task.done.join();
+        } else {
+            for (Task task : tasks) execute(task);
+        }
+        long end = System.nanoTime();
+
+        List<Phase> result = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            result.add(new Phase(task.name, (task.startedAt - start) / 1e6, (task.endedAt - task.startedAt) / 1e6,
+                    task.error));
+        }
+        return new Timings(name, parallel, (end - start) / 1e6, result);
+    }
+
+    private void execute(Task task) {
+        task.startedAt = System.nanoTime();
+        try {
+            task.step.run();
+        } catch (Exception e) {
+            task.error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            System.err.println("[ERRO] Falha na etapa \"" + task.name + "\" (" + name + "): " + task.error);
+        } finally {
+            task.endedAt = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package controller.persistence;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Camada quente de objetos materializados a partir de um meio frio (ex.: o
+ * {@link MappedBookStore}), limitada por um orçamento de bytes estimados. Passado
+ * o orçamento, os objetos de uso mais antigo saem da camada ({@code onEvict}
+ * solta as demais referências do controlador) e voltam a ser lidos do meio frio
+ * no próximo acesso.
+ *
+ * O objeto que sai continua numa referência fraca: se ainda estiver vivo quando
+ * for pedido de novo (preso a uma categoria, estante ou tela), volta a mesma
+ * instância, e não uma cópia relida. O orçamento conta só o que está na camada.
+ */
+public final class TieredCache<T> {
+
+    private final long budgetBytes;
+    private final ToLongFunction<T> sizeOf;
+    private final Consumer<T> onEvict;
+
+    // do uso mais antigo ao mais recente
+    private final LinkedHashMap<Integer, Hot<T>> hot = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Integer, Cold<T>> cold = new HashMap<>();
+    private final ReferenceQueue<T> collected = new ReferenceQueue<>();
+    private long hotBytes;
+
+    private long hits;
+    private long misses;
+    private long revived;
+    private long evictions;
+
+    private static final class Hot<T> {
+        final T value;
+        long bytes;
+
+        Hot(T value, long bytes) {
+            this.value = value;
+            this.bytes = bytes;
+        }
+    }
+
+    private static final class Cold<T> extends WeakReference<T> {
+        final int id;
+
+        Cold(int id, T value, ReferenceQueue<T> queue) {
+            super(value, queue);
+            this.id = id;
+        }
+    }
+
+    /** {@code budgetBytes <= 0} desliga o limite: nada sai da camada. **/
+    public TieredCache(long budgetBytes, ToLongFunction<T> sizeOf, Consumer<T> onEvict) {
+        this.budgetBytes = budgetBytes;
+        this.sizeOf = sizeOf;
+        this.onEvict = onEvict;
+    }
+
+    public boolean bounded() {
+        return budgetBytes > 0;
+    }
+
+    /** O objeto na camada, marcando o uso; null se não estiver nela. **/
+    public synchronized T get(int id) {
+        Hot<T> entry = hot.get(id);
+        if (entry == null) return null;
+        hits++;
+        return entry.value;
+    }
+
+    /**
+     * Um objeto que saiu da camada mas ainda está vivo; quem chama o readmite com
+     * {@link #put}. Null se foi coletado (ou nunca esteve aqui): precisa ser relido.
+     */
+    public synchronized T revive(int id) {
+        Cold<T> ref = cold.remove(id);
+        T value = ref == null ? null : ref.get();
+        if (value == null) misses++;
+        else revived++;
+        return value;
+    }
+
+    public synchronized void put(int id, T value) {
+        cold.remove(id);
+        admit(id, value);
+    }
+
+    /** Reestima o tamanho de um objeto da camada que cresceu (ex.: reviews carregadas). **/
+    public synchronized void resize(int id) {
+        Hot<T> entry = hot.get(id);
+        if (entry == null) return;
+        long bytes = sizeOf.applyAsLong(entry.value);
+        hotBytes += bytes - entry.bytes;
+        entry.bytes = bytes;
+        evictOverBudget();
+    }
+
+    public synchronized void remove(int id) {
+        Hot<T> entry = hot.remove(id);
+        if (entry != null) hotBytes -= entry.bytes;
+        cold.remove(id);
+    }
+
+    public synchronized void clear() {
+        hot.clear();
+        cold.clear();
+        hotBytes = 0;
+    }
+
+    public synchronized int size() {
+        return hot.size();
+    }
+
+    public synchronized String stats() {
+        return String.format("%d objetos na camada quente, %,d KB%s; %d acertos, %d releituras, "
+                        + "%d readmitidos ainda vivos, %d descartes",
+                hot.size(), hotBytes / 1024, bounded() ? " de " + String.format("%,d", budgetBytes / 1024) + " KB" : "",
+                hits, misses, revived, evictions);
+    }
+
+    private void admit(int id, T value) {
+        long bytes = sizeOf.applyAsLong(value);
+        Hot<T> previous = hot.put(id, new Hot<>(value, bytes));
+        if (previous != null) hotBytes -= previous.bytes;
+        hotBytes += bytes;
+        expungeCollected();
+        evictOverBudget();
+    }
+
+    /** O recém-admitido (o mais recente) nunca sai, mesmo sozinho acima do orçamento. **/
+    private void evictOverBudget() {
+        if (!bounded()) return;
+        Iterator<Map.Entry<Integer, Hot<T>>> eldest = hot.entrySet().iterator();
+        while (hotBytes > budgetBytes && hot.size() > 1) {
+            Map.Entry<Integer, Hot<T>> entry = eldest.next();
+            eldest.remove();
+            hotBytes -= entry.getValue().bytes;
+            cold.put(entry.getKey(), new Cold<>(entry.getKey(), entry.getValue().value, collected));
+            evictions++;
+            onEvict.accept(entry.getValue().value);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void expungeCollected() {
+        Cold<T> ref;
+        while ((ref = (Cold<T>) collected.poll()) != null) cold.remove(ref.id, ref);
+    }
+}
@@ -0,0 +1,59 @@
+package controller.persistence;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Pool compartilhado de threads para codificar, decodificar e gravar arquivos em paralelo. **/
+public final class Workers {
+    private static final String THREAD_PREFIX = "persistence-worker-";
+    private static final AtomicInteger counter = new AtomicInteger();
+    private static final ExecutorService pool = Executors.newFixedThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors()),
+            task -> {
+                Thread t = new Thread(task, THREAD_PREFIX + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+
+    private Workers() {}
+
+    public static ExecutorService pool() {
+        return pool;
+    }
+
+    /** Executa as tarefas em paralelo e devolve os resultados na mesma ordem. **/
+    public static <T> List<Future<T>> submitAll(List<? extends Callable<T>> tasks) {
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) futures.add(pool.submit(task));
+        return futures;
+    }
+
+    /**
+     * Submete a tarefa, ou a executa na hora quando quem chama já é uma thread
+     * do pool: uma tarefa que espera subtarefas no mesmo pool fixo pode ocupar
+     * todas as threads e nunca ver as subtarefas rodarem.
+     */
+    public static <T> Future<T> submitNested(Callable<T> task) {
+        if (!Thread.currentThread().getName().startsWith(THREAD_PREFIX)) return pool.submit(task);
+        FutureTask<T> inline = new FutureTask<>(task);
+        inline.run();
+        return inline;
+    }
+
+    /** Espera o resultado, repassando a causa original de uma falha. **/
+    public static <T> T await(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) throw cause;
+            throw e;
+        }
+    }
+}
@@ -1,9 +1,15 @@
 package model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serial;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.function.Function;
 
 public final class Book extends AbstractCrudObject implements Ranked {
+    @Serial
+    private static final long serialVersionUID = -1308224104498167818L;
 
     private static int nextId = 1;
     private String name;
@@ -11,8 +17,12 @@ public final class Book extends AbstractCrudObject implements Ranked {
     private String author;
     private String publisher;
     private Integer pages;
-    private final ArrayList<Review> reviews = new ArrayList<>();
-    private final ArrayList<Category> categories = new ArrayList<>();
+    // null enquanto as reviews estão adiadas (modo lazy); a lista publicada nunca é esvaziada por baixo de quem a lê
+    private volatile ArrayList<Review> reviews = new ArrayList<>();
+    // Não é gravada: vem de Category, que grava os ids dos seus livros (Category#resolveReferences)
+    private transient ArrayList<Category> categories = new ArrayList<>();
+    // Reviews ainda não carregadas: o primeiro acesso chama o loader (modo lazy do BookController)
+    private transient volatile Function<Book, ArrayList<Review>> reviewLoader;
 
     /** Class that represents the main (CRUD) object for the system**/
     private Book(int id, String name, Double price, String author, String publisher, Integer pages) {
@@ -28,6 +38,14 @@ public final class Book extends AbstractCrudObject implements Ranked {
         return categories;
     }
 
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        categories = new ArrayList<>();
+        if (reviews == null) reviews = new ArrayList<>();
+        for (Review review : reviews) review.setBookId(id); // bookId é transient
+    }
+
     /**Builds a Book object**/
     public static class Builder {
         private String name = "Sem nome";
@@ -74,6 +92,7 @@ public final class Book extends AbstractCrudObject implements Ranked {
     }
 
     public static void resetIdCounter(int next) { nextId = next; }
+    public static int getNextId() { return nextId; }
 
     public String getName() { return name; }
     public Double getPrice() { return price; }
@@ -82,6 +101,7 @@ public final class Book extends AbstractCrudObject implements Ranked {
     public Integer getPages() { return pages; }
 
     public String getScoreDisplay() {
+        ArrayList<Review> reviews = getReviews();
         if (reviews.isEmpty()) return "(?)";
         double avg = reviews.stream().mapToDouble(Review::getScore).average().orElse(0);
         return String.format("%.1f", avg);
@@ -90,33 +110,79 @@ public final class Book extends AbstractCrudObject implements Ranked {
     public void setName(String name) {
         name = (name == null ? "" : name.trim());
         this.name = name.isBlank() ? "Sem nome" : name;
+        ChangeTracker.markDirty(this);
     }
 
     public void setPrice(Double price) {
         this.price = (price == null || price < 0) ? 0d : price;
+        ChangeTracker.markDirty(this);
     }
 
     public void setAuthor(String author) {
         this.author = (author == null || author.isBlank()) ? "Desconhecido" : author.trim();
+        ChangeTracker.markDirty(this);
     }
 
     public void setPublisher(String publisher) {
         this.publisher = (publisher == null || publisher.isBlank()) ? "Desconhecida" : publisher.trim();
+        ChangeTracker.markDirty(this);
     }
 
     public void setPages(Integer pages) {
         this.pages = (pages == null || pages < 0) ? 0 : pages;
+        ChangeTracker.markDirty(this);
+    }
+
+    public ArrayList<Review> getReviews() {
+        ArrayList<Review> current = reviews;
+        return current != null ? current : faultReviews();
+    }
+
+    /**
+     * Descarta as reviews em memória; o próximo acesso as carrega com {@code loader}.
+     * Só pode ser usado quando as reviews estão gravadas fora do livro (ReviewStore).
+     * A lista atual não é limpa: quem já a tem continua lendo-a inteira.
+     */
+    public void deferReviews(Function<Book, ArrayList<Review>> loader) {
+        reviewLoader = loader;
+        reviews = null;
     }
 
-    public ArrayList<Review> getReviews() { return reviews; }
+    public boolean reviewsLoaded() {
+        return reviews != null;
+    }
+
+    /**
+     * Troca as reviews do livro por {@code loaded}, publicada já completa: quem lê
+     * vê a lista antiga ou a nova, nunca uma pela metade. Não marca alterações.
+     */
+    public void replaceReviews(ArrayList<Review> loaded) {
+        for (Review review : loaded) review.setBookId(id);
+        reviews = loaded;
+    }
+
+    /**
+     * Chama o loader, que publica as reviews com {@link #replaceReviews} e as
+     * devolve; uma thread por vez. Devolve a lista carregada mesmo que o livro
+     * tenha sido descartado de novo nesse meio-tempo.
+     */
+    private synchronized ArrayList<Review> faultReviews() {
+        ArrayList<Review> current = reviews;
+        if (current != null) return current; // outra thread já carregou
+        return reviewLoader.apply(this);
+    }
 
     public void addReview(Review review) {
-        if (review != null && !reviews.contains(review))
+        ArrayList<Review> reviews = getReviews();
+        if (review != null && !reviews.contains(review)) {
             reviews.add(review);
+            review.setBookId(id);
+            ChangeTracker.markDirty(review);
+        }
     }
 
     public void removeReview(Review review) {
-        reviews.remove(review);
+        if (getReviews().remove(review)) ChangeTracker.markRemoved(review);
     }
 
     public void addCategory(Category category) {
@@ -133,6 +199,7 @@ public final class Book extends AbstractCrudObject implements Ranked {
 
     @Override
     public Double getScore() {
+        ArrayList<Review> reviews = getReviews();
         if (reviews.isEmpty()) return 0d;
         return reviews.stream().mapToDouble(Review::getScore).average().orElse(0);
     }
@@ -147,7 +214,7 @@ public final class Book extends AbstractCrudObject implements Ranked {
                 .append("\nPáginas: ").append(pages)
                 .append("\nPreço: ").append(price)
                 .append("\nScore: ").append(getScoreDisplay())
-                .append("\nReviews: ").append(reviews.size());
+                .append("\nReviews: ").append(getReviews().size());
 
         if (!categories.isEmpty()) {
             sb.append("\nCategorias: ");
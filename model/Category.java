@@ -1,14 +1,39 @@
 package model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+import java.io.Serial;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.function.IntFunction;
 
 public final class Category extends AbstractCrudObject implements Serializable, CrudObjectInterface {
+    @Serial
+    private static final long serialVersionUID = 7413863331962767932L;
+
+    /**
+     * Subcategorias e livros são gravados só pelos ids: category.dat não traz
+     * livros nem cópias de categorias de outros segmentos. "subCategories" e
+     * "books" continuam no formato para ler arquivos antigos; hoje vão null.
+     */
+    @Serial
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("name", String.class),
+            new ObjectStreamField("subCategories", ArrayList.class),
+            new ObjectStreamField("books", ArrayList.class),
+            new ObjectStreamField("subCategoryIds", int[].class),
+            new ObjectStreamField("bookIds", int[].class),
+    };
 
     private static int nextId = 1;
     private String name;
-    private final ArrayList<Category> subCategories = new ArrayList<>();
-    private final ArrayList<Book> books = new ArrayList<>();
+    private ArrayList<Category> subCategories = new ArrayList<>();
+    private ArrayList<Book> books = new ArrayList<>();
+    // ids lidos e ainda não ligados aos objetos carregados (resolveReferences)
+    private transient int[] pendingSubCategoryIds;
+    private transient int[] pendingBookIds;
 
     private Category(int id, String name) {
         super(id);
@@ -37,11 +62,13 @@ public final class Category extends AbstractCrudObject implements Serializable,
     }
 
     public static void resetIdCounter(int next) { nextId = next; }
+    public static int getNextId() { return nextId; }
 
     public String getName() { return name; }
 
     public void setName(String name) {
         this.name = (name == null || name.isBlank()) ? "Sem nome" : name.trim();
+        ChangeTracker.markDirty(this);
     }
 
     public ArrayList<Book> getBooks() {
@@ -53,6 +80,7 @@ public final class Category extends AbstractCrudObject implements Serializable,
         if (!books.contains(book)) {
             books.add(book);
             book.addCategory(this);
+            ChangeTracker.markDirty(this);
             return true;
         }
         return false;
@@ -62,6 +90,7 @@ public final class Category extends AbstractCrudObject implements Serializable,
         if (book == null) return false;
         if (books.remove(book)) {
             book.removeCategory(this);
+            ChangeTracker.markDirty(this);
             return true;
         }
         return false;
@@ -73,16 +102,79 @@ public final class Category extends AbstractCrudObject implements Serializable,
 
     public boolean addSubCategory(Category sub) {
         if (sub == null || sub == this || subCategories.contains(sub)) return false;
+        ChangeTracker.markDirty(this);
         return subCategories.add(sub);
     }
 
     public boolean removeSubCategory(Category sub) {
         if (sub == null) return false;
-        return subCategories.remove(sub);
+        boolean removed = subCategories.remove(sub);
+        if (removed) ChangeTracker.markDirty(this);
+        return removed;
     }
 
     public void clearSubCategories() {
+        if (subCategories.isEmpty()) return;
         subCategories.clear();
+        ChangeTracker.markDirty(this);
+    }
+
+    /**
+     * Liga os ids lidos às subcategorias e livros carregados e refaz o lado do
+     * livro ({@link Book#getCategories()}, que não é gravado). Ids sem objeto
+     * (removido) são descartados.
+     *
+     * @return quantidade de ids que não puderam ser resolvidos
+     */
+    public int resolveReferences(IntFunction<Category> categories, IntFunction<Book> books) {
+        int missing = 0;
+        if (pendingSubCategoryIds != null) {
+            for (int subId : pendingSubCategoryIds) {
+                Category sub = categories.apply(subId);
+                if (sub == null) missing++;
+                else if (sub != this && !subCategories.contains(sub)) subCategories.add(sub);
+            }
+            pendingSubCategoryIds = null;
+        }
+        if (pendingBookIds != null) {
+            for (int bookId : pendingBookIds) {
+                Book book = books.apply(bookId);
+                if (book == null) missing++;
+                else if (!this.books.contains(book)) this.books.add(book);
+            }
+            pendingBookIds = null;
+        }
+        for (Book book : this.books) book.addCategory(this);
+        return missing;
+    }
+
+    @Serial
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("name", name);
+        fields.put("subCategories", null);
+        fields.put("books", null);
+        fields.put("subCategoryIds", pendingSubCategoryIds != null ? pendingSubCategoryIds : idsOf(subCategories));
+        fields.put("bookIds", pendingBookIds != null ? pendingBookIds : idsOf(books));
+        out.writeFields();
+    }
+
+    @Serial
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        name = (String) fields.get("name", "Sem nome");
+        // arquivo antigo: subcategorias e livros vieram como cópias; ficam só os ids
+        ArrayList<Category> legacySubs = (ArrayList<Category>) fields.get("subCategories", null);
+        ArrayList<Book> legacyBooks = (ArrayList<Book>) fields.get("books", null);
+        subCategories = new ArrayList<>();
+        books = new ArrayList<>();
+        pendingSubCategoryIds = legacySubs != null ? idsOf(legacySubs) : (int[]) fields.get("subCategoryIds", null);
+        pendingBookIds = legacyBooks != null ? idsOf(legacyBooks) : (int[]) fields.get("bookIds", null);
+    }
+
+    private static int[] idsOf(ArrayList<? extends CrudObjectInterface> objects) {
+        return objects.stream().mapToInt(CrudObjectInterface::getId).toArray();
     }
 
     @Override
@@ -0,0 +1,63 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Registra quais entidades mudaram (ou foram removidas) desde o último
+ * snapshot, para que só elas sejam regravadas. Os setters e os métodos
+ * add/remove do modelo marcam a entidade dona da mudança.
+ */
+public final class ChangeTracker {
+    private static final Set<Object> dirty = Collections.newSetFromMap(new IdentityHashMap<>());
+    private static final Set<Object> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+    private static int suspended = 0;
+
+    private ChangeTracker() {}
+
+    /** Mudanças acumuladas, entregues (e esquecidas) de uma vez por {@link #drain()}. **/
+    public record Changes(List<Object> dirty, List<Object> removed) {
+        public boolean isEmpty() { return dirty.isEmpty() && removed.isEmpty(); }
+    }
+
+    public static synchronized void markDirty(Object entity) {
+        if (suspended > 0 || entity == null) return;
+        removed.remove(entity);
+        dirty.add(entity);
+    }
+
+    public static synchronized void markRemoved(Object entity) {
+        if (suspended > 0 || entity == null) return;
+        dirty.remove(entity);
+        removed.add(entity);
+    }
+
+    public static synchronized Changes drain() {
+        Changes changes = new Changes(new ArrayList<>(dirty), new ArrayList<>(removed));
+        dirty.clear();
+        removed.clear();
+        return changes;
+    }
+
+    /**
+     * Devolve mudanças drenadas cujo checkpoint não foi gerado. Uma mudança
+     * posterior da mesma entidade (ex.: removida depois de drenada) prevalece.
+     */
+    public static synchronized void restore(Changes changes) {
+        for (Object entity : changes.dirty()) if (!removed.contains(entity)) dirty.add(entity);
+        for (Object entity : changes.removed()) if (!dirty.contains(entity)) removed.add(entity);
+    }
+
+    public static synchronized void clear() {
+        dirty.clear();
+        removed.clear();
+    }
+
+    /** Ignora mudanças enquanto suspenso (ex.: ao montar objetos lidos do disco). **/
+    public static synchronized void suspend() { suspended++; }
+
+    public static synchronized void resume() { if (suspended > 0) suspended--; }
+}
@@ -1,18 +1,42 @@
 package model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+import java.io.Serial;
 import java.io.Serializable;
 import java.util.Objects;
+import java.util.function.IntFunction;
 
 public final class Review extends AbstractCrudObject implements Ranked, Serializable, CrudObjectInterface {
+    @Serial
+    private static final long serialVersionUID = 528214029697217310L;
+
+    /**
+     * O autor é gravado só pelo id: serializar a review não arrasta o usuário,
+     * as estantes dele e os livros delas. "author" continua no formato para ler
+     * arquivos antigos, que traziam o objeto inteiro; hoje vai sempre null.
+     */
+    @Serial
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("author", User.class),
+            new ObjectStreamField("authorId", int.class),
+            new ObjectStreamField("comment", String.class),
+            new ObjectStreamField("Score", Double.class),
+    };
 
     private static int nextId = 1;
-    private final User author;
+    private transient int bookId;
+    private User author; // null depois da desserialização, até resolveAuthor
+    private int authorId;
     private String comment;
     private Double Score;
 
     private Review(int id, String comment, Double Score, User author) {
         super(id);
         this.author = Objects.requireNonNull(author);
+        this.authorId = author.getId();
         setComment(comment);
         setScore(Score);
     }
@@ -63,19 +87,69 @@ public final class Review extends AbstractCrudObject implements Ranked, Serializ
     @Override
     public int getId() { return id; }
     public static void resetIdCounter(int next) { nextId = next; }
+    public static int getNextId() { return nextId; }
     public Double getScore() { return Score; }
 
     public void setComment(String comment) {
         this.comment = (comment == null) ? "" : comment.trim();
+        ChangeTracker.markDirty(this);
+    }
+
+    /** Id do livro que contém a review (definido por {@link Book#addReview}). **/
+    public int getBookId() {
+        return bookId;
+    }
+
+    void setBookId(int bookId) {
+        this.bookId = bookId;
     }
 
     public User getAuthor() {
         return author;
     }
 
+    /** Id do autor; disponível mesmo antes de {@link #resolveAuthor}. **/
+    public int getAuthorId() {
+        return author != null ? author.getId() : authorId;
+    }
+
+    /**
+     * Liga o autor lido pelo id ao usuário carregado. Num arquivo antigo o autor
+     * veio como cópia, que só fica se não houver usuário com o mesmo id.
+     *
+     * @return false se o usuário não existe (review órfã)
+     */
+    public boolean resolveAuthor(IntFunction<User> users) {
+        User loaded = users.apply(getAuthorId());
+        if (loaded != null) author = loaded;
+        return author != null;
+    }
+
+    @Serial
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("author", null);
+        fields.put("authorId", getAuthorId());
+        fields.put("comment", comment);
+        fields.put("Score", Score);
+        out.writeFields();
+    }
+
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        // arquivo antigo: o autor veio como cópia, talvez ainda em construção; o id é lido dela depois
+        author = (User) fields.get("author", null);
+        authorId = fields.get("authorId", 0);
+        comment = (String) fields.get("comment", "");
+        Double score = (Double) fields.get("Score", null);
+        Score = score != null ? score : 0d;
+    }
+
     public void setScore(Double rank) {
         if (rank < 0d || rank > 5d) this.Score = 0d;
         else this.Score = rank;
+        ChangeTracker.markDirty(this);
     }
 
     @Override
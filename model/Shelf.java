@@ -1,16 +1,39 @@
 package model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+import java.io.Serial;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.IntFunction;
 
 public final class Shelf implements Serializable, CrudObjectInterface {
     private static final long serialVersionUID = 1L;
+
+    /**
+     * Os livros são gravados só pelos ids: users.dat não carrega o acervo junto.
+     * "storedBooks" continua no formato para ler arquivos antigos; hoje vai null.
+     */
+    @Serial
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("id", int.class),
+            new ObjectStreamField("name", String.class),
+            new ObjectStreamField("owner", User.class),
+            new ObjectStreamField("storedBooks", List.class),
+            new ObjectStreamField("bookIds", int[].class),
+    };
+
     private int id;
 
-    private final List<Book> storedBooks = new ArrayList<>();
+    private List<Book> storedBooks = new ArrayList<>();
     private String name;
+    private User owner;
+    // ids lidos e ainda não ligados aos livros carregados (resolveBooks)
+    private int[] pendingBookIds;
 
     public Shelf(String name) {
         this.name = name == null ? "" : name.trim();
@@ -23,11 +46,66 @@ public final class Shelf implements Serializable, CrudObjectInterface {
     public void addBook(Book book) {
         if (book != null && !storedBooks.contains(book)) {
             storedBooks.add(book);
+            ChangeTracker.markDirty(owner);
         }
     }
 
     public boolean removeBook(Book book) {
-        return storedBooks.remove(book);
+        boolean removed = storedBooks.remove(book);
+        if (removed) ChangeTracker.markDirty(owner);
+        return removed;
+    }
+
+    /**
+     * Liga os ids lidos aos livros carregados; ids sem livro (removido) são descartados.
+     *
+     * @return quantidade de ids que não puderam ser resolvidos
+     */
+    public int resolveBooks(IntFunction<Book> books) {
+        int[] ids = pendingBookIds;
+        if (ids == null) return 0;
+        pendingBookIds = null;
+
+        int missing = 0;
+        for (int bookId : ids) {
+            Book book = books.apply(bookId);
+            if (book == null) missing++;
+            else if (!storedBooks.contains(book)) storedBooks.add(book);
+        }
+        return missing;
+    }
+
+    @Serial
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        int[] ids = pendingBookIds;
+        if (ids == null) ids = storedBooks.stream().mapToInt(Book::getId).toArray();
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("id", id);
+        fields.put("name", name);
+        fields.put("owner", owner);
+        fields.put("storedBooks", null);
+        fields.put("bookIds", ids);
+        out.writeFields();
+    }
+
+    @Serial
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        id = fields.get("id", 0);
+        name = (String) fields.get("name", "");
+        owner = (User) fields.get("owner", null);
+        // arquivo antigo: os livros vieram como cópias; ficam só os ids, ligados aos livros carregados
+        List<Book> legacy = (List<Book>) fields.get("storedBooks", null);
+        storedBooks = new ArrayList<>();
+        pendingBookIds = legacy != null
+                ? legacy.stream().mapToInt(Book::getId).toArray()
+                : (int[]) fields.get("bookIds", null);
+    }
+
+    /** Estantes são gravadas junto do usuário dono; mudanças aqui o marcam como alterado. **/
+    void setOwner(User owner) {
+        this.owner = owner;
     }
 
 
@@ -45,6 +123,7 @@ public final class Shelf implements Serializable, CrudObjectInterface {
 
     public void setName(String name) {
         this.name = name == null ? "" : name.trim();
+        ChangeTracker.markDirty(owner);
     }
 
     @Override
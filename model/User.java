@@ -53,18 +53,26 @@ public final class User implements Serializable, CrudObjectInterface {
 
     public void setUsername(String username) {
         this.username = (username == null || username.isBlank()) ? "SemNome" : username.trim();
+        ChangeTracker.markDirty(this);
     }
 
     public void setPassword(String password) {
         this.password = (password == null) ? "" : password;
+        ChangeTracker.markDirty(this);
     }
 
     public void addShelf(Shelf shelf) {
-        if (shelf != null && !shelves.contains(shelf)) shelves.add(shelf);
+        if (shelf != null && !shelves.contains(shelf)) {
+            shelves.add(shelf);
+            shelf.setOwner(this);
+            ChangeTracker.markDirty(this);
+        }
     }
 
     public boolean removeShelf(Shelf shelf) {
-        return shelves.remove(shelf);
+        boolean removed = shelves.remove(shelf);
+        if (removed) ChangeTracker.markDirty(this);
+        return removed;
     }
 
     @Override
@@ -252,16 +252,15 @@ public final class BookViewGui extends JDialog implements BookView {
 
     /** Exibe o Score dos livros */
     private void showScore() {
-        List<Book> books = bookController.listAll();
+        List<Book> books = bookController.rankedByScore();
         if (books.isEmpty()) {
             JOptionPane.showMessageDialog(this, "Nenhum livro cadastrado.");
             return;
         }
 
         StringBuilder sb = new StringBuilder("Score dos Livros:\n");
-        books.stream()
-                .sorted((a, b) -> b.getScore().compareTo(a.getScore()))
-                .forEach(book -> sb.append(book.getScore()).append(" - ").append(book.getName()).append("\n"));
+        books.forEach(book -> sb.append(bookController.scoreOf(book.getId())).append(" - ")
+                .append(book.getName()).append("\n"));
 
         JOptionPane.showMessageDialog(this, sb.toString(), "Score", JOptionPane.INFORMATION_MESSAGE);
     }
@@ -47,6 +47,7 @@ public final class MainViewGui extends JFrame implements MainView, UserObserver
         this.reviewView = reviewView;
         this.shelfView = shelfView;
         this.appController = appController;
+        appController.setStateThread(SwingUtilities::invokeLater); // a manutenção lê o estado na EDT
 
         setTitle("Biblioteca GUI");
         setSize(400, 600);
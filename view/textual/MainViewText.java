@@ -15,6 +15,7 @@ public final class MainViewText implements MainView {
     private final ReviewViewText reviewView;
     private final ShelfViewText shelfViewText;
     private final AppController appController;
+    private final Object commands = new Object(); // seguro enquanto um comando altera o estado
 
     /** Constructor acts as a receiver for all necessary sub-views, it is an access class **/
     public MainViewText(BookViewText bookView, CategoryViewText categoryView, UserViewText userView,
@@ -25,6 +26,12 @@ public final class MainViewText implements MainView {
         this.reviewView = reviewView;
         this.shelfViewText = shelfViewText;
         this.appController = appController;
+        // a manutenção lê o estado entre um comando e outro
+        appController.setStateThread(task -> {
+            synchronized (commands) {
+                task.run();
+            }
+        });
     }
 
     @Override
@@ -48,26 +55,32 @@ public final class MainViewText implements MainView {
             System.out.print("> ");
 
             String opt = scanner.nextLine().trim();
-            switch (opt) {
-                case "1" -> userView.showMenu();
-                case "2" -> bookView.showMenu();
-                case "3" -> categoryView.showMenu();
-                case "4" -> reviewView.showMenu();
-                case "5" -> shelfViewText.showMenu();
-                case "6" -> {
-                    appController.saveAll();
-                    System.out.println("Estado salvo");
-                }
-                case "7" -> {
-                    appController.loadAll();
-                    System.out.println("Estado carregado");
-                }
-                case "0" -> {
-                    if (appController.getUser() != null) appController.setUser(null);
-                }
-                case "-" -> { System.out.println("Saindo..."); return; }
-                default -> System.out.println("Opção inválida.");
+            if (opt.equals("-")) { System.out.println("Saindo..."); return; }
+            synchronized (commands) {
+                handle(opt);
+            }
+        }
+    }
+
+    private void handle(String opt) {
+        switch (opt) {
+            case "1" -> userView.showMenu();
+            case "2" -> bookView.showMenu();
+            case "3" -> categoryView.showMenu();
+            case "4" -> reviewView.showMenu();
+            case "5" -> shelfViewText.showMenu();
+            case "6" -> {
+                appController.saveAll();
+                System.out.println("Estado salvo");
+            }
+            case "7" -> {
+                appController.loadAll();
+                System.out.println("Estado carregado");
+            }
+            case "0" -> {
+                if (appController.getUser() != null) appController.setUser(null);
             }
+            default -> System.out.println("Opção inválida.");
         }
     }
 